@@ -0,0 +1,46 @@
+package org.robolectric.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A {@link org.robolectric.pluginapi.config.Configurer} annotation for controlling how Robolectric
+ * instruments Android classes to call their shadows.
+ *
+ * <p>Robolectric defaults to INVOKEDYNAMIC on JDK 8u40 and later, but this can be overridden by
+ * applying a @InstrumentationMode(NewMode) annotation to a test package, test class, or test
+ * method, or via the 'robolectric.instrumentationMode' system property. Tests with different modes
+ * run in different sandboxes.
+ *
+ * @see {@link org.robolectric.plugins.InstrumentationModeConfigurer}
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.PACKAGE, ElementType.TYPE, ElementType.METHOD})
+public @interface InstrumentationMode {
+
+  /**
+   * Specifies the different supported instrumentation modes.
+   */
+  enum Mode {
+    /**
+     * Instrumented methods call into the ClassHandler, which looks up the shadow method to invoke
+     * each time they're called.
+     */
+    LEGACY,
+
+    /**
+     * Instrumented methods dispatch to their shadows through invokedynamic call sites, which are
+     * linked once and only relinked when the shadows in use change. Requires JDK 8u40 or later.
+     */
+    INVOKEDYNAMIC,
+  }
+
+  /**
+   * Set the instrumentation mode.
+   */
+  Mode value();
+}
@@ -0,0 +1,47 @@
+package org.robolectric.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A {@link org.robolectric.pluginapi.config.Configurer} annotation for controlling how Robolectric
+ * represents the contents of {@code android.os.Parcel}.
+ *
+ * By default, Robolectric's Parcel keeps a reference to a typed record for every byte position, so
+ * that reading data as a different type than it was written fails fast. That costs several times
+ * the parcel's size in memory, and makes large parcels (bitmaps, big Bundles) slow to build and to
+ * marshall.
+ *
+ * This annotation can be applied to tests to have Robolectric back parcels with a plain byte
+ * array instead, optionally with a compact side table of type tags which keeps most of the
+ * fail-fast checks.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.PACKAGE, ElementType.TYPE, ElementType.METHOD})
+public @interface ParcelMode {
+
+  /**
+   * Specifies the different supported Parcel modes.
+   */
+  enum Mode {
+    /**
+     * One typed record per byte position. The marshalled form is Java-serialized.
+     */
+    TYPED,
+    /**
+     * A little-endian byte array laid out like a real Parcel, plus one type tag per 4-byte word
+     * to detect reads of the wrong type, of partially overwritten data, or of uninitialized data.
+     */
+    COMPACT,
+    /**
+     * A little-endian byte array laid out like a real Parcel, without any type checks.
+     */
+    COMPACT_UNCHECKED,
+  }
+
+  Mode value();
+}
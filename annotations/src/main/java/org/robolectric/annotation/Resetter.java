@@ -13,4 +13,14 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD})
 public @interface Resetter {
+
+  /**
+   * Whether this resetter only touches state which is private to its shadow and the shadowed class,
+   * and doesn't depend on running on the main thread, so that it may be run concurrently with
+   * other thread-safe resetters.
+   *
+   * <p>Thread-safe resetters are only run in parallel when the {@code
+   * robolectric.resetters.parallel} system property is set.
+   */
+  boolean threadSafe() default false;
 }
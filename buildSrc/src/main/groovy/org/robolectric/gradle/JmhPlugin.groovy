@@ -0,0 +1,51 @@
+package org.robolectric.gradle
+
+import org.gradle.api.Plugin
+import org.gradle.api.Project
+import org.gradle.api.tasks.JavaExec
+
+/**
+ * Adds a `jmh` source set of JMH microbenchmarks, and a `jmh` task to run them.
+ *
+ * Benchmarks are selected with `-Pjmh.include=<regex>`; further JMH options may be passed with
+ * `-Pjmh.args="..."`, e.g. `./gradlew :sandbox:jmh -Pjmh.include=Configuration -Pjmh.args="-f 1"`.
+ */
+class JmhPlugin implements Plugin<Project> {
+    Closure doApply = {
+        // Benchmarks run against the same classpath as tests, including any runtime Android SDK.
+        sourceSets {
+            jmh {
+                compileClasspath += sourceSets.test.output + sourceSets.test.compileClasspath
+                runtimeClasspath += sourceSets.test.output + sourceSets.test.runtimeClasspath
+            }
+        }
+
+        project.dependencies {
+            jmhImplementation "org.openjdk.jmh:jmh-core:$jmhVersion"
+            jmhAnnotationProcessor "org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion"
+        }
+
+        task('jmh', type: JavaExec) {
+            description = "Runs JMH benchmarks."
+            group = "verification"
+            classpath = sourceSets.jmh.runtimeClasspath
+            main = "org.openjdk.jmh.Main"
+
+            def jmhArgs = []
+            if (project.hasProperty("jmh.include")) {
+                jmhArgs << project.property("jmh.include")
+            }
+            if (project.hasProperty("jmh.args")) {
+                jmhArgs.addAll(project.property("jmh.args").toString().split(/\s+/))
+            }
+            args = jmhArgs
+        }
+    }
+
+    @Override
+    void apply(Project project) {
+        doApply.delegate = project
+        doApply.resolveStrategy = Closure.DELEGATE_ONLY
+        doApply()
+    }
+}
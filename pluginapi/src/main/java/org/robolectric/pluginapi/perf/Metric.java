@@ -2,13 +2,26 @@ package org.robolectric.pluginapi.perf;
 
 /**
  * Metric for perf stats collection.
+ *
+ * <p>Besides count, total, min and max, a metric keeps a latency histogram from which percentiles
+ * can be estimated. Latencies are bucketed by power of two, and each power of two is split into
+ * {@link #SUB_BUCKETS} linear sub-buckets, so estimates are within 1/{@link #SUB_BUCKETS} of the
+ * true value.
  */
 public class Metric {
+  /** Number of linear sub-buckets per power of two in the latency histogram. */
+  public static final int SUB_BUCKETS = 8;
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /** Number of buckets in the latency histogram. */
+  public static final int HISTOGRAM_BUCKETS = histogramBucket(Long.MAX_VALUE) + 1;
+
   private final String name;
   private int count;
   private long elapsedNs;
   private long minNs;
   private long maxNs;
+  private long[] histogram;
   private final boolean success;
 
   public Metric(String name, int count, int elapsedNs, boolean success) {
@@ -22,6 +35,29 @@ public class Metric {
     this(name, 0, 0, success);
   }
 
+  /**
+   * Creates a metric from already-accumulated values.
+   *
+   * @param histogram counts per bucket, as computed by {@link #histogramBucket(long)}; may be null
+   *     if no histogram was recorded
+   */
+  public Metric(
+      String name,
+      int count,
+      long elapsedNs,
+      long minNs,
+      long maxNs,
+      long[] histogram,
+      boolean success) {
+    this.name = name;
+    this.count = count;
+    this.elapsedNs = elapsedNs;
+    this.minNs = minNs;
+    this.maxNs = maxNs;
+    this.histogram = histogram;
+    this.success = success;
+  }
+
   public String getName() {
     return name;
   }
@@ -42,6 +78,46 @@ public class Metric {
     return maxNs;
   }
 
+  public long getP50Ns() {
+    return getPercentileNs(50);
+  }
+
+  public long getP90Ns() {
+    return getPercentileNs(90);
+  }
+
+  public long getP99Ns() {
+    return getPercentileNs(99);
+  }
+
+  /**
+   * Returns an estimate of the given percentile (0-100) of recorded latencies, or 0 if there's no
+   * histogram.
+   */
+  public long getPercentileNs(double percentile) {
+    if (histogram == null) {
+      return 0;
+    }
+
+    long total = 0;
+    for (long bucketCount : histogram) {
+      total += bucketCount;
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < histogram.length; i++) {
+      seen += histogram[i];
+      if (seen >= rank) {
+        return Math.max(minNs, Math.min(maxNs, histogramBucketUpperBound(i)));
+      }
+    }
+    return maxNs;
+  }
+
   public boolean isSuccess() {
     return success;
   }
@@ -57,9 +133,63 @@ public class Metric {
 
     this.elapsedNs += elapsedNs;
 
+    if (histogram == null) {
+      histogram = new long[HISTOGRAM_BUCKETS];
+    }
+    histogram[histogramBucket(elapsedNs)]++;
+
     count++;
   }
 
+  /** Adds everything recorded by {@code other} to this metric. */
+  public void merge(Metric other) {
+    if (other.count == 0) {
+      return;
+    }
+
+    if (count == 0 || other.minNs < minNs) {
+      minNs = other.minNs;
+    }
+
+    if (other.maxNs > maxNs) {
+      maxNs = other.maxNs;
+    }
+
+    elapsedNs += other.elapsedNs;
+
+    if (other.histogram != null) {
+      if (histogram == null) {
+        histogram = new long[HISTOGRAM_BUCKETS];
+      }
+      for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+        histogram[i] += other.histogram[i];
+      }
+    }
+
+    count += other.count;
+  }
+
+  /** Returns the histogram bucket for the given latency. */
+  public static int histogramBucket(long elapsedNs) {
+    if (elapsedNs < SUB_BUCKETS) {
+      return (int) Math.max(elapsedNs, 0);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(elapsedNs);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (elapsedNs >>> shift) - SUB_BUCKETS;
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the largest latency which falls into the given histogram bucket. */
+  static long histogramBucketUpperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -90,6 +220,9 @@ public class Metric {
         + "name='" + name + '\''
         + ", count=" + count
         + ", minNs=" + minNs
+        + ", p50Ns=" + getP50Ns()
+        + ", p90Ns=" + getP90Ns()
+        + ", p99Ns=" + getP99Ns()
         + ", maxNs=" + maxNs
         + ", elapsedNs=" + elapsedNs
         + ", success=" + success
@@ -27,6 +27,7 @@ import javax.lang.model.type.TypeVisitor;
 import javax.lang.model.util.SimpleElementVisitor6;
 import javax.lang.model.util.SimpleTypeVisitor6;
 import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.Resetter;
 import org.robolectric.shadow.api.ShadowPicker;
 
 /**
@@ -232,7 +233,7 @@ public class RobolectricModel {
         }
       };
       shadowTypes.values().forEach(shadowInfo -> shadowInfo.prepare(referentResolver, helpers));
-      resetterMap.values().forEach(resetterInfo -> resetterInfo.prepare(referentResolver));
+      resetterMap.values().forEach(resetterInfo -> resetterInfo.prepare(referentResolver, helpers));
     }
 
     private void registerType(TypeElement type) {
@@ -452,24 +453,39 @@ public class RobolectricModel {
     private final TypeElement shadowType;
     private final ExecutableElement executableElement;
     private String shadowTypeReferent;
+    private String shadowBinaryName;
 
     ResetterInfo(TypeElement shadowType, ExecutableElement executableElement) {
       this.shadowType = shadowType;
       this.executableElement = executableElement;
     }
 
-    void prepare(ReferentResolver referentResolver) {
+    void prepare(ReferentResolver referentResolver, Helpers helpers) {
       shadowTypeReferent = referentResolver.getReferentFor(shadowType);
+      shadowBinaryName = helpers.getBinaryName(shadowType);
     }
 
     private Implements getImplementsAnnotation() {
       return shadowType.getAnnotation(Implements.class);
     }
 
+    public String getShadowBinaryName() {
+      return shadowBinaryName;
+    }
+
     public String getMethodCall() {
       return shadowTypeReferent + "." + executableElement.getSimpleName() + "();";
     }
 
+    public String getMethodReference() {
+      return shadowTypeReferent + "::" + executableElement.getSimpleName();
+    }
+
+    public boolean isThreadSafe() {
+      Resetter resetter = executableElement.getAnnotation(Resetter.class);
+      return resetter != null && resetter.threadSafe();
+    }
+
     public int getMinSdk() {
       return getImplementsAnnotation().minSdk();
     }
@@ -146,24 +146,39 @@ public class ShadowProviderGenerator extends Generator {
     writer.println("  @Override");
     writer.println("  public void reset() {");
     for (RobolectricModel.ResetterInfo resetterInfo : model.getResetters()) {
-      int minSdk = resetterInfo.getMinSdk();
-      int maxSdk = resetterInfo.getMaxSdk();
-      String ifClause;
-      if (minSdk != -1 && maxSdk != -1) {
-        ifClause = "if (org.robolectric.RuntimeEnvironment.getApiLevel() >= " + minSdk
-            + " && org.robolectric.RuntimeEnvironment.getApiLevel() <= " + maxSdk + ") ";
-      } else if (maxSdk != -1) {
-        ifClause = "if (org.robolectric.RuntimeEnvironment.getApiLevel() <= " + maxSdk + ") ";
-      } else if (minSdk != -1) {
-        ifClause = "if (org.robolectric.RuntimeEnvironment.getApiLevel() >= " + minSdk + ") ";
-      } else {
-        ifClause = "";
-      }
+      String sdkCondition = sdkCondition(resetterInfo);
+      String ifClause = sdkCondition == null ? "" : "if (" + sdkCondition + ") ";
       writer.println("    " + ifClause + resetterInfo.getMethodCall());
     }
     writer.println("  }");
     writer.println();
 
+    writer.println("  @Override");
+    writer.println("  public void reset(java.util.function.Predicate<String> isDirty) {");
+    for (RobolectricModel.ResetterInfo resetterInfo : model.getResetters()) {
+      String sdkCondition = sdkCondition(resetterInfo);
+      String dirtyCondition = "isDirty.test(\"" + resetterInfo.getShadowBinaryName() + "\")";
+      writer.println("    if (" + (sdkCondition == null ? "" : sdkCondition + " && ")
+          + dirtyCondition + ") " + resetterInfo.getMethodCall());
+    }
+    writer.println("  }");
+    writer.println();
+
+    writer.println("  @Override");
+    writer.println("  public java.util.List<ShadowProvider.ResetterEntry> getResetters() {");
+    writer.println("    java.util.List<ShadowProvider.ResetterEntry> resetters = "
+        + "new java.util.ArrayList<>(" + model.getResetters().size() + ");");
+    for (RobolectricModel.ResetterInfo resetterInfo : model.getResetters()) {
+      String sdkCondition = sdkCondition(resetterInfo);
+      String ifClause = sdkCondition == null ? "" : "if (" + sdkCondition + ") ";
+      writer.println("    " + ifClause + "resetters.add(new ShadowProvider.ResetterEntry(\""
+          + resetterInfo.getShadowBinaryName() + "\", " + resetterInfo.isThreadSafe() + ", "
+          + resetterInfo.getMethodReference() + "));");
+    }
+    writer.println("    return resetters;");
+    writer.println("  }");
+    writer.println();
+
     writer.println("  @Override");
     writer.println("  public Map<String, String> getShadowMap() {");
     writer.println("    return SHADOW_MAP;");
@@ -205,4 +220,19 @@ public class ShadowProviderGenerator extends Generator {
 
     writer.println('}');
   }
+
+  private static String sdkCondition(RobolectricModel.ResetterInfo resetterInfo) {
+    int minSdk = resetterInfo.getMinSdk();
+    int maxSdk = resetterInfo.getMaxSdk();
+    if (minSdk != -1 && maxSdk != -1) {
+      return "org.robolectric.RuntimeEnvironment.getApiLevel() >= " + minSdk
+          + " && org.robolectric.RuntimeEnvironment.getApiLevel() <= " + maxSdk;
+    } else if (maxSdk != -1) {
+      return "org.robolectric.RuntimeEnvironment.getApiLevel() <= " + maxSdk;
+    } else if (minSdk != -1) {
+      return "org.robolectric.RuntimeEnvironment.getApiLevel() >= " + minSdk;
+    } else {
+      return null;
+    }
+  }
 }
@@ -1,12 +1,36 @@
 package org.robolectric.internal;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 public interface ShadowProvider {
 
   void reset();
 
+  default void reset(Predicate<String> isDirty) {
+    reset();
+  }
+
+  default List<ResetterEntry> getResetters() {
+    return Collections.singletonList(new ResetterEntry(getClass().getName(), false, this::reset));
+  }
+
   String[] getProvidedPackageNames();
 
   Map<String, String> getShadowMap();
+
+  final class ResetterEntry implements Runnable {
+    private final Runnable resetter;
+
+    public ResetterEntry(String shadowClassName, boolean threadSafe, Runnable resetter) {
+      this.resetter = resetter;
+    }
+
+    @Override
+    public void run() {
+      resetter.run();
+    }
+  }
 }
@@ -26,6 +26,18 @@ public class Shadows implements ShadowProvider {
     ShadowDummy.resetter_method();
   }
 
+  @Override
+  public void reset(java.util.function.Predicate<String> isDirty) {
+    if (isDirty.test("org.robolectric.annotation.processing.shadows.ShadowDummy")) ShadowDummy.resetter_method();
+  }
+
+  @Override
+  public java.util.List<ShadowProvider.ResetterEntry> getResetters() {
+    java.util.List<ShadowProvider.ResetterEntry> resetters = new java.util.ArrayList<>(1);
+    resetters.add(new ShadowProvider.ResetterEntry("org.robolectric.annotation.processing.shadows.ShadowDummy", false, ShadowDummy::resetter_method));
+    return resetters;
+  }
+
   @Override
   public Map<String, String> getShadowMap() {
     return SHADOW_MAP;
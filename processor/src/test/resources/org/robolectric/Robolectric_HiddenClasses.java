@@ -41,6 +41,20 @@ public class Shadows implements ShadowProvider {
     ShadowPrivate.resetMethod();
   }
 
+  @Override
+  public void reset(java.util.function.Predicate<String> isDirty) {
+    if (isDirty.test("org.robolectric.annotation.processing.shadows.ShadowDummy")) ShadowDummy.resetter_method();
+    if (isDirty.test("org.robolectric.annotation.processing.shadows.ShadowPrivate")) ShadowPrivate.resetMethod();
+  }
+
+  @Override
+  public java.util.List<ShadowProvider.ResetterEntry> getResetters() {
+    java.util.List<ShadowProvider.ResetterEntry> resetters = new java.util.ArrayList<>(2);
+    resetters.add(new ShadowProvider.ResetterEntry("org.robolectric.annotation.processing.shadows.ShadowDummy", false, ShadowDummy::resetter_method));
+    resetters.add(new ShadowProvider.ResetterEntry("org.robolectric.annotation.processing.shadows.ShadowPrivate", false, ShadowPrivate::resetMethod));
+    return resetters;
+  }
+
   @Override
   public Map<String, String> getShadowMap() {
     return SHADOW_MAP;
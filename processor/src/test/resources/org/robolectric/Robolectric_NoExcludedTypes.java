@@ -22,6 +22,16 @@ public class Shadows implements ShadowProvider {
   public void reset() {
   }
 
+  @Override
+  public void reset(java.util.function.Predicate<String> isDirty) {
+  }
+
+  @Override
+  public java.util.List<ShadowProvider.ResetterEntry> getResetters() {
+    java.util.List<ShadowProvider.ResetterEntry> resetters = new java.util.ArrayList<>(0);
+    return resetters;
+  }
+
   @Override
   public Map<String, String> getShadowMap() {
     return SHADOW_MAP;
@@ -6,7 +6,7 @@ import org.robolectric.annotation.Resetter;
 @Implements(className = "com.example.objects.AnyObject")
 public class ShadowClassNameOnly {
   public static int resetCount = 0;
-  @Resetter
+  @Resetter(threadSafe = true)
   public static void anotherResetter() {
     resetCount++;
   }
@@ -0,0 +1,109 @@
+package org.robolectric;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import androidx.test.core.app.ApplicationProvider;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+import org.junit.Test;
+import org.robolectric.annotation.InstrumentationMode;
+import org.robolectric.internal.MainThreadChannel;
+
+/**
+ * Representative framework calls for {@link InstrumentationModeBenchmark}, run in a sandbox on its
+ * main thread. Each workload returns a value derived from every call, so none can be optimized
+ * away.
+ *
+ * <p>The single test serves workloads through the current {@link MainThreadChannel} until the
+ * benchmark closes it.
+ */
+public abstract class FrameworkCallWorkloads {
+
+  @Test
+  public void serveWorkloads() throws Exception {
+    MainThreadChannel.current().serve(workloads());
+  }
+
+  private static Map<String, IntToLongFunction> workloads() {
+    Context context = ApplicationProvider.getApplicationContext();
+    Map<String, IntToLongFunction> workloads = new HashMap<>();
+
+    View view = new View(context);
+    workloads.put(
+        "viewMeasure",
+        iterations -> {
+          long result = 0;
+          for (int i = 0; i < iterations; i++) {
+            // forget the last measurement, so it isn't just returned from the cache
+            view.forceLayout();
+            view.measure(
+                MeasureSpec.makeMeasureSpec(100 + (i & 1), MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(100, MeasureSpec.AT_MOST));
+            result += view.getMeasuredWidth();
+          }
+          return result;
+        });
+
+    Handler handler = new Handler(Looper.getMainLooper());
+    long[] runCount = new long[1];
+    Runnable runnable = () -> runCount[0]++;
+    workloads.put(
+        "handlerPost",
+        iterations -> {
+          for (int i = 0; i < iterations; i++) {
+            handler.post(runnable);
+          }
+          shadowOf(Looper.getMainLooper()).idle();
+          return runCount[0];
+        });
+
+    workloads.put(
+        "parcelWrite",
+        iterations -> {
+          Parcel parcel = Parcel.obtain();
+          try {
+            for (int i = 0; i < iterations; i++) {
+              parcel.setDataPosition(0);
+              parcel.writeInt(i);
+              parcel.writeLong(i);
+              parcel.writeString("value");
+            }
+            return parcel.dataSize();
+          } finally {
+            parcel.recycle();
+          }
+        });
+
+    Resources resources = context.getResources();
+    workloads.put(
+        "resourcesGetString",
+        iterations -> {
+          long result = 0;
+          for (int i = 0; i < iterations; i++) {
+            result += resources.getString(android.R.string.ok).length();
+          }
+          return result;
+        });
+
+    return workloads;
+  }
+
+  /** Runs the workloads with classes instrumented for {@link InstrumentationMode.Mode#LEGACY}. */
+  @InstrumentationMode(InstrumentationMode.Mode.LEGACY)
+  public static class Legacy extends FrameworkCallWorkloads {}
+
+  /**
+   * Runs the workloads with classes instrumented for {@link
+   * InstrumentationMode.Mode#INVOKEDYNAMIC}.
+   */
+  @InstrumentationMode(InstrumentationMode.Mode.INVOKEDYNAMIC)
+  public static class InvokeDynamic extends FrameworkCallWorkloads {}
+}
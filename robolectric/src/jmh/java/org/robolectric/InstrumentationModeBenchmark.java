@@ -0,0 +1,84 @@
+package org.robolectric;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.annotation.InstrumentationMode;
+
+/**
+ * Compares the per-call cost of representative framework calls in sandboxes instrumented for each
+ * {@link InstrumentationMode}.
+ *
+ * <p>Calls are made on the sandbox's main thread in batches of {@link #BATCH_SIZE}, so the cost of
+ * handing each batch over to it is spread thinly across the calls.
+ *
+ * <pre>
+ * ./gradlew :robolectric:jmh -Pjmh.include=InstrumentationModeBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InstrumentationModeBenchmark {
+
+  private static final int BATCH_SIZE = 10_000;
+
+  @Param({"LEGACY", "INVOKEDYNAMIC"})
+  public InstrumentationMode.Mode instrumentationMode;
+
+  private SandboxedWorkloads workloads;
+
+  @Setup
+  public void startSandbox() throws Exception {
+    workloads =
+        SandboxedWorkloads.start(
+            instrumentationMode == InstrumentationMode.Mode.LEGACY
+                ? FrameworkCallWorkloads.Legacy.class
+                : FrameworkCallWorkloads.InvokeDynamic.class);
+  }
+
+  @TearDown
+  public void stopSandbox() throws InterruptedException {
+    workloads.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public long viewMeasure() throws Exception {
+    return workloads.run("viewMeasure", BATCH_SIZE);
+  }
+
+  /** Includes running each posted runnable when the main looper is idled after the batch. */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public long handlerPost() throws Exception {
+    return workloads.run("handlerPost", BATCH_SIZE);
+  }
+
+  /** Each operation writes an int, a long and a string. */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public long parcelWrite() throws Exception {
+    return workloads.run("parcelWrite", BATCH_SIZE);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public long resourcesGetString() throws Exception {
+    return workloads.run("resourcesGetString", BATCH_SIZE);
+  }
+}
@@ -0,0 +1,67 @@
+package org.robolectric;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost per frame of idling a paused looper for an hour of 16 ms frames.
+ *
+ * <p>{@link #idleLoopers} background loopers with nothing to do are running throughout, as in
+ * apps which start HandlerThreads for work which hasn't arrived yet.
+ *
+ * <pre>
+ * ./gradlew :robolectric:jmh -Pjmh.include=LooperIdleForBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LooperIdleForBenchmark {
+
+  private static final int FRAMES_PER_HOUR =
+      (int) (TimeUnit.HOURS.toMillis(1) / LooperWorkloads.FRAME_MILLIS);
+
+  @Param({"0", "8"})
+  public int idleLoopers;
+
+  private SandboxedWorkloads workloads;
+
+  @Setup
+  public void startSandbox() throws Exception {
+    workloads = SandboxedWorkloads.start(LooperWorkloads.class);
+    workloads.run("startIdleLoopers", idleLoopers);
+  }
+
+  @TearDown
+  public void stopSandbox() throws InterruptedException {
+    workloads.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(FRAMES_PER_HOUR)
+  public long mainLooper() throws Exception {
+    return workloads.run("mainLooperFrames", FRAMES_PER_HOUR);
+  }
+
+  /** Idles a paused background looper from the main thread. */
+  @Benchmark
+  @OperationsPerInvocation(FRAMES_PER_HOUR)
+  public long pausedBackgroundLooper() throws Exception {
+    return workloads.run("pausedBackgroundLooperFrames", FRAMES_PER_HOUR);
+  }
+}
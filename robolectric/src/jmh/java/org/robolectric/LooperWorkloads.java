@@ -0,0 +1,95 @@
+package org.robolectric;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+import org.junit.Test;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.internal.MainThreadChannel;
+
+/**
+ * Long {@code idleFor} spans for {@link LooperIdleForBenchmark}, run in a sandbox on its main
+ * thread.
+ *
+ * <p>Each looper has a message which reposts itself every {@link #FRAME_MILLIS}, like a
+ * Choreographer frame callback, and each workload idles its looper for the given number of frames.
+ */
+@LooperMode(LooperMode.Mode.PAUSED)
+public class LooperWorkloads {
+
+  static final long FRAME_MILLIS = 16;
+
+  @Test
+  public void serveWorkloads() throws Exception {
+    List<HandlerThread> handlerThreads = new ArrayList<>();
+    try {
+      MainThreadChannel.current().serve(workloads(handlerThreads));
+    } finally {
+      for (HandlerThread handlerThread : handlerThreads) {
+        handlerThread.quit();
+      }
+    }
+  }
+
+  private static Map<String, IntToLongFunction> workloads(List<HandlerThread> handlerThreads) {
+    Map<String, IntToLongFunction> workloads = new HashMap<>();
+
+    workloads.put(
+        "startIdleLoopers",
+        count -> {
+          for (int i = 0; i < count; i++) {
+            HandlerThread handlerThread = new HandlerThread("idle looper " + i);
+            handlerThread.start();
+            handlerThreads.add(handlerThread);
+          }
+          return handlerThreads.size();
+        });
+
+    long[] mainFrames = postFrames(Looper.getMainLooper());
+    workloads.put(
+        "mainLooperFrames",
+        frames -> {
+          shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(frames * FRAME_MILLIS));
+          return mainFrames[0];
+        });
+
+    HandlerThread backgroundThread = new HandlerThread("paused looper");
+    backgroundThread.start();
+    handlerThreads.add(backgroundThread);
+    Looper backgroundLooper = backgroundThread.getLooper();
+    shadowOf(backgroundLooper).pause();
+    long[] backgroundFrames = postFrames(backgroundLooper);
+    workloads.put(
+        "pausedBackgroundLooperFrames",
+        frames -> {
+          shadowOf(backgroundLooper).idleFor(Duration.ofMillis(frames * FRAME_MILLIS));
+          return backgroundFrames[0];
+        });
+
+    return workloads;
+  }
+
+  /** Starts a message reposting itself on the given looper, and returns its run count. */
+  private static long[] postFrames(Looper looper) {
+    Handler handler = new Handler(looper);
+    long[] frameCount = new long[1];
+    Runnable frame =
+        new Runnable() {
+          @Override
+          public void run() {
+            frameCount[0]++;
+            handler.postDelayed(this, FRAME_MILLIS);
+          }
+        };
+    handler.postDelayed(frame, FRAME_MILLIS);
+    return frameCount;
+  }
+}
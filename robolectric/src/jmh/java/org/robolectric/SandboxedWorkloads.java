@@ -0,0 +1,62 @@
+package org.robolectric;
+
+import java.util.concurrent.ExecutionException;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.robolectric.internal.MainThreadChannel;
+
+/**
+ * Runs a test class whose test serves workloads through {@link MainThreadChannel}, so that
+ * benchmarks can run them on its sandbox's main thread.
+ */
+final class SandboxedWorkloads {
+
+  private final MainThreadChannel channel;
+  private final Thread testThread;
+
+  /** Runs the given test class in the background, and waits until it's serving workloads. */
+  static SandboxedWorkloads start(Class<?> testClass) throws Exception {
+    RobolectricTestRunner runner = new RobolectricTestRunner(testClass);
+    MainThreadChannel channel = MainThreadChannel.open();
+    RunNotifier notifier = new RunNotifier();
+    notifier.addListener(
+        new RunListener() {
+          @Override
+          public void testFailure(Failure failure) {
+            channel.fail(failure.getException());
+          }
+
+          @Override
+          public void testAssumptionFailure(Failure failure) {
+            channel.fail(failure.getException());
+          }
+        });
+    Thread testThread =
+        new Thread(
+            () -> {
+              runner.run(notifier);
+              channel.fail(new IllegalStateException("stopped serving workloads"));
+            },
+            testClass.getSimpleName());
+    testThread.start();
+    channel.awaitServing();
+    return new SandboxedWorkloads(channel, testThread);
+  }
+
+  private SandboxedWorkloads(MainThreadChannel channel, Thread testThread) {
+    this.channel = channel;
+    this.testThread = testThread;
+  }
+
+  /** Runs the named workload {@code iterations} times on the sandbox's main thread. */
+  long run(String workload, int iterations) throws InterruptedException, ExecutionException {
+    return channel.run(workload, iterations);
+  }
+
+  /** Lets the test finish, and waits for it to. */
+  void stop() throws InterruptedException {
+    channel.close();
+    testThread.join();
+  }
+}
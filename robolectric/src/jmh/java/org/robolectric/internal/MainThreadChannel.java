@@ -0,0 +1,78 @@
+package org.robolectric.internal;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Hands work from a benchmark thread to the main thread of a sandbox, where a test is waiting to
+ * run it with the test's Android environment set up.
+ *
+ * <p>Sandboxes don't acquire {@code org.robolectric.internal} classes, so the benchmark and the
+ * sandboxed test see the same channel; only JDK types pass through it.
+ */
+public final class MainThreadChannel {
+
+  private static final FutureTask<Long> CLOSE = new FutureTask<>(() -> 0L);
+
+  private static volatile MainThreadChannel current;
+
+  private final CompletableFuture<Map<String, IntToLongFunction>> workloads =
+      new CompletableFuture<>();
+  private final BlockingQueue<FutureTask<Long>> tasks = new LinkedBlockingQueue<>();
+
+  /** Opens a new channel, which the next sandboxed test to call {@link #current()} will serve. */
+  public static MainThreadChannel open() {
+    current = new MainThreadChannel();
+    return current;
+  }
+
+  public static MainThreadChannel current() {
+    return current;
+  }
+
+  /**
+   * Publishes the named workloads, each of which runs itself the given number of times, and runs
+   * them as requested on the calling thread until the channel is closed.
+   */
+  public void serve(Map<String, IntToLongFunction> workloads) throws InterruptedException {
+    this.workloads.complete(workloads);
+    while (true) {
+      FutureTask<Long> task = tasks.take();
+      if (task == CLOSE) {
+        return;
+      }
+      task.run();
+    }
+  }
+
+  /** Reports that the sandboxed test couldn't start serving workloads. */
+  public void fail(Throwable cause) {
+    workloads.completeExceptionally(cause);
+  }
+
+  /** Waits until workloads are being served, or throws if they never will be. */
+  public void awaitServing() throws InterruptedException, ExecutionException {
+    workloads.get();
+  }
+
+  /** Runs the named workload {@code iterations} times on the sandbox's main thread. */
+  public long run(String workload, int iterations)
+      throws InterruptedException, ExecutionException {
+    IntToLongFunction function = workloads.get().get(workload);
+    if (function == null) {
+      throw new IllegalArgumentException("no workload named " + workload);
+    }
+    FutureTask<Long> task = new FutureTask<>(() -> function.applyAsLong(iterations));
+    tasks.put(task);
+    return task.get();
+  }
+
+  public void close() {
+    tasks.add(CLOSE);
+  }
+}
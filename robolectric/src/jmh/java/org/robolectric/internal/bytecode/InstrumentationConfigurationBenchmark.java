@@ -0,0 +1,102 @@
+package org.robolectric.internal.bytecode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.robolectric.android.AndroidInterceptors;
+import org.robolectric.internal.AndroidConfigurer;
+
+/**
+ * Measures the per-call cost of {@link InstrumentationConfiguration#shouldAcquire}, for every class
+ * on the benchmark's classpath (which includes the runtime Android SDK), the first time each class
+ * is seen by a configuration and on subsequent lookups.
+ *
+ * <pre>
+ * ./gradlew :robolectric:jmh -Pjmh.include=InstrumentationConfigurationBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InstrumentationConfigurationBenchmark {
+
+  private List<String> classNames;
+  private InstrumentationConfiguration warmConfig;
+  private InstrumentationConfiguration coldConfig;
+
+  @Setup
+  public void setUp() throws IOException {
+    classNames = classNamesOnClassPath();
+    warmConfig = newAndroidConfiguration();
+    for (String className : classNames) {
+      warmConfig.shouldAcquire(className);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void newColdConfig() {
+    coldConfig = newAndroidConfiguration();
+  }
+
+  /** Reports the average time per class name, over a full pass of the classpath. */
+  @Benchmark
+  public void shouldAcquire_firstLookup(Blackhole blackhole) {
+    for (String className : classNames) {
+      blackhole.consume(coldConfig.shouldAcquire(className));
+    }
+  }
+
+  @Benchmark
+  public void shouldAcquire_repeatedLookup(Blackhole blackhole) {
+    for (String className : classNames) {
+      blackhole.consume(warmConfig.shouldAcquire(className));
+    }
+  }
+
+  private static InstrumentationConfiguration newAndroidConfiguration() {
+    InstrumentationConfiguration.Builder builder = InstrumentationConfiguration.newBuilder();
+    new AndroidConfigurer(new ShadowProviders(Collections.emptyList()))
+        .configure(builder, new Interceptors(AndroidInterceptors.all()));
+    return builder.build();
+  }
+
+  private static List<String> classNamesOnClassPath() throws IOException {
+    List<String> classNames = new ArrayList<>();
+    for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      if (!path.endsWith(".jar")) {
+        continue;
+      }
+      try (JarFile jarFile = new JarFile(path)) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+          String name = entries.nextElement().getName();
+          if (name.endsWith(".class")) {
+            classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+          }
+        }
+      }
+    }
+    return classNames;
+  }
+}
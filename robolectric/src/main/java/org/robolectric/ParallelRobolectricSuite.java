@@ -0,0 +1,51 @@
+package org.robolectric;
+
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.robolectric.internal.ParallelSandboxScheduler;
+
+/**
+ * A suite which runs its test classes concurrently within one JVM. Each worker thread gets its own
+ * sandboxes, with their own class loaders and main threads; test methods of a single class still
+ * run serially, on one worker.
+ *
+ * <p>This trades Gradle/Maven fork count for in-JVM parallelism: every worker holds its own copy of
+ * each instrumented SDK it uses, but shares immutable data such as the shadow map and the
+ * compile-time resource table with the other workers.
+ *
+ * <pre>
+ * &#64;RunWith(ParallelRobolectricSuite.class)
+ * &#64;Suite.SuiteClasses({FooTest.class, BarTest.class})
+ * public class AllTests {}
+ * </pre>
+ *
+ * <p>The number of workers is set by the {@code robolectric.parallel.threads} system property; by
+ * default it's the number of available processors, up to 4.
+ *
+ * <p>The default {@link java.util.Locale} and {@link java.util.TimeZone} are JVM-wide, so a test
+ * which needs a different default locale (from its qualifiers) or time zone (set through {@code
+ * AlarmManager}) than the tests currently running waits for them to finish; see {@link
+ * org.robolectric.util.JvmDefaults}. Tests which set these defaults directly shouldn't be run in a
+ * parallel suite.
+ *
+ * <p>Perf stats are collected JVM-wide, so if any {@link
+ * org.robolectric.pluginapi.perf.PerfStatsReporter} is registered, the stats reported for a test
+ * may include events from tests running concurrently with it.
+ */
+public class ParallelRobolectricSuite extends Suite {
+
+  private static final int DEFAULT_MAX_THREADS = 4;
+
+  public ParallelRobolectricSuite(Class<?> klass, RunnerBuilder builder)
+      throws InitializationError {
+    super(klass, builder);
+    setScheduler(new ParallelSandboxScheduler(getThreadCount()));
+  }
+
+  private static int getThreadCount() {
+    int defaultThreadCount =
+        Math.min(DEFAULT_MAX_THREADS, Runtime.getRuntime().availableProcessors());
+    return Math.max(1, Integer.getInteger("robolectric.parallel.threads", defaultThreadCount));
+  }
+}
@@ -19,12 +19,14 @@ import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
 import javax.annotation.Priority;
 import org.junit.AssumptionViolatedException;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.Statement;
 import org.robolectric.android.AndroidInterceptors;
 import org.robolectric.android.AndroidSdkShadowMatcher;
 import org.robolectric.annotation.Config;
+import org.robolectric.annotation.InstrumentationMode;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.annotation.LooperMode.Mode;
 import org.robolectric.internal.AndroidConfigurer;
@@ -53,6 +55,8 @@ import org.robolectric.pluginapi.config.ConfigurationStrategy;
 import org.robolectric.pluginapi.config.ConfigurationStrategy.Configuration;
 import org.robolectric.pluginapi.config.GlobalConfigProvider;
 import org.robolectric.plugins.HierarchicalConfigurationStrategy.ConfigurationImpl;
+import org.robolectric.plugins.InstrumentationModeConfigurer;
+import org.robolectric.util.JvmDefaults;
 import org.robolectric.util.PerfStatsCollector;
 import org.robolectric.util.ReflectionHelpers;
 import org.robolectric.util.inject.Injector;
@@ -83,6 +87,7 @@ public class RobolectricTestRunner extends SandboxTestRunner {
   private final AndroidConfigurer androidConfigurer;
 
   private final ResModeStrategy resModeStrategy = getResModeStrategy();
+  private volatile List<FrameworkMethod> childrenToPrewarm;
   private boolean alwaysIncludeVariantMarkersInName =
       Boolean.parseBoolean(
           System.getProperty("robolectric.alwaysIncludeVariantMarkersInTestName", "false"));
@@ -247,9 +252,28 @@ public class RobolectricTestRunner extends SandboxTestRunner {
             ": " + e.getMessage(), e);
       }
     }
+    childrenToPrewarm = children;
     return children;
   }
 
+  @Override
+  protected Statement classBlock(RunNotifier notifier) {
+    Statement statement = super.classBlock(notifier);
+    return new Statement() {
+      @Override
+      public void evaluate() throws Throwable {
+        // Sandboxes belong to the sandbox slot of the thread using them, so warm them up on the
+        // thread which runs this class, rather than the one which created this runner.
+        List<FrameworkMethod> children = childrenToPrewarm;
+        childrenToPrewarm = null;
+        if (children != null) {
+          prewarmSandboxes(children);
+        }
+        statement.evaluate();
+      }
+    };
+  }
+
   @Override
   @Nonnull
   protected AndroidSandbox getSandbox(FrameworkMethod method) {
@@ -262,11 +286,56 @@ public class RobolectricTestRunner extends SandboxTestRunner {
     if (resourcesMode == ResourcesMode.LEGACY && sdk.getApiLevel() > Build.VERSION_CODES.P) {
       throw new AssumptionViolatedException("Robolectric doesn't support legacy mode after P");
     }
-    LooperMode.Mode looperMode = roboMethod.configuration == null ? Mode.LEGACY
-        : roboMethod.configuration.get(LooperMode.Mode.class);
+    LooperMode.Mode looperMode = getLooperMode(roboMethod);
+    InstrumentationMode.Mode instrumentationMode = getInstrumentationMode(roboMethod);
 
     sdk.verifySupportedSdk(method.getDeclaringClass().getName());
-    return sandboxManager.getAndroidSandbox(classLoaderConfig, sdk, resourcesMode, looperMode);
+    return sandboxManager.getAndroidSandbox(
+        classLoaderConfig, sdk, resourcesMode, looperMode, instrumentationMode);
+  }
+
+  private static LooperMode.Mode getLooperMode(RobolectricFrameworkMethod roboMethod) {
+    return roboMethod.configuration == null ? Mode.LEGACY
+        : roboMethod.configuration.get(LooperMode.Mode.class);
+  }
+
+  private static InstrumentationMode.Mode getInstrumentationMode(
+      RobolectricFrameworkMethod roboMethod) {
+    InstrumentationMode.Mode instrumentationMode =
+        roboMethod.configuration == null
+            ? null
+            : roboMethod.configuration.get(InstrumentationMode.Mode.class);
+    // custom configuration strategies may not know about InstrumentationMode
+    return instrumentationMode == null
+        ? new InstrumentationModeConfigurer(System.getProperties()).defaultConfig()
+        : instrumentationMode;
+  }
+
+  /**
+   * Starts building the sandboxes the given tests will need in the background, so that sandbox
+   * construction for later SDKs overlaps with running tests on earlier ones.
+   */
+  private void prewarmSandboxes(List<FrameworkMethod> children) {
+    if (!sandboxManager.isWarmPoolEnabled()) {
+      return;
+    }
+
+    for (FrameworkMethod child : children) {
+      RobolectricFrameworkMethod roboMethod = (RobolectricFrameworkMethod) child;
+      Sdk sdk = roboMethod.getSdk();
+      ResourcesMode resourcesMode = roboMethod.getResourcesMode();
+      if (!sdk.isSupported()
+          || (resourcesMode == ResourcesMode.LEGACY
+              && sdk.getApiLevel() > Build.VERSION_CODES.P)) {
+        continue;
+      }
+      sandboxManager.prewarm(
+          createClassLoaderConfig(child),
+          sdk,
+          resourcesMode,
+          getLooperMode(roboMethod),
+          getInstrumentationMode(roboMethod));
+    }
   }
 
   @Override
@@ -336,6 +405,7 @@ public class RobolectricTestRunner extends SandboxTestRunner {
     } finally {
       roboMethod.testLifecycle = null;
       roboMethod.clearContext();
+      JvmDefaults.getInstance().release();
     }
   }
 
@@ -47,6 +47,7 @@ import org.robolectric.config.ConfigurationRegistry;
 import org.robolectric.internal.ResourcesMode;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.internal.TestEnvironment;
+import org.robolectric.internal.bytecode.SandboxClassLoader;
 import org.robolectric.manifest.AndroidManifest;
 import org.robolectric.manifest.BroadcastReceiverData;
 import org.robolectric.manifest.RoboNotFoundException;
@@ -76,6 +77,7 @@ import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.shadows.ShadowPackageManager;
 import org.robolectric.shadows.ShadowPackageParser;
 import org.robolectric.shadows.ShadowPackageParser._Package_;
+import org.robolectric.util.JvmDefaults;
 import org.robolectric.util.PerfStatsCollector;
 import org.robolectric.util.ReflectionHelpers;
 import org.robolectric.util.Scheduler;
@@ -90,10 +92,12 @@ public class AndroidTestEnvironment implements TestEnvironment {
   private final int apiLevel;
 
   private boolean loggingInitialized = false;
+  private boolean classLoadProfileSaved = false;
   private final Path sdkJarPath;
   private final ApkLoader apkLoader;
   private PackageResourceTable systemResourceTable;
-  private final ShadowProvider[] shadowProviders;
+  private final ShadowResetter shadowResetter;
+  private final ApplicationStateSnapshot applicationStateSnapshot;
   private final TestEnvironmentLifecyclePlugin[] testEnvironmentLifecyclePlugins;
 
   public AndroidTestEnvironment(
@@ -108,7 +112,9 @@ public class AndroidTestEnvironment implements TestEnvironment {
     apiLevel = runtimeSdk.getApiLevel();
     this.apkLoader = apkLoader;
     sdkJarPath = runtimeSdk.getJarPath();
-    this.shadowProviders = shadowProviders;
+    this.shadowResetter = new ShadowResetter(shadowProviders);
+    this.applicationStateSnapshot =
+        ApplicationStateSnapshot.ENABLED ? new ApplicationStateSnapshot(apiLevel) : null;
     this.testEnvironmentLifecyclePlugins = lifecyclePlugins;
 
     RuntimeEnvironment.setUseLegacyResources(resourcesMode == ResourcesMode.LEGACY);
@@ -148,13 +154,19 @@ public class AndroidTestEnvironment implements TestEnvironment {
         new android.content.res.Configuration();
     DisplayMetrics displayMetrics = new DisplayMetrics();
 
-    Bootstrap.applyQualifiers(config.qualifiers(), apiLevel, androidConfiguration,
-        displayMetrics);
+    if (applicationStateSnapshot != null) {
+      applicationStateSnapshot.applyQualifiers(
+          config.qualifiers(), androidConfiguration, displayMetrics);
+    } else {
+      Bootstrap.applyQualifiers(config.qualifiers(), apiLevel, androidConfiguration,
+          displayMetrics);
+    }
 
     Locale locale = apiLevel >= VERSION_CODES.N
         ? androidConfiguration.getLocales().get(0)
         : androidConfiguration.locale;
-    Locale.setDefault(locale);
+    // when tests run concurrently, waits for tests expecting another default locale to finish
+    JvmDefaults.getInstance().acquire(locale);
 
     // Looper needs to be prepared before the activity thread is created
     if (Looper.myLooper() == null) {
@@ -169,6 +181,14 @@ public class AndroidTestEnvironment implements TestEnvironment {
     preloadClasses(apiLevel);
 
     installAndCreateApplication(appManifest, config, androidConfiguration, displayMetrics);
+
+    if (!classLoadProfileSaved) {
+      ClassLoader classLoader = AndroidTestEnvironment.class.getClassLoader();
+      if (classLoader instanceof SandboxClassLoader) {
+        ((SandboxClassLoader) classLoader).saveClassLoadProfile();
+      }
+      classLoadProfileSaved = true;
+    }
   }
 
   // If certain Android classes are required to be loaded in a particular order, do so here.
@@ -297,11 +317,24 @@ public class AndroidTestEnvironment implements TestEnvironment {
   }
 
   private Package loadAppPackage_measured(Config config, AndroidManifest appManifest) {
-
-    Package parsedPackage;
     if (RuntimeEnvironment.useLegacyResources()) {
       injectResourceStuffForLegacy(appManifest);
+    } else {
+      RuntimeEnvironment.compileTimeSystemResourcesFile = compileSdk.getJarPath();
+
+      RuntimeEnvironment.setAndroidFrameworkJarPath(sdkJarPath);
+    }
+
+    if (applicationStateSnapshot != null) {
+      return applicationStateSnapshot.loadPackage(
+          appManifest, config.packageName(), () -> parseAppPackage(config, appManifest));
+    }
+    return parseAppPackage(config, appManifest);
+  }
 
+  private Package parseAppPackage(Config config, AndroidManifest appManifest) {
+    Package parsedPackage;
+    if (RuntimeEnvironment.useLegacyResources()) {
       if (appManifest.getAndroidManifestFile() != null
           && Files.exists(appManifest.getAndroidManifestFile())) {
         parsedPackage = LegacyManifestParser.createPackage(appManifest);
@@ -318,10 +351,6 @@ public class AndroidTestEnvironment implements TestEnvironment {
         parsedPackage.applicationInfo.packageName = appManifest.getPackageName();
       }
     } else {
-      RuntimeEnvironment.compileTimeSystemResourcesFile = compileSdk.getJarPath();
-
-      RuntimeEnvironment.setAndroidFrameworkJarPath(sdkJarPath);
-
       Path packageFile = appManifest.getApkFile();
       parsedPackage = ShadowPackageParser.callParsePackage(packageFile);
     }
@@ -514,9 +543,7 @@ public class AndroidTestEnvironment implements TestEnvironment {
 
   @Override
   public void resetState() {
-    for (ShadowProvider provider : shadowProviders) {
-      provider.reset();
-    }
+    shadowResetter.reset();
   }
 
   // TODO(christianw): reconcile with ShadowPackageManager.setUpPackageStorage
@@ -0,0 +1,145 @@
+package org.robolectric.android.internal;
+
+import static android.os.Build.VERSION_CODES.P;
+
+import android.content.pm.PackageParser.Package;
+import android.content.res.Configuration;
+import android.os.Parcel;
+import android.util.DisplayMetrics;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.robolectric.android.Bootstrap;
+import org.robolectric.manifest.AndroidManifest;
+import org.robolectric.util.Logger;
+import org.robolectric.util.PerfStatsCollector;
+
+/**
+ * Captures the parts of {@link AndroidTestEnvironment#setUpApplicationState} which depend only on
+ * a test's configuration, the first time each configuration is seen in a sandbox, and restores
+ * them for later tests with the same configuration.
+ *
+ * <p>Enabled by the {@code robolectric.snapshotApplicationState} system property. Every test gets
+ * its own copy of the captured state, so tests which mutate it can't affect each other. State
+ * which can't be copied reliably, such as the {@link android.app.Application} itself, is always
+ * set up from scratch; so is a package whose snapshot couldn't be captured or restored.
+ */
+class ApplicationStateSnapshot {
+
+  static final boolean ENABLED = Boolean.getBoolean("robolectric.snapshotApplicationState");
+
+  private final int apiLevel;
+  private final Map<String, DeviceSnapshot> deviceSnapshots = new HashMap<>();
+  private final Map<PackageKey, Parcel> packageSnapshots = new HashMap<>();
+  private final Set<PackageKey> unsupportedPackages = new HashSet<>();
+
+  ApplicationStateSnapshot(int apiLevel) {
+    this.apiLevel = apiLevel;
+  }
+
+  /** Equivalent to {@link Bootstrap#applyQualifiers}, for a default configuration. */
+  void applyQualifiers(
+      String qualifiers, Configuration configuration, DisplayMetrics displayMetrics) {
+    DeviceSnapshot snapshot = deviceSnapshots.get(qualifiers);
+    if (snapshot == null) {
+      Bootstrap.applyQualifiers(qualifiers, apiLevel, configuration, displayMetrics);
+      deviceSnapshots.put(qualifiers, new DeviceSnapshot(configuration, displayMetrics));
+      return;
+    }
+
+    configuration.setTo(snapshot.configuration);
+    displayMetrics.setTo(snapshot.displayMetrics);
+  }
+
+  /**
+   * Returns a copy of the package previously loaded for the given manifest and package name, or
+   * else loads it with {@code loader}.
+   */
+  Package loadPackage(
+      AndroidManifest appManifest, String packageName, Supplier<Package> loader) {
+    // Package is only reliably Parcelable from P on.
+    PackageKey key = new PackageKey(appManifest, packageName);
+    if (apiLevel < P || unsupportedPackages.contains(key)) {
+      return loader.get();
+    }
+
+    Parcel snapshot = packageSnapshots.get(key);
+    if (snapshot != null) {
+      try {
+        return PerfStatsCollector.getInstance()
+            .measure("restore package snapshot", () -> restore(snapshot));
+      } catch (RuntimeException e) {
+        Logger.warn("couldn't restore snapshot of package %s: %s", key, e);
+        packageSnapshots.remove(key);
+        unsupportedPackages.add(key);
+        return loader.get();
+      }
+    }
+
+    Package parsedPackage = loader.get();
+    try {
+      packageSnapshots.put(key, capture(parsedPackage));
+    } catch (RuntimeException e) {
+      Logger.info("couldn't capture snapshot of package %s: %s", key, e);
+      unsupportedPackages.add(key);
+    }
+    return parsedPackage;
+  }
+
+  private static Parcel capture(Package parsedPackage) {
+    Parcel parcel = Parcel.obtain();
+    parsedPackage.writeToParcel(parcel, 0);
+    return parcel;
+  }
+
+  private static Package restore(Parcel snapshot) {
+    snapshot.setDataPosition(0);
+    return Package.CREATOR.createFromParcel(snapshot);
+  }
+
+  private static class DeviceSnapshot {
+    private final Configuration configuration;
+    private final DisplayMetrics displayMetrics = new DisplayMetrics();
+
+    DeviceSnapshot(Configuration configuration, DisplayMetrics displayMetrics) {
+      this.configuration = new Configuration(configuration);
+      this.displayMetrics.setTo(displayMetrics);
+    }
+  }
+
+  private static class PackageKey {
+    private final AndroidManifest appManifest;
+    private final String packageName;
+
+    PackageKey(AndroidManifest appManifest, String packageName) {
+      this.appManifest = appManifest;
+      this.packageName = packageName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof PackageKey)) {
+        return false;
+      }
+      PackageKey that = (PackageKey) o;
+      return Objects.equals(appManifest, that.appManifest)
+          && Objects.equals(packageName, that.packageName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(appManifest, packageName);
+    }
+
+    @Override
+    public String toString() {
+      return packageName + " (" + appManifest + ")";
+    }
+  }
+}
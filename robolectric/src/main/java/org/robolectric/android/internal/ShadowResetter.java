@@ -0,0 +1,240 @@
+package org.robolectric.android.internal;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.Nullable;
+import org.robolectric.annotation.Implements;
+import org.robolectric.internal.ShadowProvider;
+import org.robolectric.internal.ShadowProvider.ResetterEntry;
+import org.robolectric.internal.bytecode.SandboxClassLoader;
+import org.robolectric.util.Logger;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
+
+/**
+ * Resets the static state of shadows between tests.
+ *
+ * <p>By default every {@link org.robolectric.annotation.Resetter} is invoked. When the {@code
+ * robolectric.resetters.dirtyTracking} system property is set, resetters are only invoked for
+ * shadow classes which the sandbox has loaded; a shadow class is always loaded before anything can
+ * change its static state, including the static initializer of the class it shadows. This relies on
+ * resetters only resetting state belonging to their shadow or the shadowed class.
+ *
+ * <p>Setting {@code robolectric.resetters.verifyDirtyTracking} also runs each skipped resetter, and
+ * warns if doing so changed any static field of its shadow or shadowed class, which would mean it
+ * wasn't safe to skip.
+ *
+ * <p>Setting {@code robolectric.resetters.timing} records the time taken by each resetter as a
+ * separate perf stats metric. Setting {@code robolectric.resetters.parallel} runs resetters marked
+ * {@link org.robolectric.annotation.Resetter#threadSafe()} on a thread pool, concurrently with the
+ * remaining resetters, which still run in order on the calling thread.
+ */
+class ShadowResetter {
+
+  private static final boolean VERIFY_DIRTY_TRACKING =
+      Boolean.getBoolean("robolectric.resetters.verifyDirtyTracking");
+  private static final boolean DIRTY_TRACKING =
+      VERIFY_DIRTY_TRACKING || Boolean.getBoolean("robolectric.resetters.dirtyTracking");
+  private static final boolean TIMING = Boolean.getBoolean("robolectric.resetters.timing");
+  private static final boolean PARALLEL = Boolean.getBoolean("robolectric.resetters.parallel");
+
+  private final ShadowProvider[] shadowProviders;
+  private List<IndividualResetter> individualResetters;
+
+  ShadowResetter(ShadowProvider[] shadowProviders) {
+    this.shadowProviders = shadowProviders;
+  }
+
+  void reset() {
+    ClassLoader classLoader = ShadowResetter.class.getClassLoader();
+    if (TIMING || PARALLEL) {
+      resetIndividually(
+          DIRTY_TRACKING && classLoader instanceof SandboxClassLoader
+              ? (SandboxClassLoader) classLoader
+              : null);
+      return;
+    }
+
+    if (!DIRTY_TRACKING || !(classLoader instanceof SandboxClassLoader)) {
+      for (ShadowProvider provider : shadowProviders) {
+        provider.reset();
+      }
+      return;
+    }
+
+    SandboxClassLoader sandboxClassLoader = (SandboxClassLoader) classLoader;
+    for (ShadowProvider provider : shadowProviders) {
+      Set<String> skipped = new LinkedHashSet<>();
+      provider.reset(
+          shadowClassName -> {
+            if (sandboxClassLoader.isClassLoaded(shadowClassName)) {
+              return true;
+            }
+            skipped.add(shadowClassName);
+            return false;
+          });
+
+      if (VERIFY_DIRTY_TRACKING) {
+        for (String shadowClassName : skipped) {
+          verifySkippedResetter(provider, shadowClassName, sandboxClassLoader);
+        }
+      }
+    }
+  }
+
+  private void resetIndividually(@Nullable SandboxClassLoader dirtyTrackingClassLoader) {
+    if (individualResetters == null) {
+      individualResetters = new ArrayList<>();
+      for (ShadowProvider provider : shadowProviders) {
+        for (ResetterEntry entry : provider.getResetters()) {
+          individualResetters.add(new IndividualResetter(provider, entry));
+        }
+      }
+    }
+
+    List<IndividualResetter> skipped = new ArrayList<>();
+    List<CompletableFuture<Void>> pending = new ArrayList<>();
+    for (IndividualResetter resetter : individualResetters) {
+      if (dirtyTrackingClassLoader != null
+          && !dirtyTrackingClassLoader.isClassLoaded(resetter.entry.getShadowClassName())) {
+        skipped.add(resetter);
+      } else if (PARALLEL && resetter.entry.isThreadSafe()) {
+        pending.add(CompletableFuture.runAsync(resetter, ForkJoinPool.commonPool()));
+      } else {
+        resetter.run();
+      }
+    }
+
+    // Wait for every resetter to finish, so none is still running when the next test starts.
+    RuntimeException failure = null;
+    for (CompletableFuture<Void> future : pending) {
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        if (failure == null) {
+          failure =
+              e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+
+    if (VERIFY_DIRTY_TRACKING) {
+      for (IndividualResetter resetter : skipped) {
+        verifySkippedResetter(
+            resetter.provider, resetter.entry.getShadowClassName(), dirtyTrackingClassLoader);
+      }
+    }
+  }
+
+  private static void verifySkippedResetter(
+      ShadowProvider provider, String shadowClassName, SandboxClassLoader classLoader) {
+    List<Class<?>> classes = new ArrayList<>();
+    try {
+      Class<?> shadowClass = Class.forName(shadowClassName, true, classLoader);
+      classes.add(shadowClass);
+      Implements implementsAnnotation = shadowClass.getAnnotation(Implements.class);
+      if (implementsAnnotation != null) {
+        String shadowedClassName =
+            implementsAnnotation.className().isEmpty()
+                ? implementsAnnotation.value().getName()
+                : implementsAnnotation.className();
+        if (classLoader.isClassLoaded(shadowedClassName)) {
+          classes.add(Class.forName(shadowedClassName, false, classLoader));
+        }
+      }
+    } catch (ClassNotFoundException | TypeNotPresentException e) {
+      Logger.warn("couldn't verify resetter for %s: %s", shadowClassName, e);
+      return;
+    }
+
+    Map<Field, Object> before = snapshotStaticState(classes);
+    provider.reset(shadowClassName::equals);
+    Map<Field, Object> after = snapshotStaticState(classes);
+
+    Set<String> changedFields = new TreeSet<>();
+    for (Map.Entry<Field, Object> entry : after.entrySet()) {
+      if (!Objects.deepEquals(before.get(entry.getKey()), entry.getValue())) {
+        Field field = entry.getKey();
+        changedFields.add(field.getDeclaringClass().getName() + "." + field.getName());
+      }
+    }
+    if (!changedFields.isEmpty()) {
+      Logger.warn(
+          "dirty tracking skipped the resetter for %s, but running it changed %s",
+          shadowClassName, changedFields);
+    }
+  }
+
+  private static Map<Field, Object> snapshotStaticState(List<Class<?>> classes) {
+    Map<Field, Object> state = new HashMap<>();
+    for (Class<?> clazz : classes) {
+      for (Field field : clazz.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+          continue;
+        }
+        try {
+          field.setAccessible(true);
+          state.put(field, copyOf(field.get(null)));
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+          // can't be read, so can't be compared
+        }
+      }
+    }
+    return state;
+  }
+
+  /** Copies containers, so changes to their contents show up when snapshots are compared. */
+  private static Object copyOf(Object value) {
+    if (value instanceof Collection) {
+      return new ArrayList<>((Collection<?>) value);
+    } else if (value instanceof Map) {
+      return new HashMap<>((Map<?, ?>) value);
+    } else if (value instanceof Object[]) {
+      return ((Object[]) value).clone();
+    }
+    return value;
+  }
+
+  private static class IndividualResetter implements Runnable {
+    private final ShadowProvider provider;
+    private final ResetterEntry entry;
+    private final MetricHandle metricHandle;
+
+    IndividualResetter(ShadowProvider provider, ResetterEntry entry) {
+      this.provider = provider;
+      this.entry = entry;
+      this.metricHandle =
+          TIMING
+              ? PerfStatsCollector.getInstance()
+                  .metricHandle("reset " + entry.getShadowClassName())
+              : null;
+    }
+
+    @Override
+    public void run() {
+      if (metricHandle == null) {
+        entry.run();
+      } else {
+        PerfStatsCollector.getInstance().measure(metricHandle, entry::run);
+      }
+    }
+  }
+}
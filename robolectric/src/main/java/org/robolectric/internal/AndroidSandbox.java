@@ -1,6 +1,7 @@
 package org.robolectric.internal;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
@@ -9,13 +10,19 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import org.robolectric.ApkLoader;
 import org.robolectric.android.internal.AndroidTestEnvironment;
+import org.robolectric.annotation.InstrumentationMode;
 import org.robolectric.internal.bytecode.ClassInstrumentor;
 import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.internal.bytecode.InvokeDynamic;
+import org.robolectric.internal.bytecode.MappedJarResourceProvider;
+import org.robolectric.internal.bytecode.PreinstrumentedJar;
+import org.robolectric.internal.bytecode.ResourceProvider;
 import org.robolectric.internal.bytecode.Sandbox;
 import org.robolectric.internal.bytecode.SandboxClassLoader;
 import org.robolectric.internal.bytecode.ShadowProviders;
 import org.robolectric.internal.bytecode.UrlResourceProvider;
 import org.robolectric.pluginapi.Sdk;
+import org.robolectric.util.Logger;
 import org.robolectric.util.inject.Injector;
 
 /** Sandbox simulating an Android device. */
@@ -97,9 +104,38 @@ public class AndroidSandbox extends Sandbox {
   /** Adapter from Sdk to ResourceLoader. */
   public static class SdkSandboxClassLoader extends SandboxClassLoader {
 
+    private static final boolean MAPPED_JAR_RESOURCES =
+        Boolean.getBoolean("robolectric.mappedJarResources");
+
     public SdkSandboxClassLoader(InstrumentationConfiguration config,
-        @Named("runtimeSdk") Sdk runtimeSdk, ClassInstrumentor classInstrumentor) {
-      super(config, new UrlResourceProvider(toUrl(runtimeSdk.getJarPath())), classInstrumentor);
+        @Named("runtimeSdk") Sdk runtimeSdk, ClassInstrumentor classInstrumentor,
+        InstrumentationMode.Mode instrumentationMode) {
+      this(
+          config,
+          runtimeSdk,
+          InvokeDynamic.classInstrumentorFor(
+              instrumentationMode == InstrumentationMode.Mode.INVOKEDYNAMIC, classInstrumentor));
+    }
+
+    private SdkSandboxClassLoader(InstrumentationConfiguration config, Sdk runtimeSdk,
+        ClassInstrumentor classInstrumentor) {
+      super(
+          config,
+          createResourceProvider(runtimeSdk.getJarPath()),
+          classInstrumentor,
+          PreinstrumentedJar.find(runtimeSdk.getJarPath(), config, classInstrumentor));
+      startClassLoadProfile("sdk" + runtimeSdk.getApiLevel());
+    }
+
+    private static ResourceProvider createResourceProvider(Path jarPath) {
+      if (MAPPED_JAR_RESOURCES) {
+        try {
+          return new MappedJarResourceProvider(jarPath);
+        } catch (IOException e) {
+          Logger.warn("couldn't map %s, falling back to URL class loading: %s", jarPath, e);
+        }
+      }
+      return new UrlResourceProvider(toUrl(jarPath));
     }
 
     private static URL toUrl(Path path) {
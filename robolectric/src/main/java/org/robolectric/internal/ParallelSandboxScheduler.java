@@ -0,0 +1,69 @@
+package org.robolectric.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.runners.model.RunnerScheduler;
+import org.robolectric.util.JvmDefaults;
+import org.robolectric.util.Util;
+
+/**
+ * Runs the children of a JUnit runner concurrently, on a fixed number of worker threads. Each worker
+ * claims its own {@link SandboxManager#setSandboxSlot(int) sandbox slot}, so tests on different
+ * workers never share a sandbox.
+ *
+ * <p>Immutable state such as the {@link org.robolectric.internal.bytecode.ShadowMap} and the
+ * compile-time resource table is shared between all sandboxes, but each worker holds its own copy
+ * of every instrumented SDK it uses.
+ */
+@SuppressWarnings("NewApi")
+public class ParallelSandboxScheduler implements RunnerScheduler {
+
+  private final ExecutorService executorService;
+  private final List<Future<?>> futures = new ArrayList<>();
+
+  public ParallelSandboxScheduler(int threadCount) {
+    JvmDefaults.getInstance().enableConcurrency();
+    AtomicInteger nextSlot = new AtomicInteger();
+    executorService =
+        Executors.newFixedThreadPool(
+            threadCount,
+            r -> {
+              int slot = nextSlot.getAndIncrement();
+              Thread thread =
+                  new Thread(
+                      () -> {
+                        SandboxManager.setSandboxSlot(slot);
+                        r.run();
+                      },
+                      "Robolectric test worker " + slot);
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @Override
+  public void schedule(Runnable childStatement) {
+    futures.add(executorService.submit(childStatement));
+  }
+
+  @Override
+  public void finished() {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw Util.sneakyThrow(e.getCause());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+}
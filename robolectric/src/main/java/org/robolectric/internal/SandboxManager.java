@@ -4,15 +4,35 @@ import android.annotation.SuppressLint;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import javax.inject.Named;
+import org.robolectric.annotation.InstrumentationMode;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.internal.bytecode.InstrumentationConfiguration;
 import org.robolectric.pluginapi.Sdk;
 import org.robolectric.plugins.SdkCollection;
+import org.robolectric.util.Util;
 import org.robolectric.util.inject.AutoFactory;
 
-/** Manager of sandboxes. */
+/**
+ * Manager of sandboxes.
+ *
+ * <p>Sandboxes are built at most once per key, without holding a global lock, so requests for
+ * different SDKs or configurations proceed concurrently. When the warm pool is enabled with
+ * {@code robolectric.sandboxWarmPool.enabled=true}, {@link #prewarm} builds sandboxes on background
+ * threads ({@code robolectric.sandboxWarmPool.threads}, 2 by default) ahead of the tests which
+ * need them.
+ *
+ * <p>Threads which run tests concurrently (see {@link ParallelSandboxScheduler}) each claim a
+ * distinct sandbox slot with {@link #setSandboxSlot(int)}, and get their own sandboxes, with their
+ * own class loaders and main threads.
+ */
 @SuppressLint("NewApi")
 public class SandboxManager {
 
@@ -21,11 +41,22 @@ public class SandboxManager {
    */
   private static final int CACHE_SIZE_FACTOR = 3;
 
+  private static final boolean WARM_POOL_ENABLED =
+      Boolean.getBoolean("robolectric.sandboxWarmPool.enabled");
+  private static final int WARM_POOL_THREADS =
+      Integer.getInteger("robolectric.sandboxWarmPool.threads", 2);
+
+  private static final ThreadLocal<Integer> sandboxSlot = ThreadLocal.withInitial(() -> 0);
+  private static final AtomicInteger slotCount = new AtomicInteger(1);
+
   private final SandboxBuilder sandboxBuilder;
   private final SdkCollection sdkCollection;
+  private final int cacheSize;
+  private ExecutorService warmPoolExecutor;
 
   // Simple LRU Cache. AndroidSandboxes are unique across InstrumentationConfiguration and Sdk
-  private final LinkedHashMap<SandboxKey, AndroidSandbox> sandboxesByKey;
+  // Guarded by itself; sandboxes are built outside the lock.
+  private final LinkedHashMap<SandboxKey, SandboxTask> sandboxesByKey;
 
   @Inject
   public SandboxManager(SandboxBuilder sandboxBuilder, SdkCollection sdkCollection) {
@@ -34,31 +65,163 @@ public class SandboxManager {
 
     // We need to set the cache size of class loaders more than the number of supported APIs as
     // different tests may have different configurations.
-    final int cacheSize = sdkCollection.getSupportedSdks().size() * CACHE_SIZE_FACTOR;
-    sandboxesByKey = new LinkedHashMap<SandboxKey, AndroidSandbox>() {
+    cacheSize = sdkCollection.getSupportedSdks().size() * CACHE_SIZE_FACTOR;
+    sandboxesByKey = new LinkedHashMap<SandboxKey, SandboxTask>() {
       @Override
-      protected boolean removeEldestEntry(Map.Entry<SandboxKey, AndroidSandbox> eldest) {
-        return size() > cacheSize;
+      protected boolean removeEldestEntry(Map.Entry<SandboxKey, SandboxTask> eldest) {
+        return size() > cacheSize * slotCount.get();
       }
     };
   }
 
-  public synchronized AndroidSandbox getAndroidSandbox(
+  public AndroidSandbox getAndroidSandbox(
       InstrumentationConfiguration instrumentationConfig,
       Sdk sdk,
       ResourcesMode resourcesMode,
-      LooperMode.Mode looperMode) {
-    SandboxKey key = new SandboxKey(instrumentationConfig, sdk, resourcesMode, looperMode);
-
-    AndroidSandbox androidSandbox = sandboxesByKey.get(key);
-    if (androidSandbox == null) {
-      Sdk compileSdk = sdkCollection.getMaxSupportedSdk();
-      androidSandbox =
-          sandboxBuilder.build(
-              instrumentationConfig, sdk, compileSdk, resourcesMode, looperMode);
-      sandboxesByKey.put(key, androidSandbox);
+      LooperMode.Mode looperMode,
+      InstrumentationMode.Mode instrumentationMode) {
+    SandboxKey key =
+        new SandboxKey(
+            instrumentationConfig,
+            sdk,
+            resourcesMode,
+            looperMode,
+            instrumentationMode,
+            sandboxSlot.get());
+
+    SandboxTask task;
+    synchronized (sandboxesByKey) {
+      task = sandboxesByKey.get(key);
+      if (task == null) {
+        task = new SandboxTask(key, false);
+        sandboxesByKey.put(key, task);
+      }
+    }
+
+    // Build it on this thread, unless a warm pool thread has already started to.
+    task.run();
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      synchronized (sandboxesByKey) {
+        sandboxesByKey.remove(key, task);
+      }
+      if (task.prewarmed) {
+        // the background build may have failed for reasons specific to its thread; try again here
+        return getAndroidSandbox(
+            instrumentationConfig, sdk, resourcesMode, looperMode, instrumentationMode);
+      }
+      throw Util.sneakyThrow(e.getCause());
+    }
+  }
+
+  public boolean isWarmPoolEnabled() {
+    return WARM_POOL_ENABLED;
+  }
+
+  /**
+   * Starts building the sandbox for the given arguments in the background, if the warm pool is
+   * enabled and it isn't already built or being built.
+   */
+  public void prewarm(
+      InstrumentationConfiguration instrumentationConfig,
+      Sdk sdk,
+      ResourcesMode resourcesMode,
+      LooperMode.Mode looperMode,
+      InstrumentationMode.Mode instrumentationMode) {
+    if (!WARM_POOL_ENABLED) {
+      return;
+    }
+
+    SandboxKey key =
+        new SandboxKey(
+            instrumentationConfig,
+            sdk,
+            resourcesMode,
+            looperMode,
+            instrumentationMode,
+            sandboxSlot.get());
+    SandboxTask task;
+    synchronized (sandboxesByKey) {
+      // don't evict sandboxes which are more likely to be used than this one
+      if (sandboxesByKey.containsKey(key)
+          || sandboxesByKey.size() >= cacheSize * slotCount.get()) {
+        return;
+      }
+      task = new SandboxTask(key, true);
+      sandboxesByKey.put(key, task);
     }
-    return androidSandbox;
+    getWarmPoolExecutor().execute(task);
+  }
+
+  /**
+   * Sets the sandbox slot of the calling thread. Threads in different slots never share a sandbox,
+   * so they can run tests concurrently; threads in the same slot must not. Threads are in slot 0
+   * unless set otherwise.
+   */
+  public static void setSandboxSlot(int slot) {
+    if (slot < 0) {
+      throw new IllegalArgumentException("negative sandbox slot " + slot);
+    }
+    sandboxSlot.set(slot);
+    slotCount.accumulateAndGet(slot + 1, Math::max);
+  }
+
+  private synchronized ExecutorService getWarmPoolExecutor() {
+    if (warmPoolExecutor == null) {
+      warmPoolExecutor =
+          Executors.newFixedThreadPool(
+              WARM_POOL_THREADS,
+              r -> {
+                Thread thread = new Thread(r, "Robolectric sandbox warm pool");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return warmPoolExecutor;
+  }
+
+  private AndroidSandbox buildSandbox(SandboxKey key) {
+    Sdk compileSdk = sdkCollection.getMaxSupportedSdk();
+    return sandboxBuilder.build(
+        key.instrumentationConfiguration,
+        key.sdk,
+        compileSdk,
+        key.resourcesMode,
+        key.looperMode,
+        key.instrumentationMode);
+  }
+
+  /** Builds a sandbox exactly once, on whichever thread runs it first. */
+  private class SandboxTask extends FutureTask<AndroidSandbox> {
+    private final boolean prewarmed;
+
+    SandboxTask(SandboxKey key, boolean prewarmed) {
+      super(withContextClassLoader(
+          Thread.currentThread().getContextClassLoader(), () -> buildSandbox(key)));
+      this.prewarmed = prewarmed;
+    }
+  }
+
+  /**
+   * Sandbox class loaders derive from the context class loader, so make sure background threads
+   * use the requester's.
+   */
+  private static <T> Callable<T> withContextClassLoader(
+      ClassLoader contextClassLoader, Callable<T> callable) {
+    return () -> {
+      Thread thread = Thread.currentThread();
+      ClassLoader priorContextClassLoader = thread.getContextClassLoader();
+      thread.setContextClassLoader(contextClassLoader);
+      try {
+        return callable.call();
+      } finally {
+        thread.setContextClassLoader(priorContextClassLoader);
+      }
+    };
   }
 
   /** Factory interface for AndroidSandbox. */
@@ -69,7 +232,8 @@ public class SandboxManager {
         @Named("runtimeSdk") Sdk runtimeSdk,
         @Named("compileSdk") Sdk compileSdk,
         ResourcesMode resourcesMode,
-        LooperMode.Mode looperMode);
+        LooperMode.Mode looperMode,
+        InstrumentationMode.Mode instrumentationMode);
   }
 
   static class SandboxKey {
@@ -77,16 +241,22 @@ public class SandboxManager {
     private final InstrumentationConfiguration instrumentationConfiguration;
     private final ResourcesMode resourcesMode;
     private final LooperMode.Mode looperMode;
+    private final InstrumentationMode.Mode instrumentationMode;
+    private final int slot;
 
     public SandboxKey(
         InstrumentationConfiguration instrumentationConfiguration,
         Sdk sdk,
         ResourcesMode resourcesMode,
-        LooperMode.Mode looperMode) {
+        LooperMode.Mode looperMode,
+        InstrumentationMode.Mode instrumentationMode,
+        int slot) {
       this.sdk = sdk;
       this.instrumentationConfiguration = instrumentationConfiguration;
       this.resourcesMode = resourcesMode;
       this.looperMode = looperMode;
+      this.instrumentationMode = instrumentationMode;
+      this.slot = slot;
     }
 
     @Override
@@ -101,12 +271,15 @@ public class SandboxManager {
       return resourcesMode == that.resourcesMode
           && Objects.equals(sdk, that.sdk)
           && Objects.equals(instrumentationConfiguration, that.instrumentationConfiguration)
-          && looperMode == that.looperMode;
+          && looperMode == that.looperMode
+          && instrumentationMode == that.instrumentationMode
+          && slot == that.slot;
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(sdk, instrumentationConfiguration, resourcesMode, looperMode);
+      return Objects.hash(
+          sdk, instrumentationConfiguration, resourcesMode, looperMode, instrumentationMode, slot);
     }
   }
 }
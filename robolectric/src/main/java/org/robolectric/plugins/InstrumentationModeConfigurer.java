@@ -0,0 +1,75 @@
+package org.robolectric.plugins;
+
+import com.google.auto.service.AutoService;
+import java.lang.reflect.Method;
+import java.util.Properties;
+import javax.annotation.Nonnull;
+import org.robolectric.annotation.InstrumentationMode;
+import org.robolectric.annotation.InstrumentationMode.Mode;
+import org.robolectric.internal.bytecode.InvokeDynamic;
+import org.robolectric.pluginapi.config.Configurer;
+
+/**
+ * Provides configuration to Robolectric for its &#064;{@link InstrumentationMode} annotation.
+ *
+ * <p>Without a 'robolectric.instrumentationMode' system property, the default follows the older
+ * 'robolectric.invokedynamic.enable' property and the JDK version.
+ */
+@AutoService(Configurer.class)
+public class InstrumentationModeConfigurer implements Configurer<InstrumentationMode.Mode> {
+
+  private Properties systemProperties;
+
+  public InstrumentationModeConfigurer(Properties systemProperties) {
+    this.systemProperties = systemProperties;
+  }
+
+  @Override
+  public Class<InstrumentationMode.Mode> getConfigClass() {
+    return InstrumentationMode.Mode.class;
+  }
+
+  @Nonnull
+  @Override
+  public InstrumentationMode.Mode defaultConfig() {
+    String mode = systemProperties.getProperty("robolectric.instrumentationMode");
+    if (mode != null) {
+      return InstrumentationMode.Mode.valueOf(mode);
+    }
+    return InvokeDynamic.ENABLED ? Mode.INVOKEDYNAMIC : Mode.LEGACY;
+  }
+
+  @Override
+  public InstrumentationMode.Mode getConfigFor(@Nonnull String packageName) {
+    try {
+      Package pkg = Class.forName(packageName + ".package-info").getPackage();
+      return valueFrom(pkg.getAnnotation(InstrumentationMode.class));
+    } catch (ClassNotFoundException e) {
+      // ignore
+    }
+    return null;
+  }
+
+  @Override
+  public InstrumentationMode.Mode getConfigFor(@Nonnull Class<?> testClass) {
+    return valueFrom(testClass.getAnnotation(InstrumentationMode.class));
+  }
+
+  @Override
+  public InstrumentationMode.Mode getConfigFor(@Nonnull Method method) {
+    return valueFrom(method.getAnnotation(InstrumentationMode.class));
+  }
+
+  @Nonnull
+  @Override
+  public InstrumentationMode.Mode merge(
+      @Nonnull InstrumentationMode.Mode parentConfig,
+      @Nonnull InstrumentationMode.Mode childConfig) {
+    // just take the childConfig - since InstrumentationMode only has a single 'value' attribute
+    return childConfig;
+  }
+
+  private Mode valueFrom(InstrumentationMode instrumentationMode) {
+    return instrumentationMode == null ? null : instrumentationMode.value();
+  }
+}
@@ -0,0 +1,56 @@
+package org.robolectric.plugins;
+
+import com.google.auto.service.AutoService;
+import java.lang.reflect.Method;
+import javax.annotation.Nonnull;
+import org.robolectric.annotation.ParcelMode;
+import org.robolectric.pluginapi.config.Configurer;
+
+/** Provides configuration to Robolectric for its &#064;{@link ParcelMode} annotation. */
+@AutoService(Configurer.class)
+public class ParcelModeConfigurer implements Configurer<ParcelMode.Mode> {
+
+  @Override
+  public Class<ParcelMode.Mode> getConfigClass() {
+    return ParcelMode.Mode.class;
+  }
+
+  @Nonnull
+  @Override
+  public ParcelMode.Mode defaultConfig() {
+    return ParcelMode.Mode.TYPED;
+  }
+
+  @Override
+  public ParcelMode.Mode getConfigFor(@Nonnull String packageName) {
+    try {
+      Package pkg = Class.forName(packageName + ".package-info").getPackage();
+      return valueFrom(pkg.getAnnotation(ParcelMode.class));
+    } catch (ClassNotFoundException e) {
+      // ignore
+    }
+    return null;
+  }
+
+  @Override
+  public ParcelMode.Mode getConfigFor(@Nonnull Class<?> testClass) {
+    return valueFrom(testClass.getAnnotation(ParcelMode.class));
+  }
+
+  @Override
+  public ParcelMode.Mode getConfigFor(@Nonnull Method method) {
+    return valueFrom(method.getAnnotation(ParcelMode.class));
+  }
+
+  @Nonnull
+  @Override
+  public ParcelMode.Mode merge(
+      @Nonnull ParcelMode.Mode parentConfig, @Nonnull ParcelMode.Mode childConfig) {
+    // just take the childConfig - since ParcelMode only has a single 'value' attribute
+    return childConfig;
+  }
+
+  private static ParcelMode.Mode valueFrom(ParcelMode parcelMode) {
+    return parcelMode == null ? null : parcelMode.value();
+  }
+}
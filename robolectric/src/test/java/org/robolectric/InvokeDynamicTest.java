@@ -40,6 +40,25 @@ public class InvokeDynamicTest {
     assertThat(shadow.x).isEqualTo(5);
   }
 
+  @Test
+  @Config(shadows = {RealShadow.class})
+  public void shadowedInstanceMethod_manyReceiverClasses() {
+    // More receiver classes than the call site's inline cache holds, twice over.
+    Real[] reals = {
+      new Real(), new RealChild1(), new RealChild2(), new RealChild3(), new RealChild4(),
+      new RealChild5(), new Real(), new RealChild3(), new RealChild5()
+    };
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < reals.length; i++) {
+        int x = 10 * round + i + 1;
+        reals[i].setX(x);
+        RealShadow shadow = Shadow.extract(reals[i]);
+        assertThat(reals[i].x).isEqualTo(-x);
+        assertThat(shadow.x).isEqualTo(x);
+      }
+    }
+  }
+
   @Test
   @Config(shadows = {RealShadow1.class})
   public void rebindShadow1() {
@@ -65,6 +84,20 @@ public class InvokeDynamicTest {
     }
   }
 
+  @Instrument
+  public static class RealChild1 extends Real {}
+
+  @Instrument
+  public static class RealChild2 extends Real {}
+
+  @Instrument
+  public static class RealChild3 extends RealChild2 {}
+
+  public static class RealChild4 extends Real {}
+
+  @Instrument
+  public static class RealChild5 extends Real {}
+
   @Instrument
   public static class RealCopy {
     public int x;
@@ -0,0 +1,65 @@
+package org.robolectric.android.internal;
+
+import static android.os.Build.VERSION_CODES.P;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.pm.PackageParser.Package;
+import android.content.res.Configuration;
+import android.util.DisplayMetrics;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(AndroidJUnit4.class)
+public class ApplicationStateSnapshotTest {
+
+  private final ApplicationStateSnapshot snapshot =
+      new ApplicationStateSnapshot(RuntimeEnvironment.getApiLevel());
+
+  @Test
+  public void applyQualifiers_shouldRestoreSameDeviceConfiguration() {
+    Configuration firstConfiguration = new Configuration();
+    DisplayMetrics firstDisplayMetrics = new DisplayMetrics();
+    snapshot.applyQualifiers("w480dp-h640dp-land", firstConfiguration, firstDisplayMetrics);
+
+    Configuration secondConfiguration = new Configuration();
+    DisplayMetrics secondDisplayMetrics = new DisplayMetrics();
+    snapshot.applyQualifiers("w480dp-h640dp-land", secondConfiguration, secondDisplayMetrics);
+
+    assertThat(secondConfiguration).isEqualTo(firstConfiguration);
+    assertThat(secondConfiguration.orientation).isEqualTo(Configuration.ORIENTATION_LANDSCAPE);
+    assertThat(secondDisplayMetrics.widthPixels).isEqualTo(firstDisplayMetrics.widthPixels);
+    assertThat(secondDisplayMetrics.density).isEqualTo(firstDisplayMetrics.density);
+  }
+
+  @Test
+  @Config(minSdk = P)
+  public void loadPackage_shouldReturnCopyOfSnapshot() {
+    AtomicInteger parseCount = new AtomicInteger();
+    Package first =
+        snapshot.loadPackage(
+            null,
+            "org.robolectric.snapshot",
+            () -> {
+              parseCount.incrementAndGet();
+              Package parsedPackage = new Package("org.robolectric.snapshot");
+              parsedPackage.applicationInfo.targetSdkVersion = 28;
+              return parsedPackage;
+            });
+    // mutations of one test's package shouldn't be visible to the next
+    first.applicationInfo.targetSdkVersion = 1;
+
+    Package second =
+        snapshot.loadPackage(null, "org.robolectric.snapshot", () -> {
+          throw new AssertionError("should have been restored from snapshot");
+        });
+
+    assertThat(parseCount.get()).isEqualTo(1);
+    assertThat(second).isNotSameInstanceAs(first);
+    assertThat(second.packageName).isEqualTo("org.robolectric.snapshot");
+    assertThat(second.applicationInfo.targetSdkVersion).isEqualTo(28);
+  }
+}
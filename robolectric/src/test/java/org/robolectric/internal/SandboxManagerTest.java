@@ -0,0 +1,163 @@
+package org.robolectric.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.annotation.InstrumentationMode;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.pluginapi.Sdk;
+import org.robolectric.pluginapi.SdkProvider;
+import org.robolectric.plugins.SdkCollection;
+import org.robolectric.plugins.StubSdk;
+
+/** Test for {@link SandboxManager}. */
+@RunWith(JUnit4.class)
+public class SandboxManagerTest {
+
+  private final InstrumentationConfiguration config =
+      InstrumentationConfiguration.newBuilder().build();
+  private final Sdk sdk1234 = new StubSdk(1234, true);
+  private final Sdk sdk1235 = new StubSdk(1235, true);
+  private final AtomicInteger buildCount = new AtomicInteger();
+  private SdkCollection sdkCollection;
+
+  @Before
+  public void setUp() throws Exception {
+    SdkProvider sdkProvider = mock(SdkProvider.class);
+    when(sdkProvider.getSdks()).thenReturn(Arrays.asList(sdk1234, sdk1235));
+    sdkCollection = new SdkCollection(sdkProvider);
+  }
+
+  @Test
+  public void getAndroidSandbox_shouldBuildEachSandboxOnce() throws Exception {
+    SandboxManager sandboxManager =
+        new SandboxManager(
+            (instrumentationConfig,
+                runtimeSdk,
+                compileSdk,
+                resourcesMode,
+                looperMode,
+                instrumentationMode) -> {
+              buildCount.incrementAndGet();
+              return mock(AndroidSandbox.class);
+            },
+            sdkCollection);
+
+    AndroidSandbox sandbox1 = get(sandboxManager, sdk1234);
+    AndroidSandbox sandbox2 = get(sandboxManager, sdk1235);
+
+    assertThat(get(sandboxManager, sdk1234)).isSameInstanceAs(sandbox1);
+    assertThat(get(sandboxManager, sdk1235)).isSameInstanceAs(sandbox2);
+    assertThat(sandbox1).isNotSameInstanceAs(sandbox2);
+    assertThat(buildCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void getAndroidSandbox_shouldRetryAfterFailure() throws Exception {
+    SandboxManager sandboxManager =
+        new SandboxManager(
+            (instrumentationConfig,
+                runtimeSdk,
+                compileSdk,
+                resourcesMode,
+                looperMode,
+                instrumentationMode) -> {
+              if (buildCount.incrementAndGet() == 1) {
+                throw new IllegalStateException("first build fails");
+              }
+              return mock(AndroidSandbox.class);
+            },
+            sdkCollection);
+
+    try {
+      get(sandboxManager, sdk1234);
+      fail("should have thrown");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageThat().isEqualTo("first build fails");
+    }
+
+    assertThat(get(sandboxManager, sdk1234)).isNotNull();
+    assertThat(buildCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void getAndroidSandbox_shouldNotShareSandboxesBetweenSlots() throws Exception {
+    SandboxManager sandboxManager =
+        new SandboxManager(
+            (instrumentationConfig,
+                runtimeSdk,
+                compileSdk,
+                resourcesMode,
+                looperMode,
+                instrumentationMode) -> {
+              buildCount.incrementAndGet();
+              return mock(AndroidSandbox.class);
+            },
+            sdkCollection);
+
+    AndroidSandbox slot0Sandbox = get(sandboxManager, sdk1234);
+    AtomicReference<AndroidSandbox> slot1Sandbox = new AtomicReference<>();
+    Thread thread =
+        new Thread(
+            () -> {
+              SandboxManager.setSandboxSlot(1);
+              slot1Sandbox.set(get(sandboxManager, sdk1234));
+            });
+    thread.start();
+    thread.join();
+
+    assertThat(slot1Sandbox.get()).isNotNull();
+    assertThat(slot1Sandbox.get()).isNotSameInstanceAs(slot0Sandbox);
+    assertThat(get(sandboxManager, sdk1234)).isSameInstanceAs(slot0Sandbox);
+    assertThat(buildCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void getAndroidSandbox_shouldNotShareSandboxesBetweenInstrumentationModes()
+      throws Exception {
+    List<InstrumentationMode.Mode> builtModes = new ArrayList<>();
+    SandboxManager sandboxManager =
+        new SandboxManager(
+            (instrumentationConfig,
+                runtimeSdk,
+                compileSdk,
+                resourcesMode,
+                looperMode,
+                instrumentationMode) -> {
+              builtModes.add(instrumentationMode);
+              return mock(AndroidSandbox.class);
+            },
+            sdkCollection);
+
+    AndroidSandbox invokeDynamicSandbox = get(sandboxManager, sdk1234);
+    AndroidSandbox legacySandbox = get(sandboxManager, sdk1234, InstrumentationMode.Mode.LEGACY);
+
+    assertThat(legacySandbox).isNotSameInstanceAs(invokeDynamicSandbox);
+    assertThat(get(sandboxManager, sdk1234)).isSameInstanceAs(invokeDynamicSandbox);
+    assertThat(builtModes)
+        .containsExactly(InstrumentationMode.Mode.INVOKEDYNAMIC, InstrumentationMode.Mode.LEGACY)
+        .inOrder();
+  }
+
+  private AndroidSandbox get(SandboxManager sandboxManager, Sdk sdk) {
+    return get(sandboxManager, sdk, InstrumentationMode.Mode.INVOKEDYNAMIC);
+  }
+
+  private AndroidSandbox get(
+      SandboxManager sandboxManager, Sdk sdk, InstrumentationMode.Mode instrumentationMode) {
+    return sandboxManager.getAndroidSandbox(
+        config, sdk, ResourcesMode.BINARY, LooperMode.Mode.PAUSED, instrumentationMode);
+  }
+}
@@ -56,6 +56,13 @@ public class InstrumentationConfigurationTest {
     assertThat(config.shouldInstrument(wrap("org.kxml2.io.KXmlParser"))).isTrue();
   }
 
+  @Test
+  public void isInstrumentedByName_shouldOnlyApplyNameBasedRules() {
+    assertThat(config.isInstrumentedByName("android.content.Intent")).isTrue();
+    assertThat(config.isInstrumentedByName("com.google.android.apps.Foo")).isFalse();
+    assertThat(config.isInstrumentedByName("java.lang.String")).isFalse();
+  }
+
   @Test
   public void shouldAcquireAndroidRClasses() throws Exception {
     assertThat(config.shouldAcquire("android.Rfoo")).isTrue();
@@ -178,6 +185,36 @@ public class InstrumentationConfigurationTest {
 
   }
 
+  @Test
+  public void fromCacheKey_shouldRoundTrip() throws Exception {
+    InstrumentationConfiguration customConfig =
+        new InstrumentationConfiguration.Builder(config)
+            .addInstrumentedClass("com.whatever.SomeClassNameToInstrument")
+            .setDoNotInstrumentClassRegex(".*_Delegate|.*_BadThings")
+            .build();
+
+    InstrumentationConfiguration parsed =
+        InstrumentationConfiguration.fromCacheKey(customConfig.getCacheKey());
+
+    assertThat(parsed.getCacheKey()).isEqualTo(customConfig.getCacheKey());
+  }
+
+  @Test
+  public void preinstrumentedJarSpec_shouldRebuildConfigAndInstrumentor() throws Exception {
+    ClassInstrumentor instrumentor = new InvokeDynamicClassInstrumentor(new ShadowDecorator());
+    String spec = PreinstrumentedJar.specFor(config, instrumentor);
+
+    assertThat(PreinstrumentedJar.parseConfiguration(spec).getCacheKey())
+        .isEqualTo(config.getCacheKey());
+    assertThat(PreinstrumentedJar.parseInstrumentor(spec))
+        .isInstanceOf(InvokeDynamicClassInstrumentor.class);
+    assertThat(
+            PreinstrumentedJar.specFor(
+                PreinstrumentedJar.parseConfiguration(spec),
+                PreinstrumentedJar.parseInstrumentor(spec)))
+        .isEqualTo(spec);
+  }
+
   private MutableClass wrap(final String className) {
     MutableClass info = mock(MutableClass.class);
     when(info.getName()).thenReturn(className);
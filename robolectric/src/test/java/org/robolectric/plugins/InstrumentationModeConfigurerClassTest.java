@@ -0,0 +1,44 @@
+package org.robolectric.plugins;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.InstrumentationMode;
+import org.robolectric.annotation.InstrumentationMode.Mode;
+import org.robolectric.config.ConfigurationRegistry;
+
+/**
+ * Unit tests for classes annotated with @InstrumentationMode.
+ */
+@RunWith(AndroidJUnit4.class)
+@InstrumentationMode(Mode.LEGACY)
+public class InstrumentationModeConfigurerClassTest {
+
+  @Test
+  public void defaultsToClass() {
+    assertThat(ConfigurationRegistry.get(InstrumentationMode.Mode.class))
+        .isSameInstanceAs(Mode.LEGACY);
+    assertShadowsAreCalled();
+  }
+
+  @Test
+  @InstrumentationMode(Mode.INVOKEDYNAMIC)
+  public void overriddenAtMethod() {
+    assertThat(ConfigurationRegistry.get(InstrumentationMode.Mode.class))
+        .isSameInstanceAs(Mode.INVOKEDYNAMIC);
+    assertShadowsAreCalled();
+  }
+
+  private static void assertShadowsAreCalled() {
+    AtomicBoolean ran = new AtomicBoolean();
+    new Handler(Looper.getMainLooper()).post(() -> ran.set(true));
+    shadowOf(Looper.getMainLooper()).idle();
+    assertThat(ran.get()).isTrue();
+  }
+}
@@ -0,0 +1,35 @@
+package org.robolectric.plugins;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Properties;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.annotation.InstrumentationMode;
+import org.robolectric.internal.bytecode.InvokeDynamic;
+
+/**
+ * Unit tests for methods annotated with @InstrumentationMode.
+ */
+@RunWith(JUnit4.class)
+public class InstrumentationModeConfigurerTest {
+
+  @Test
+  public void defaultConfig() {
+    Properties systemProperties = new Properties();
+    InstrumentationModeConfigurer configurer = new InstrumentationModeConfigurer(systemProperties);
+    assertThat(configurer.defaultConfig())
+        .isSameInstanceAs(
+            InvokeDynamic.ENABLED
+                ? InstrumentationMode.Mode.INVOKEDYNAMIC
+                : InstrumentationMode.Mode.LEGACY);
+
+    systemProperties.setProperty("robolectric.instrumentationMode", "LEGACY");
+    assertThat(configurer.defaultConfig()).isSameInstanceAs(InstrumentationMode.Mode.LEGACY);
+
+    systemProperties.setProperty("robolectric.instrumentationMode", "INVOKEDYNAMIC");
+    assertThat(configurer.defaultConfig())
+        .isSameInstanceAs(InstrumentationMode.Mode.INVOKEDYNAMIC);
+  }
+}
@@ -2,6 +2,7 @@ package org.robolectric.shadows;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import android.database.Cursor;
 import android.database.CursorWindow;
 import android.database.DatabaseUtils;
 import android.database.MatrixCursor;
@@ -42,4 +43,57 @@ public class ShadowCursorWindowTest {
 
     assertThat(window.getBlob(2, 3)).isEqualTo(new byte[]{});
   }
+
+  @Test
+  public void shouldGrowPastInitialRowCapacity() throws Exception {
+    CursorWindow window = new CursorWindow("name");
+    window.setNumColumns(3);
+    for (int i = 0; i < 100; i++) {
+      assertThat(window.allocRow()).isTrue();
+      assertThat(window.putLong(i, i, 0)).isTrue();
+      assertThat(window.putDouble(i / 2.0, i, 1)).isTrue();
+      assertThat(window.putString("row" + i, i, 2)).isTrue();
+    }
+
+    assertThat(window.getNumRows()).isEqualTo(100);
+    for (int i = 0; i < 100; i++) {
+      assertThat(window.getLong(i, 0)).isEqualTo(i);
+      assertThat(window.getDouble(i, 1)).isEqualTo(i / 2.0);
+      assertThat(window.getString(i, 2)).isEqualTo("row" + i);
+    }
+  }
+
+  @Test
+  public void shouldConvertBetweenTypes() throws Exception {
+    CursorWindow window = new CursorWindow("name");
+    window.setNumColumns(4);
+    window.allocRow();
+    window.putLong(42, 0, 0);
+    window.putDouble(2.5, 0, 1);
+    window.putString("7", 0, 2);
+    window.putNull(0, 3);
+
+    assertThat(window.getString(0, 0)).isEqualTo("42");
+    assertThat(window.getDouble(0, 0)).isEqualTo(42.0);
+    assertThat(window.getString(0, 1)).isEqualTo("2.5");
+    assertThat(window.getLong(0, 1)).isEqualTo(2L);
+    assertThat(window.getLong(0, 2)).isEqualTo(7L);
+    assertThat(window.getLong(0, 3)).isEqualTo(0L);
+    assertThat(window.getString(0, 3)).isNull();
+  }
+
+  @Test
+  public void clear_shouldRemoveAllRows() throws Exception {
+    CursorWindow window = new CursorWindow("name");
+    window.setNumColumns(1);
+    window.allocRow();
+    window.putString("hello", 0, 0);
+
+    window.clear();
+    assertThat(window.getNumRows()).isEqualTo(0);
+
+    window.setNumColumns(1);
+    window.allocRow();
+    assertThat(window.getType(0, 0)).isEqualTo(Cursor.FIELD_TYPE_NULL);
+  }
 }
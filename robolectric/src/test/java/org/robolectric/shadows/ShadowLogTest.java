@@ -304,6 +304,64 @@ public class ShadowLogTest {
     assertThat(ShadowLog.getLogs()).isEmpty();
   }
 
+  @Test
+  public void setMaxLogs_shouldRetainMostRecentLogs() {
+    ShadowLog.setMaxLogs(2);
+
+    Log.d("tag1", "1");
+    Log.d("tag2", "2");
+    Log.d("tag1", "3");
+
+    assertThat(ShadowLog.getLogs())
+        .containsExactly(
+            new LogItem(Log.DEBUG, "tag2", "2", null), new LogItem(Log.DEBUG, "tag1", "3", null))
+        .inOrder();
+    assertThat(ShadowLog.getDroppedLogCount()).isEqualTo(1);
+    assertThat(ShadowLog.getLogsForTag("tag1")).hasSize(2);
+  }
+
+  @Test
+  public void setMaxLogsPerTag_shouldRetainMostRecentLogsForEachTag() {
+    Log.d("tag1", "1");
+    Log.d("tag1", "2");
+    Log.d("tag2", "3");
+
+    ShadowLog.setMaxLogsPerTag(1);
+    Log.d("tag1", "4");
+
+    assertThat(ShadowLog.getLogsForTag("tag1"))
+        .containsExactly(new LogItem(Log.DEBUG, "tag1", "4", null));
+    assertThat(ShadowLog.getLogsForTag("tag2"))
+        .containsExactly(new LogItem(Log.DEBUG, "tag2", "3", null));
+    assertThat(ShadowLog.getDroppedLogCountForTag("tag1")).isEqualTo(2);
+    assertThat(ShadowLog.getDroppedLogCountForTag("tag2")).isEqualTo(0);
+    assertThat(ShadowLog.getLogs()).hasSize(4);
+    assertThat(ShadowLog.getDroppedLogCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void setMaxLogsPerTag_shouldApplyToNullTag() {
+    ShadowLog.setMaxLogsPerTag(1);
+
+    Log.println(Log.INFO, null, "1");
+    Log.println(Log.INFO, null, "2");
+
+    assertThat(ShadowLog.getLogsForTag(null))
+        .containsExactly(new LogItem(Log.INFO, null, "2", null));
+  }
+
+  @Test
+  public void reset_shouldRetainEveryLogAgain() {
+    ShadowLog.setMaxLogs(1);
+    ShadowLog.reset();
+
+    Log.d("tag", "1");
+    Log.d("tag", "2");
+
+    assertThat(ShadowLog.getLogs()).hasSize(2);
+    assertThat(ShadowLog.getDroppedLogCount()).isEqualTo(0);
+  }
+
   @Test
   public void shouldLogTimeWithTimeSupplier() {
     ShadowLog.setTimeSupplier(
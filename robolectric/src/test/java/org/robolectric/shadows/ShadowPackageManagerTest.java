@@ -1050,6 +1050,87 @@ public class ShadowPackageManagerTest {
     assertThat(intent.resolveActivity(packageManager)).isNull();
   }
 
+  @Test
+  public void queryIntentActivities_matchesAmongManyFilters() throws Exception {
+    for (int i = 0; i < 50; i++) {
+      ComponentName deepLinkComponent = new ComponentName("package", "DeepLink" + i);
+      IntentFilter deepLinkFilter = new IntentFilter(Intent.ACTION_VIEW);
+      deepLinkFilter.addDataScheme("https");
+      deepLinkFilter.addDataAuthority("host" + i + ".com", null);
+      shadowOf(packageManager).addActivityIfNotPresent(deepLinkComponent);
+      shadowOf(packageManager).addIntentFilterForActivity(deepLinkComponent, deepLinkFilter);
+    }
+    ComponentName imageComponent = new ComponentName("package", "Image");
+    IntentFilter imageFilter = new IntentFilter(Intent.ACTION_VIEW);
+    imageFilter.addDataType("image/*");
+    shadowOf(packageManager).addActivityIfNotPresent(imageComponent);
+    shadowOf(packageManager).addIntentFilterForActivity(imageComponent, imageFilter);
+    ComponentName anyTypeComponent = new ComponentName("package", "AnyType");
+    IntentFilter anyTypeFilter = new IntentFilter(Intent.ACTION_VIEW);
+    anyTypeFilter.addDataType("*/*");
+    shadowOf(packageManager).addActivityIfNotPresent(anyTypeComponent);
+    shadowOf(packageManager).addIntentFilterForActivity(anyTypeComponent, anyTypeFilter);
+
+    List<ResolveInfo> deepLinks =
+        packageManager.queryIntentActivities(
+            new Intent(Intent.ACTION_VIEW, Uri.parse("https://host7.com/path")), 0);
+    assertThat(deepLinks).hasSize(1);
+    assertThat(deepLinks.get(0).activityInfo.name).isEqualTo("DeepLink7");
+
+    List<ResolveInfo> images =
+        packageManager.queryIntentActivities(
+            new Intent(Intent.ACTION_VIEW).setType("image/png"), 0);
+    List<String> imageActivityNames = new ArrayList<>();
+    for (ResolveInfo resolveInfo : images) {
+      imageActivityNames.add(resolveInfo.activityInfo.name);
+    }
+    assertThat(imageActivityNames).containsExactly("Image", "AnyType");
+
+    assertThat(
+            packageManager.queryIntentActivities(
+                new Intent(Intent.ACTION_VIEW, Uri.parse("https://unknown.com")), 0))
+        .isEmpty();
+  }
+
+  @Test
+  public void queryIntentActivities_removedFiltersNoLongerMatch() throws Exception {
+    ComponentName testComponent = new ComponentName("package", "name");
+    shadowOf(packageManager).addActivityIfNotPresent(testComponent);
+    shadowOf(packageManager).addIntentFilterForActivity(testComponent, new IntentFilter("ACTION"));
+    Intent intent = new Intent("ACTION");
+    assertThat(packageManager.queryIntentActivities(intent, 0)).hasSize(1);
+
+    shadowOf(packageManager).clearIntentFilterForActivity(testComponent);
+    assertThat(packageManager.queryIntentActivities(intent, 0)).isEmpty();
+
+    shadowOf(packageManager).addIntentFilterForActivity(testComponent, new IntentFilter("ACTION"));
+    assertThat(packageManager.queryIntentActivities(intent, 0)).hasSize(1);
+
+    shadowOf(packageManager).removeActivity(testComponent);
+    assertThat(packageManager.queryIntentActivities(intent, 0)).isEmpty();
+  }
+
+  @Test
+  public void queryIntentActivities_filtersChangedAfterAddingStillMatch() throws Exception {
+    ComponentName testComponent = new ComponentName("package", "name");
+    IntentFilter filter = new IntentFilter("ACTION");
+    shadowOf(packageManager).addActivityIfNotPresent(testComponent);
+    shadowOf(packageManager).addIntentFilterForActivity(testComponent, filter);
+    assertThat(packageManager.queryIntentActivities(new Intent("OTHER_ACTION"), 0)).isEmpty();
+
+    filter.addAction("OTHER_ACTION");
+    filter.addDataScheme("https");
+    assertThat(packageManager.queryIntentActivities(new Intent("OTHER_ACTION"), 0)).isEmpty();
+    assertThat(
+            packageManager.queryIntentActivities(
+                new Intent("OTHER_ACTION", Uri.parse("https://example.com")), 0))
+        .hasSize(1);
+    assertThat(
+            packageManager.queryIntentActivities(
+                new Intent("ACTION", Uri.parse("https://example.com")), 0))
+        .hasSize(1);
+  }
+
   @Test
   public void resolveActivity_NoMatch() throws Exception {
     Intent i = new Intent();
@@ -0,0 +1,192 @@
+package org.robolectric.shadows;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.Parcel;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.ParcelMode;
+import org.robolectric.shadows.ShadowParcel.UnreliableBehaviorError;
+import org.robolectric.util.ReflectionHelpers;
+
+@RunWith(AndroidJUnit4.class)
+@ParcelMode(ParcelMode.Mode.COMPACT)
+public class ShadowParcelCompactModeTest {
+
+  private Parcel parcel;
+
+  @Before
+  public void setup() {
+    parcel = Parcel.obtain();
+  }
+
+  @After
+  public void tearDown() {
+    parcel.recycle();
+  }
+
+  @Test
+  public void shouldLayOutValuesLikeRealParcel() {
+    parcel.writeInt(1);
+    parcel.writeLong(2L);
+    parcel.writeString("abc");
+    parcel.writeByteArray(new byte[] {1, 2, 3, 4, 5});
+
+    // 4 + 8 + (4 + 4 * 2) + (4 + 8)
+    assertThat(parcel.dataSize()).isEqualTo(40);
+    parcel.setDataPosition(0);
+    assertThat(parcel.readInt()).isEqualTo(1);
+    assertThat(parcel.readLong()).isEqualTo(2L);
+    assertThat(parcel.readString()).isEqualTo("abc");
+    assertThat(parcel.createByteArray()).isEqualTo(new byte[] {1, 2, 3, 4, 5});
+    assertThat(parcel.dataAvail()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldRoundTripLargeByteArrayThroughMarshalling() {
+    byte[] bytes = new byte[1 << 20];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    parcel.writeByteArray(bytes);
+    parcel.writeString(null);
+    parcel.writeDouble(1.5);
+    byte[] marshalled = parcel.marshall();
+
+    Parcel other = Parcel.obtain();
+    try {
+      other.unmarshall(marshalled, 0, marshalled.length);
+      other.setDataPosition(0);
+      assertThat(other.createByteArray()).isEqualTo(bytes);
+      assertThat(other.readString()).isNull();
+      assertThat(other.readDouble()).isEqualTo(1.5);
+    } finally {
+      other.recycle();
+    }
+  }
+
+  @Test
+  public void shouldRoundTripBundle() {
+    Bundle bundle = new Bundle();
+    bundle.putString("key", "value");
+    bundle.putIntArray("ints", new int[] {1, 2, 3});
+    parcel.writeBundle(bundle);
+    parcel.setDataPosition(0);
+
+    Bundle result = parcel.readBundle(getClass().getClassLoader());
+    assertThat(result.getString("key")).isEqualTo("value");
+    assertThat(result.getIntArray("ints")).isEqualTo(new int[] {1, 2, 3});
+  }
+
+  @Test
+  public void shouldReadBinders() {
+    Binder binder = new Binder();
+    parcel.writeStrongBinder(binder);
+    parcel.setDataPosition(0);
+
+    assertThat(parcel.readStrongBinder()).isSameInstanceAs(binder);
+    assertThrows(RuntimeException.class, () -> parcel.marshall());
+  }
+
+  @Test
+  public void shouldThrowWhenReadingValueAsDifferentType() {
+    parcel.writeLong(Long.MAX_VALUE);
+    parcel.setDataPosition(0);
+
+    RuntimeException e = assertThrows(RuntimeException.class, () -> parcel.readString());
+    assertThat(e).hasCauseThat().isInstanceOf(UnreliableBehaviorError.class);
+  }
+
+  @Test
+  public void shouldAllowReadingZeroesAsAnyType() {
+    parcel.writeLong(0L);
+    parcel.setDataPosition(0);
+
+    assertThat(parcel.readInt()).isEqualTo(0);
+    assertThat(parcel.readInt()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldThrowWhenReadingPastEndWithoutRewinding() {
+    parcel.writeInt(1);
+
+    assertThrows(UnreliableBehaviorError.class, () -> parcel.readInt());
+  }
+
+  @Test
+  public void shouldAllowReinterpretingUnmarshalledData() {
+    parcel.writeLong(0x0000000200000001L);
+    byte[] marshalled = parcel.marshall();
+
+    Parcel other = Parcel.obtain();
+    try {
+      other.unmarshall(marshalled, 0, marshalled.length);
+      other.setDataPosition(0);
+      assertThat(other.readInt()).isEqualTo(1);
+      assertThat(other.readInt()).isEqualTo(2);
+    } finally {
+      other.recycle();
+    }
+  }
+
+  @Test
+  public void shouldAppendFrom() {
+    Parcel other = Parcel.obtain();
+    try {
+      other.writeInt(1);
+      other.writeString("two");
+      parcel.writeInt(0);
+      parcel.appendFrom(other, 0, other.dataSize());
+      parcel.setDataPosition(0);
+
+      assertThat(parcel.readInt()).isEqualTo(0);
+      assertThat(parcel.readInt()).isEqualTo(1);
+      assertThat(parcel.readString()).isEqualTo("two");
+    } finally {
+      other.recycle();
+    }
+  }
+
+  @Test
+  public void pooledParcelFromEarlierTest_shouldUseCurrentMode() {
+    // recycle a parcel into Parcel's pool as though from an earlier test in TYPED mode
+    ReflectionHelpers.setStaticField(ShadowParcel.class, "parcelMode", ParcelMode.Mode.TYPED);
+    Parcel typed = Parcel.obtain();
+    typed.recycle();
+    ShadowParcel.reset();
+
+    Parcel pooled = Parcel.obtain();
+    try {
+      parcel.writeInt(42);
+      pooled.appendFrom(parcel, 0, parcel.dataSize());
+      pooled.setDataPosition(0);
+      assertThat(pooled.readInt()).isEqualTo(42);
+    } finally {
+      pooled.recycle();
+    }
+  }
+
+  @Test
+  public void parcelFromEarlierTest_shouldUseCurrentModeOnceRecycled() {
+    ReflectionHelpers.setStaticField(ShadowParcel.class, "parcelMode", ParcelMode.Mode.TYPED);
+    Parcel typed = Parcel.obtain();
+    ShadowParcel.reset();
+
+    typed.recycle();
+    Parcel pooled = Parcel.obtain();
+    try {
+      parcel.writeInt(42);
+      pooled.appendFrom(parcel, 0, parcel.dataSize());
+      pooled.setDataPosition(0);
+      assertThat(pooled.readInt()).isEqualTo(42);
+    } finally {
+      pooled.recycle();
+    }
+  }
+}
@@ -17,6 +17,8 @@ import android.os.Looper;
 import android.os.SystemClock;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
@@ -153,6 +155,38 @@ public class ShadowPausedLooperTest {
     verify(mockRunnable, times(1)).run();
   }
 
+  @Test
+  public void postedDelayedBackgroundLooperTasksAreExecutedWhenSystemClockAdvanced() {
+    Runnable mockRunnable = mock(Runnable.class);
+    new Handler(handlerThread.getLooper()).postDelayed(mockRunnable, 10);
+    verify(mockRunnable, timeout(20).times(0)).run();
+
+    SystemClock.setCurrentTimeMillis(SystemClock.uptimeMillis() + 100);
+    verify(mockRunnable, timeout(1000).times(1)).run();
+  }
+
+  @Test
+  public void idleFor_backgroundLooperExecutesTasksInBackgroundThreadTaskByTask() {
+    shadowOf(handlerThread.getLooper()).pause();
+    Handler handler = new Handler(handlerThread.getLooper());
+    List<Long> runTimes = new ArrayList<>();
+    Ref<Thread> threadRef = new Ref<>(null);
+    Runnable runnable =
+        () -> {
+          runTimes.add(SystemClock.uptimeMillis());
+          threadRef.set(Thread.currentThread());
+        };
+    long startTime = SystemClock.uptimeMillis();
+    handler.postDelayed(runnable, 100);
+    handler.postDelayed(runnable, 200);
+
+    shadowOf(handlerThread.getLooper()).idleFor(Duration.ofMillis(250));
+
+    assertThat(runTimes).containsExactly(startTime + 100, startTime + 200).inOrder();
+    assertThat(threadRef.get()).isEqualTo(handlerThread.getLooper().getThread());
+    assertThat(SystemClock.uptimeMillis()).isEqualTo(startTime + 250);
+  }
+
   @Test
   public void cannotIdleMainThreadFromBackgroundThread() throws InterruptedException {
     ExecutorService executorService = newSingleThreadExecutor();
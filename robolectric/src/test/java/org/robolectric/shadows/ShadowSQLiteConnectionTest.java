@@ -8,6 +8,8 @@ import static org.robolectric.shadows.ShadowSQLiteConnection.convertSQLWithLocal
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteBindOrColumnIndexOutOfRangeException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatatypeMismatchException;
 import android.database.sqlite.SQLiteStatement;
@@ -19,6 +21,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -187,6 +192,47 @@ public class ShadowSQLiteConnectionTest {
     statement2.execute();
   }
 
+  @Test
+  public void batchedBind_failureIsReportedByNextExecution() {
+    long statementPtr =
+        ShadowSQLiteConnection.nativePrepareStatement(ptr, "select * from routine where id = ?");
+    ShadowSQLiteConnection.nativeBindLong(ptr, statementPtr, 2, 1L);
+    try {
+      ShadowSQLiteConnection.nativeExecute(ptr, statementPtr);
+      fail();
+    } catch (SQLiteBindOrColumnIndexOutOfRangeException expected) {
+      assertThat(expected).hasMessageThat().contains("bind long at index 2");
+    }
+    ShadowSQLiteConnection.nativeFinalizeStatement(ptr, statementPtr);
+  }
+
+  @Test
+  public void separateDatabases_canBeUsedConcurrently() throws Exception {
+    SQLiteDatabase otherDatabase = createDatabase("other.db");
+    otherDatabase.execSQL("CREATE TABLE other (name VARCHAR)");
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> first = executorService.submit(() -> insertRows(database, "routine"));
+      Future<?> second = executorService.submit(() -> insertRows(otherDatabase, "other"));
+      first.get();
+      second.get();
+    } finally {
+      executorService.shutdown();
+    }
+
+    assertThat(DatabaseUtils.queryNumEntries(database, "routine")).isEqualTo(100);
+    assertThat(DatabaseUtils.queryNumEntries(otherDatabase, "other")).isEqualTo(100);
+    otherDatabase.close();
+  }
+
+  private static void insertRows(SQLiteDatabase db, String table) {
+    for (int i = 0; i < 100; i++) {
+      ContentValues values = new ContentValues(1);
+      values.put("name", table + i);
+      db.insert(table, null, values);
+    }
+  }
+
   private SQLiteDatabase createDatabase(String filename) {
     databasePath = ApplicationProvider.getApplicationContext().getDatabasePath(filename);
     databasePath.getParentFile().mkdirs();
@@ -0,0 +1,100 @@
+package org.robolectric;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Produces a class data sharing (CDS) archive of the classes a test run loads, including the
+ * instrumented Android classes defined from pre-instrumented jars.
+ *
+ * <p>Test forks started with {@code -XX:SharedArchiveFile=<archive>} then map the archived class
+ * metadata instead of parsing and verifying every class again, and share those pages with the
+ * other forks on the same machine. Archiving classes defined by custom class loaders such as {@link
+ * org.robolectric.internal.bytecode.SandboxClassLoader} requires JDK 13 or later.
+ *
+ * <p>Only classes defined from {@link org.robolectric.internal.bytecode.PreinstrumentedJar}s can be
+ * shared between sandboxes this way, so this should be used together with the {@code
+ * robolectric.preinstrumentedJars.dir} system property, and the pre-instrumented jars must not
+ * change after the archive is made.
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; -Drobolectric.preinstrumentedJars.dir=&lt;dir&gt; \
+ *     org.robolectric.ClassDataSharingArchiver robolectric.jsa \
+ *     org.junit.runner.JUnitCore com.example.SomeRepresentativeTest
+ * </pre>
+ *
+ * <p>The given main class is run in a new JVM with the same class path and {@code robolectric.*}
+ * system properties as this one, and the archive is written when it exits.
+ */
+public class ClassDataSharingArchiver {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println(
+          "Usage: ClassDataSharingArchiver <archive file> <training main class> [args...]");
+      System.exit(1);
+    }
+
+    File archiveFile = new File(args[0]).getAbsoluteFile();
+    List<String> command =
+        buildCommand(
+            System.getProperty("java.home"),
+            System.getProperty("java.class.path"),
+            System.getProperties(),
+            archiveFile,
+            args[1],
+            Arrays.asList(args).subList(2, args.length));
+    System.out.println("Writing class data sharing archive " + archiveFile);
+
+    Process process = new ProcessBuilder(command).inheritIO().start();
+    System.exit(reportResult(archiveFile, process.waitFor(), System.out, System.err));
+  }
+
+  /**
+   * Returns the command line for the training run: the {@code java} binary under {@code javaHome},
+   * told to archive at exit, with the {@code robolectric.*} entries of {@code properties} (sorted
+   * by name) and {@code classPath}.
+   */
+  static List<String> buildCommand(
+      String javaHome,
+      String classPath,
+      Properties properties,
+      File archiveFile,
+      String mainClass,
+      List<String> mainArgs) {
+    List<String> command = new ArrayList<>();
+    command.add(javaHome + File.separator + "bin" + File.separator + "java");
+    command.add("-XX:ArchiveClassesAtExit=" + archiveFile);
+    for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+      if (name.startsWith("robolectric.")) {
+        command.add("-D" + name + "=" + properties.getProperty(name));
+      }
+    }
+    command.add("-cp");
+    command.add(classPath);
+    command.add(mainClass);
+    command.addAll(mainArgs);
+    return command;
+  }
+
+  /**
+   * Reports the outcome of a training run which exited with {@code exitCode}, and returns the
+   * status to exit with: nonzero if the run failed or didn't write {@code archiveFile}.
+   */
+  static int reportResult(File archiveFile, int exitCode, PrintStream out, PrintStream err) {
+    if (exitCode != 0) {
+      err.println("Training run exited with " + exitCode);
+    }
+    if (!archiveFile.exists()) {
+      err.println("No archive was written; dynamic archiving requires JDK 13 or later.");
+      return exitCode == 0 ? 1 : exitCode;
+    }
+    out.println("Run tests with -XX:SharedArchiveFile=" + archiveFile);
+    return exitCode;
+  }
+}
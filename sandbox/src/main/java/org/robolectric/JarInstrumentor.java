@@ -1,54 +1,87 @@
 package org.robolectric;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
+import org.robolectric.internal.bytecode.ClassInstrumentor;
 import org.robolectric.internal.bytecode.ClassNodeProvider;
 import org.robolectric.internal.bytecode.InstrumentationConfiguration;
 import org.robolectric.internal.bytecode.InstrumentationConfiguration.Builder;
-import org.robolectric.internal.bytecode.OldClassInstrumentor;
+import org.robolectric.internal.bytecode.InvokeDynamic;
+import org.robolectric.internal.bytecode.MutableClass;
+import org.robolectric.internal.bytecode.PreinstrumentedJar;
 import org.robolectric.internal.bytecode.ShadowDecorator;
 import org.robolectric.util.Util;
 
 /**
  * Instruments an entire jar.
+ *
+ * <p>When given a spec file written by a sandbox (see {@link PreinstrumentedJar}), the output is a
+ * pre-instrumented jar which sandboxes with the same configuration load classes from directly.
  */
 public class JarInstrumentor {
 
+  /**
+   * Modification time of every entry in an instrumented jar, so that instrumenting the same jar
+   * the same way always produces an identical file, wherever and whenever it's done.
+   */
+  private static final long ENTRY_TIME_MS = 315532800000L; // 1980-01-01T00:00:00Z
+
   private final InstrumentationConfiguration instrumentationConfiguration;
-  private final ShadowDecorator shadowDecorator;
-  private final OldClassInstrumentor classInstrumentor;
+  private final ClassInstrumentor classInstrumentor;
 
   public JarInstrumentor() {
-    instrumentationConfiguration = createInstrumentationConfiguration();
-    shadowDecorator = new ShadowDecorator();
-    classInstrumentor = new OldClassInstrumentor(shadowDecorator);
+    this(
+        createInstrumentationConfiguration(),
+        InvokeDynamic.newClassInstrumentor(InvokeDynamic.ENABLED, new ShadowDecorator()));
   }
 
-  public static void main(String[] args) throws Exception {
-    new JarInstrumentor().run(args);
+  public JarInstrumentor(
+      InstrumentationConfiguration instrumentationConfiguration,
+      ClassInstrumentor classInstrumentor) {
+    this.instrumentationConfiguration = instrumentationConfiguration;
+    this.classInstrumentor = classInstrumentor;
   }
 
-  private void run(String[] args) throws IOException {
-    if (args.length != 2) {
-      System.err.println("Usage: JarInstrumentor <source jar> <dest jar>");
+  public static void main(String[] args) throws Exception {
+    if (args.length == 4 && args[0].equals("--spec")) {
+      String spec = new String(Files.readAllBytes(Paths.get(args[1])), UTF_8);
+      File sourceFile = new File(args[2]);
+      File destFile = new File(args[3]);
+      if (destFile.isDirectory()) {
+        destFile = new File(destFile,
+            PreinstrumentedJar.jarFileNameFor(sourceFile.toPath(), PreinstrumentedJar.keyFor(spec)));
+      }
+      new JarInstrumentor(
+              PreinstrumentedJar.parseConfiguration(spec), PreinstrumentedJar.parseInstrumentor(spec))
+          .instrumentJar(sourceFile, destFile);
+    } else if (args.length == 2) {
+      new JarInstrumentor().instrumentJar(new File(args[0]), new File(args[1]));
+    } else {
+      System.err.println("Usage: JarInstrumentor [--spec <spec file>] <source jar> <dest jar>");
       System.exit(1);
     }
-
-    instrumentJar(new File(args[0]), new File(args[1]));
   }
 
-  private void instrumentJar(File sourceFile, File destFile) throws IOException {
+  public void instrumentJar(File sourceFile, File destFile) throws IOException {
     long startNs = System.nanoTime();
     JarFile jarFile = new JarFile(sourceFile);
     ClassNodeProvider classNodeProvider =
@@ -57,8 +90,23 @@ public class JarInstrumentor {
           protected byte[] getClassBytes(String className) throws ClassNotFoundException {
             return JarInstrumentor.getClassBytes(className, jarFile);
           }
+
+          @Override
+          protected String getClassSourceKey(String className) {
+            String classFilename = className.replace('.', '/') + ".class";
+            return jarFile.getEntry(classFilename) == null
+                ? null
+                : "jar:" + sourceFile.toURI() + "!/" + classFilename;
+          }
         };
 
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().putValue(
+        PreinstrumentedJar.INSTRUMENTATION_KEY_ATTRIBUTE,
+        PreinstrumentedJar.keyFor(
+            PreinstrumentedJar.specFor(instrumentationConfiguration, classInstrumentor)));
+
     int nonClassCount = 0;
     int classCount = 0;
     Set<String> failedClasses = new TreeSet<>();
@@ -66,13 +114,18 @@ public class JarInstrumentor {
         new JarOutputStream(
             new BufferedOutputStream(new FileOutputStream(destFile), 32 * 1024))) {
       System.out.println("Instrumenting from " + sourceFile + " to " + destFile);
-      Enumeration<JarEntry> entries = jarFile.entries();
-      while (entries.hasMoreElements()) {
-        JarEntry jarEntry = entries.nextElement();
+      jarOut.putNextEntry(newJarEntry(JarFile.MANIFEST_NAME));
+      manifest.write(jarOut);
 
+      // Write entries in a stable order, so the output doesn't depend on the source jar's layout.
+      List<JarEntry> entries = Collections.list(jarFile.entries());
+      entries.sort(Comparator.comparing(JarEntry::getName));
+      for (JarEntry jarEntry : entries) {
         String name = jarEntry.getName();
-        if (name.endsWith("/")) {
-          jarOut.putNextEntry(new JarEntry(name));
+        if (name.equals(JarFile.MANIFEST_NAME)) {
+          continue;
+        } else if (name.endsWith("/")) {
+          jarOut.putNextEntry(newJarEntry(name));
         } else if (name.endsWith(".class")) {
           String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
 
@@ -84,10 +137,15 @@ public class JarInstrumentor {
 
           try {
             byte[] classBytes = getClassBytes(className, jarFile);
-            byte[] outBytes =
-                classInstrumentor.instrument(
+            // Mirror SandboxClassLoader: classes which aren't instrumented are copied verbatim.
+            MutableClass mutableClass =
+                classInstrumentor.analyzeClass(
                     classBytes, instrumentationConfiguration, classNodeProvider);
-            jarOut.putNextEntry(new JarEntry(name));
+            byte[] outBytes =
+                instrumentationConfiguration.shouldInstrument(mutableClass)
+                    ? classInstrumentor.instrumentToBytes(mutableClass)
+                    : classBytes;
+            jarOut.putNextEntry(newJarEntry(name));
             jarOut.write(outBytes);
             classCount++;
           } catch (Exception e) {
@@ -97,7 +155,7 @@ public class JarInstrumentor {
           }
         } else {
           // resources & stuff
-          jarOut.putNextEntry(new JarEntry(name));
+          jarOut.putNextEntry(newJarEntry(name));
           Util.copy(jarFile.getInputStream(jarEntry), jarOut);
           nonClassCount++;
         }
@@ -119,6 +177,12 @@ public class JarInstrumentor {
     }
   }
 
+  private static JarEntry newJarEntry(String name) {
+    JarEntry jarEntry = new JarEntry(name);
+    jarEntry.setTime(ENTRY_TIME_MS);
+    return jarEntry;
+  }
+
   private boolean isClassRenamed(String className) {
     String internalName = className.replace('.', '/');
     String remappedName = instrumentationConfiguration.mappedTypeName(internalName);
@@ -0,0 +1,51 @@
+package org.robolectric.internal.bytecode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * The parts of a class file needed to reason about the class hierarchy: the class's access flags,
+ * name, superclass, and interfaces.
+ *
+ * <p>These are all read from the fixed header of the class file, so parsing a header needs neither
+ * a visit of the class's fields and methods nor a {@link org.objectweb.asm.tree.ClassNode}.
+ */
+public class ClassHeader {
+  public final int access;
+  public final String name;
+  public final String superName;
+  public final List<String> interfaces;
+
+  ClassHeader(int access, String name, String superName, List<String> interfaces) {
+    this.access = access;
+    this.name = name;
+    this.superName = superName;
+    this.interfaces = interfaces;
+  }
+
+  static ClassHeader parse(byte[] classBytes) {
+    ClassReader classReader = new ClassReader(classBytes);
+    String[] interfaces = classReader.getInterfaces();
+    return new ClassHeader(
+        classReader.getAccess(),
+        classReader.getClassName().intern(),
+        classReader.getSuperName() == null ? null : classReader.getSuperName().intern(),
+        interfaces.length == 0
+            ? Collections.emptyList()
+            : Collections.unmodifiableList(Arrays.asList(internAll(interfaces))));
+  }
+
+  private static String[] internAll(String[] strings) {
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = strings[i].intern();
+    }
+    return strings;
+  }
+
+  @Override
+  public String toString() {
+    return "ClassHeader{" + name + "}";
+  }
+}
@@ -64,7 +64,7 @@ public abstract class ClassInstrumentor {
     return new MutableClass(classNode, config, classNodeProvider);
   }
 
-  byte[] instrumentToBytes(MutableClass mutableClass) {
+  public byte[] instrumentToBytes(MutableClass mutableClass) {
     instrument(mutableClass);
 
     ClassNode classNode = mutableClass.classNode;
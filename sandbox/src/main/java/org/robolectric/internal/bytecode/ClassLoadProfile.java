@@ -0,0 +1,129 @@
+package org.robolectric.internal.bytecode;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.robolectric.util.Logger;
+
+/**
+ * The classes a {@link SandboxClassLoader} loaded while setting up its first test, in the order
+ * they were loaded.
+ *
+ * <p>When the {@code robolectric.classLoadProfile.dir} system property is set, each sandbox
+ * records a profile, and the next sandbox with the same name and instrumentation instruments the
+ * profiled classes in parallel ahead of first use.
+ */
+public class ClassLoadProfile {
+
+  private static final String PROFILE_DIR = "robolectric.classLoadProfile.dir";
+  private static final String SUFFIX = ".classes";
+
+  private final Path path;
+  private final List<String> profiledClassNames;
+  private final Set<String> loadedClassNames = new LinkedHashSet<>();
+  private boolean recording = true;
+
+  private ClassLoadProfile(Path path, List<String> profiledClassNames) {
+    this.path = path;
+    this.profiledClassNames = profiledClassNames;
+  }
+
+  /**
+   * Returns the profile for sandboxes with the given name and instrumentation, or null if class
+   * load profiles are disabled.
+   */
+  @Nullable
+  static ClassLoadProfile forName(
+      String name, InstrumentationConfiguration config, ClassInstrumentor classInstrumentor) {
+    String profileDir = System.getProperty(PROFILE_DIR);
+    if (profileDir == null || profileDir.isEmpty()) {
+      return null;
+    }
+
+    String key = PreinstrumentedJar.keyFor(PreinstrumentedJar.specFor(config, classInstrumentor));
+    Path path = Paths.get(profileDir).resolve(name + "-" + key + SUFFIX);
+    List<String> profiledClassNames;
+    try {
+      profiledClassNames = Files.readAllLines(path, UTF_8);
+    } catch (NoSuchFileException e) {
+      profiledClassNames = Collections.emptyList();
+    } catch (IOException e) {
+      Logger.strict("couldn't read class load profile " + path, e);
+      profiledClassNames = Collections.emptyList();
+    }
+    return new ClassLoadProfile(path, profiledClassNames);
+  }
+
+  /** Returns the names of the classes recorded by a previous sandbox, in load order. */
+  List<String> getProfiledClassNames() {
+    return profiledClassNames;
+  }
+
+  synchronized void record(String className) {
+    if (recording) {
+      loadedClassNames.add(className);
+    }
+  }
+
+  /**
+   * Stops recording, and saves the classes loaded so far as the profile for later sandboxes, unless
+   * they're the same as those already profiled.
+   */
+  void save() {
+    List<String> classNames;
+    synchronized (this) {
+      if (!recording) {
+        return;
+      }
+      recording = false;
+      classNames = new ArrayList<>(loadedClassNames);
+    }
+    if (new HashSet<>(classNames).equals(new HashSet<>(profiledClassNames))) {
+      return;
+    }
+
+    Path tempFile = null;
+    try {
+      Files.createDirectories(path.getParent());
+      tempFile = Files.createTempFile(path.getParent(), "profile", ".tmp");
+      Files.write(tempFile, classNames, UTF_8);
+      try {
+        Files.move(
+            tempFile,
+            path,
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      Logger.strict("couldn't write class load profile " + path, e);
+    } finally {
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ClassLoadProfile[" + path + "]";
+  }
+}
@@ -1,31 +1,79 @@
 package org.robolectric.internal.bytecode;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.tree.ClassNode;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+import org.robolectric.util.PerfStatsCollector;
 
+/**
+ * Provides {@link ClassHeader}s for looking up the superclasses and interfaces of classes being
+ * instrumented.
+ *
+ * <p>Headers are shared between providers (and so between sandboxes) by the jar entry their class
+ * files are loaded from, or failing that by their content, so the same class in several SDKs or
+ * sandboxes is only parsed once. Shared headers are weakly held, and only live as long as some
+ * provider is using them.
+ */
 public abstract class ClassNodeProvider {
-  private final Map<String, ClassNode> classNodes = new ConcurrentHashMap<>();
+  private static final Cache<Object, ClassHeader> sharedClassHeaders =
+      CacheBuilder.newBuilder().weakValues().build();
+
+  private static final PerfStatsCollector.Counter PARSED_HEADERS =
+      PerfStatsCollector.getInstance().counter("parse class header");
+
+  private final Map<String, ClassHeader> classHeaders = new ConcurrentHashMap<>();
 
   protected abstract byte[] getClassBytes(String className) throws ClassNotFoundException;
 
-  ClassNode getClassNode(String internalClassName) throws ClassNotFoundException {
-    ClassNode classNode = classNodes.get(internalClassName);
-    if (classNode == null) {
-      classNode = createClassNode(internalClassName);
-      classNodes.put(internalClassName, classNode);
+  /**
+   * Returns a key which identifies the bytes of the given class without reading them, such as the
+   * URL of the jar entry they're loaded from, or null if the class can only be identified by its
+   * content. Keys are only valid while their source can't change, so not for class directories.
+   */
+  @Nullable
+  protected String getClassSourceKey(String className) {
+    return null;
+  }
+
+  ClassHeader getClassHeader(String internalClassName) throws ClassNotFoundException {
+    ClassHeader classHeader = classHeaders.get(internalClassName);
+    if (classHeader == null) {
+      classHeader = createClassHeader(internalClassName);
+      classHeaders.put(internalClassName, classHeader);
     }
-    return classNode;
+    return classHeader;
   }
 
-  private ClassNode createClassNode(String internalClassName) throws ClassNotFoundException {
+  private ClassHeader createClassHeader(String internalClassName) throws ClassNotFoundException {
+    String sourceKey = getClassSourceKey(internalClassName);
+    if (sourceKey != null) {
+      return getSharedClassHeader(sourceKey, internalClassName, null);
+    }
     byte[] byteCode = getClassBytes(internalClassName);
-    ClassReader classReader = new ClassReader(byteCode);
-    ClassNode classNode = new ClassNode();
-    classReader.accept(classNode,
-        ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-    return classNode;
+    return getSharedClassHeader(
+        Hashing.murmur3_128().hashBytes(byteCode), internalClassName, byteCode);
   }
 
+  private ClassHeader getSharedClassHeader(
+      Object key, String internalClassName, @Nullable byte[] byteCode)
+      throws ClassNotFoundException {
+    try {
+      return sharedClassHeaders.get(
+          key,
+          () -> {
+            PARSED_HEADERS.increment();
+            return ClassHeader.parse(
+                byteCode == null ? getClassBytes(internalClassName) : byteCode);
+          });
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ClassNotFoundException) {
+        throw (ClassNotFoundException) e.getCause();
+      }
+      throw new IllegalStateException("couldn't parse " + internalClassName, e.getCause());
+    }
+  }
 }
@@ -1,9 +1,12 @@
 package org.robolectric.internal.bytecode;
 
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -11,6 +14,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.robolectric.annotation.internal.DoNotInstrument;
 import org.robolectric.annotation.internal.Instrument;
@@ -37,6 +43,11 @@ public class InstrumentationConfiguration {
 
   static final Set<String> RESOURCES_TO_ALWAYS_ACQUIRE = Sets.newHashSet("build.prop");
 
+  // android.R and com.android.internal.R classes must be loaded from the framework jar
+  private static final Pattern FRAMEWORK_R_CLASS =
+      Pattern.compile("(android|com\\.android\\.internal)\\.R(\\$.+)?");
+  private static final Pattern R_CLASS = Pattern.compile(".*\\.R(|\\$[a-z]+)$");
+
   private final List<String> instrumentedPackages;
   private final Set<String> instrumentedClasses;
   private final Set<String> classesToNotInstrument;
@@ -47,6 +58,14 @@ public class InstrumentationConfiguration {
   private final Set<String> packagesToNotAcquire;
   private final Set<String> packagesToNotInstrument;
   private int cachedHashCode;
+  private String cachedCacheKey;
+
+  // Compiled forms of the rules above; shouldAcquire() is called for every class load.
+  private final PrefixTrie instrumentedPackagesTrie;
+  private final PrefixTrie packagesToNotAcquireTrie;
+  private final PrefixTrie packagesToNotInstrumentTrie;
+  private final Pattern classesToNotInstrumentPattern;
+  private final Map<String, Boolean> shouldAcquireCache = new ConcurrentHashMap<>();
 
   private final TypeMapper typeMapper;
   private final Set<MethodRef> methodsToIntercept;
@@ -72,6 +91,12 @@ public class InstrumentationConfiguration {
     this.classesToNotInstrumentRegex = classesToNotInstrumentRegex;
     this.cachedHashCode = 0;
 
+    this.instrumentedPackagesTrie = new PrefixTrie(this.instrumentedPackages);
+    this.packagesToNotAcquireTrie = new PrefixTrie(this.packagesToNotAcquire);
+    this.packagesToNotInstrumentTrie = new PrefixTrie(this.packagesToNotInstrument);
+    this.classesToNotInstrumentPattern =
+        classesToNotInstrumentRegex == null ? null : Pattern.compile(classesToNotInstrumentRegex);
+
     this.typeMapper = new TypeMapper(classNameTranslations());
     this.methodsToIntercept = ImmutableSet.copyOf(convertToSlashes(methodsToIntercept()));
   }
@@ -94,8 +119,22 @@ public class InstrumentationConfiguration {
         && !classMatchesExclusionRegex(mutableClass.getName());
   }
 
+  /**
+   * Returns true if the named class is instrumented by the name-based rules alone. Such a class is
+   * instrumented unless it's an interface, an annotation, or annotated with {@link
+   * DoNotInstrument}; a class for which this returns false is only instrumented if it's annotated
+   * with {@link Instrument}.
+   */
+  boolean isInstrumentedByName(String className) {
+    return (isInInstrumentedPackage(className) || instrumentedClasses.contains(className))
+        && !classesToNotInstrument.contains(className)
+        && !isInPackagesToNotInstrument(className)
+        && !classMatchesExclusionRegex(className);
+  }
+
   private boolean classMatchesExclusionRegex(String className) {
-    return classesToNotInstrumentRegex != null && className.matches(classesToNotInstrumentRegex);
+    return classesToNotInstrumentPattern != null
+        && classesToNotInstrumentPattern.matcher(className).matches();
   }
 
   /**
@@ -105,6 +144,15 @@ public class InstrumentationConfiguration {
    * @return  True if the class should be loaded.
    */
   public boolean shouldAcquire(String name) {
+    Boolean shouldAcquire = shouldAcquireCache.get(name);
+    if (shouldAcquire == null) {
+      shouldAcquire = computeShouldAcquire(name);
+      shouldAcquireCache.put(name, shouldAcquire);
+    }
+    return shouldAcquire;
+  }
+
+  private boolean computeShouldAcquire(String name) {
     if (CLASSES_TO_ALWAYS_ACQUIRE.contains(name)) {
       return true;
     }
@@ -113,8 +161,7 @@ public class InstrumentationConfiguration {
       return true;
     }
 
-    // android.R and com.android.internal.R classes must be loaded from the framework jar
-    if (name.matches("(android|com\\.android\\.internal)\\.R(\\$.+)?")) {
+    if (FRAMEWORK_R_CLASS.matcher(name).matches()) {
       return true;
     }
 
@@ -124,12 +171,12 @@ public class InstrumentationConfiguration {
       return true;
     }
 
-    for (String packageName : packagesToNotAcquire) {
-      if (name.startsWith(packageName)) return false;
+    if (packagesToNotAcquireTrie.matchesPrefixOf(name)) {
+      return false;
     }
 
     // R classes must be loaded from system CP
-    boolean isRClass = name.matches(".*\\.R(|\\$[a-z]+)$");
+    boolean isRClass = R_CLASS.matcher(name).matches();
     return !isRClass && !classesToNotAcquire.contains(name);
   }
 
@@ -161,21 +208,11 @@ public class InstrumentationConfiguration {
   }
 
   private boolean isInInstrumentedPackage(String className) {
-    for (String instrumentedPackage : instrumentedPackages) {
-      if (className.startsWith(instrumentedPackage)) {
-        return true;
-      }
-    }
-    return false;
+    return instrumentedPackagesTrie.matchesPrefixOf(className);
   }
 
   private boolean isInPackagesToNotInstrument(String className) {
-    for (String notInstrumentedPackage : packagesToNotInstrument) {
-      if (className.startsWith(notInstrumentedPackage)) {
-        return true;
-      }
-    }
-    return false;
+    return packagesToNotInstrumentTrie.matchesPrefixOf(className);
   }
 
   @Override
@@ -210,6 +247,101 @@ public class InstrumentationConfiguration {
     return result;
   }
 
+  /**
+   * Returns a stable, order-independent description of every rule in this configuration.
+   *
+   * Unlike {@link #hashCode()}, the result is suitable for keying data that outlives this JVM,
+   * such as {@link InstrumentedClassCache}.
+   */
+  String getCacheKey() {
+    if (cachedCacheKey != null) {
+      return cachedCacheKey;
+    }
+
+    StringBuilder buf = new StringBuilder();
+    appendSorted(buf, "instrumentedPackages", instrumentedPackages);
+    appendSorted(buf, "instrumentedClasses", instrumentedClasses);
+    appendSorted(buf, "classesToNotInstrument", classesToNotInstrument);
+    appendSorted(buf, "packagesToNotInstrument", packagesToNotInstrument);
+    appendSorted(buf, "classesToNotAcquire", classesToNotAcquire);
+    appendSorted(buf, "packagesToNotAcquire", packagesToNotAcquire);
+    List<String> translations = new ArrayList<>();
+    for (Map.Entry<String, String> entry : classNameTranslations.entrySet()) {
+      translations.add(entry.getKey() + "=" + entry.getValue());
+    }
+    appendSorted(buf, "classNameTranslations", translations);
+    List<String> methods = new ArrayList<>();
+    for (MethodRef methodRef : interceptedMethods) {
+      methods.add(methodRef.className + "#" + methodRef.methodName);
+    }
+    appendSorted(buf, "interceptedMethods", methods);
+    buf.append("classesToNotInstrumentRegex:")
+        .append(Strings.nullToEmpty(classesToNotInstrumentRegex))
+        .append('\n');
+    cachedCacheKey = buf.toString();
+    return cachedCacheKey;
+  }
+
+  /** Rebuilds a configuration from the output of {@link #getCacheKey()}. */
+  static InstrumentationConfiguration fromCacheKey(String cacheKey) {
+    Builder builder = newBuilder();
+    for (String line : Splitter.on('\n').omitEmptyStrings().split(cacheKey)) {
+      int colon = line.indexOf(':');
+      if (colon == -1) {
+        throw new IllegalArgumentException("malformed configuration line: " + line);
+      }
+      String label = line.substring(0, colon);
+      String value = line.substring(colon + 1);
+      if (label.equals("classesToNotInstrumentRegex")) {
+        builder.classesToNotInstrumentRegex = value.isEmpty() ? null : value;
+        continue;
+      }
+
+      for (String item : Splitter.on(',').omitEmptyStrings().split(value)) {
+        switch (label) {
+          case "instrumentedPackages":
+            builder.addInstrumentedPackage(item);
+            break;
+          case "instrumentedClasses":
+            builder.addInstrumentedClass(item);
+            break;
+          case "classesToNotInstrument":
+            builder.doNotInstrumentClass(item);
+            break;
+          case "packagesToNotInstrument":
+            builder.doNotInstrumentPackage(item);
+            break;
+          case "classesToNotAcquire":
+            builder.doNotAcquireClass(item);
+            break;
+          case "packagesToNotAcquire":
+            builder.doNotAcquirePackage(item);
+            break;
+          case "classNameTranslations":
+            int equals = item.indexOf('=');
+            builder.addClassNameTranslation(item.substring(0, equals), item.substring(equals + 1));
+            break;
+          case "interceptedMethods":
+            int hash = item.indexOf('#');
+            builder.addInterceptedMethod(
+                new MethodRef(item.substring(0, hash), item.substring(hash + 1)));
+            break;
+          default:
+            throw new IllegalArgumentException("unknown configuration line: " + line);
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  private static void appendSorted(StringBuilder buf, String label, Collection<String> values) {
+    buf.append(label).append(':');
+    for (String value : new TreeSet<>(values)) {
+      buf.append(value).append(',');
+    }
+    buf.append('\n');
+  }
+
   public String remapParamType(String desc) {
     return typeMapper.remapParamType(desc);
   }
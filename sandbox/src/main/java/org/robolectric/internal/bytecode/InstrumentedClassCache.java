@@ -0,0 +1,417 @@
+package org.robolectric.internal.bytecode;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.robolectric.util.Logger;
+
+/**
+ * Content-addressed on-disk cache of instrumented class bytecode, shared by every JVM which points
+ * at the same directory.
+ *
+ * <p>Entries are keyed by a hash of the original class bytes, the {@link
+ * InstrumentationConfiguration}, the Robolectric version, and the bytecode of the instrumentation
+ * code that produced them, so entries never go stale; a change to any of those just yields a
+ * different key. Entries are written to a
+ * temporary file and atomically moved into place, so concurrent writers (e.g. parallel Gradle test
+ * workers) never observe partially written classes.
+ *
+ * <p>The cache is enabled by setting the {@code robolectric.instrumentedClassCache.dir} system
+ * property. Its size is bounded by {@code robolectric.instrumentedClassCache.maxSizeMb} (1024 by
+ * default); least recently used entries are evicted first.
+ */
+public class InstrumentedClassCache {
+
+  /** Bump whenever instrumentation output changes in a way not captured by the cache key. */
+  static final int FORMAT_VERSION = 2;
+
+  private static final String VERSION_HEADER = "robolectricVersion";
+  static final String INSTRUMENTOR_HEADER = "instrumentor";
+  static final String DECORATOR_HEADER = "decorator";
+  private static final String INSTRUMENTATION_CODE_HEADER = "instrumentationCode";
+  private static final String INSTRUMENTOR_CODE_HEADER = "instrumentorCode";
+  private static final String DECORATOR_CODE_HEADER = "decoratorCode";
+
+  /** The labeled header lines of a salt, in order, between its format version and configuration. */
+  private static final String[] SALT_HEADERS = {
+    VERSION_HEADER,
+    INSTRUMENTOR_HEADER,
+    DECORATOR_HEADER,
+    INSTRUMENTATION_CODE_HEADER,
+    INSTRUMENTOR_CODE_HEADER,
+    DECORATOR_CODE_HEADER
+  };
+
+  private static final String CACHE_DIR = "robolectric.instrumentedClassCache.dir";
+  private static final String MAX_SIZE_MB = "robolectric.instrumentedClassCache.maxSizeMb";
+  private static final long DEFAULT_MAX_SIZE_MB = 1024;
+  private static final String ENTRY_SUFFIX = ".class";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final long STALE_TEMP_FILE_MS = TimeUnit.HOURS.toMillis(1);
+  private static final long TOUCH_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+  private static final String ROBOLECTRIC_VERSION = readRobolectricVersion();
+  private static final ClassValue<String> PACKAGE_BYTECODE_HASHES =
+      new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+          return hashPackageBytecode(type);
+        }
+      };
+
+  private static final InstrumentedClassCache DEFAULT = createFromSystemProperties();
+
+  private final Path cacheDir;
+  private final long maxSizeBytes;
+  private final AtomicLong bytesWrittenSinceTrim = new AtomicLong();
+  private final AtomicBoolean trimming = new AtomicBoolean();
+
+  /**
+   * Returns the cache configured through system properties, or null if caching is disabled.
+   */
+  @Nullable
+  public static InstrumentedClassCache getDefault() {
+    return DEFAULT;
+  }
+
+  private static InstrumentedClassCache createFromSystemProperties() {
+    String cacheDir = System.getProperty(CACHE_DIR);
+    if (cacheDir == null || cacheDir.isEmpty()) {
+      return null;
+    }
+    long maxSizeMb = Long.parseLong(
+        System.getProperty(MAX_SIZE_MB, String.valueOf(DEFAULT_MAX_SIZE_MB)));
+    return new InstrumentedClassCache(Paths.get(cacheDir), maxSizeMb * 1024 * 1024);
+  }
+
+  public InstrumentedClassCache(Path cacheDir, long maxSizeBytes) {
+    this.cacheDir = cacheDir;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns the part of the cache key which is common to every class instrumented by the given
+   * instrumentor and configuration: a format version line, a {@code label=value} line for each of
+   * {@link #SALT_HEADERS}, then the configuration's cache key. {@link #parseSalt} reverses this.
+   */
+  static String salt(InstrumentationConfiguration config, ClassInstrumentor classInstrumentor) {
+    Map<String, String> headers = new HashMap<>();
+    headers.put(VERSION_HEADER, ROBOLECTRIC_VERSION);
+    headers.put(INSTRUMENTOR_HEADER, classInstrumentor.getClass().getName());
+    headers.put(DECORATOR_HEADER, classInstrumentor.decorator.getClass().getName());
+    headers.put(
+        INSTRUMENTATION_CODE_HEADER, PACKAGE_BYTECODE_HASHES.get(ClassInstrumentor.class));
+    headers.put(
+        INSTRUMENTOR_CODE_HEADER, PACKAGE_BYTECODE_HASHES.get(classInstrumentor.getClass()));
+    headers.put(
+        DECORATOR_CODE_HEADER,
+        PACKAGE_BYTECODE_HASHES.get(classInstrumentor.decorator.getClass()));
+
+    StringBuilder salt = new StringBuilder("v").append(FORMAT_VERSION).append('\n');
+    for (String header : SALT_HEADERS) {
+      salt.append(header).append('=').append(headers.get(header)).append('\n');
+    }
+    return salt.append(config.getCacheKey()).toString();
+  }
+
+  /**
+   * Splits a salt produced by {@link #salt} into its header values and configuration cache key.
+   *
+   * @throws IllegalArgumentException if the salt is malformed or of another format version
+   */
+  static ParsedSalt parseSalt(String salt) {
+    String[] lines = salt.split("\n", SALT_HEADERS.length + 2);
+    if (lines.length != SALT_HEADERS.length + 2 || !lines[0].equals("v" + FORMAT_VERSION)) {
+      throw new IllegalArgumentException("unsupported instrumentation spec");
+    }
+    Map<String, String> headers = new HashMap<>();
+    for (int i = 0; i < SALT_HEADERS.length; i++) {
+      String line = lines[i + 1];
+      String prefix = SALT_HEADERS[i] + "=";
+      if (!line.startsWith(prefix)) {
+        throw new IllegalArgumentException(
+            "expected " + SALT_HEADERS[i] + " in instrumentation spec, but was: " + line);
+      }
+      headers.put(SALT_HEADERS[i], line.substring(prefix.length()));
+    }
+    return new ParsedSalt(headers, lines[SALT_HEADERS.length + 1]);
+  }
+
+  private static String readRobolectricVersion() {
+    try (InputStream in =
+        InstrumentedClassCache.class
+            .getClassLoader()
+            .getResourceAsStream("robolectric-version.properties")) {
+      if (in == null) {
+        return "unknown";
+      }
+      Properties properties = new Properties();
+      properties.load(in);
+      return properties.getProperty("robolectric.version", "unknown");
+    } catch (IOException e) {
+      return "unknown";
+    }
+  }
+
+  /**
+   * Returns a hash of the bytecode of every class in the given class's package, as found in the
+   * same jar or directory. Snapshot builds share a version, so this is what tells their
+   * instrumentation code apart. Jar entries are hashed by the CRC in the jar's index, so nothing
+   * needs to be inflated.
+   */
+  private static String hashPackageBytecode(Class<?> type) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    String name = type.getName();
+    String packagePath = name.substring(0, name.lastIndexOf('.') + 1).replace('.', '/');
+    try {
+      CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+      if (codeSource == null || codeSource.getLocation() == null) {
+        throw new IOException("no code source for " + name);
+      }
+      Path location = Paths.get(codeSource.getLocation().toURI());
+      if (Files.isDirectory(location)) {
+        List<Path> classFiles = new ArrayList<>();
+        try (Stream<Path> files = Files.list(location.resolve(packagePath))) {
+          files.filter(file -> file.toString().endsWith(ENTRY_SUFFIX)).forEach(classFiles::add);
+        }
+        classFiles.sort(Comparator.naturalOrder());
+        for (Path classFile : classFiles) {
+          hasher.putString(classFile.getFileName().toString(), UTF_8);
+          hasher.putBytes(Files.readAllBytes(classFile));
+        }
+      } else {
+        try (JarFile jarFile = new JarFile(location.toFile())) {
+          List<JarEntry> classEntries = new ArrayList<>();
+          jarFile.stream()
+              .filter(
+                  entry ->
+                      entry.getName().startsWith(packagePath)
+                          && entry.getName().endsWith(ENTRY_SUFFIX)
+                          && entry.getName().indexOf('/', packagePath.length()) < 0)
+              .forEach(classEntries::add);
+          classEntries.sort(Comparator.comparing(JarEntry::getName));
+          for (JarEntry entry : classEntries) {
+            hasher.putString(entry.getName(), UTF_8);
+            hasher.putLong(entry.getCrc());
+          }
+        }
+      }
+    } catch (IOException | URISyntaxException | RuntimeException e) {
+      // Without knowing which code instrumented them, entries mustn't be shared with other JVMs.
+      Logger.strict("couldn't hash instrumentation code in " + packagePath, e);
+      return UUID.randomUUID().toString();
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Returns the key for a class with the given original bytecode. */
+  static String keyFor(String salt, byte[] origClassBytes) {
+    return Hashing.sha256()
+        .newHasher()
+        .putString(salt, UTF_8)
+        .putBytes(origClassBytes)
+        .hash()
+        .toString();
+  }
+
+  /**
+   * Returns the cached instrumented bytecode for the given key, or null if there is none.
+   */
+  @Nullable
+  public byte[] get(String key) {
+    Path entry = entryPath(key);
+    try {
+      byte[] bytes = Files.readAllBytes(entry);
+      touch(entry);
+      return bytes;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      Logger.strict("couldn't read cached class " + entry, e);
+      return null;
+    }
+  }
+
+  /**
+   * Stores instrumented bytecode under the given key. Failures are logged and otherwise ignored;
+   * the cache is only ever an optimization.
+   */
+  public void put(String key, byte[] instrumentedBytes) {
+    Path entry = entryPath(key);
+    if (Files.exists(entry)) {
+      return;
+    }
+
+    Path tempFile = null;
+    try {
+      Files.createDirectories(entry.getParent());
+      tempFile = Files.createTempFile(entry.getParent(), key, TEMP_SUFFIX);
+      Files.write(tempFile, instrumentedBytes);
+      try {
+        Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+      tempFile = null;
+    } catch (FileAlreadyExistsException e) {
+      // another process won the race, and wrote identical content
+    } catch (IOException e) {
+      Logger.strict("couldn't write cached class " + entry, e);
+    } finally {
+      deleteQuietly(tempFile);
+    }
+
+    // Only rescan the cache once we've written a meaningful fraction of its capacity.
+    if (bytesWrittenSinceTrim.addAndGet(instrumentedBytes.length) > maxSizeBytes / 10) {
+      trimIfNeeded();
+    }
+  }
+
+  /** Evicts least recently used entries until the cache fits within its size bound. */
+  void trimIfNeeded() {
+    if (!trimming.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      bytesWrittenSinceTrim.set(0);
+      List<CacheEntry> entries = new ArrayList<>();
+      long totalSize = 0;
+      long now = System.currentTimeMillis();
+      try (Stream<Path> paths = Files.walk(cacheDir)) {
+        for (Path path : (Iterable<Path>) paths::iterator) {
+          String fileName = path.getFileName().toString();
+          BasicFileAttributes attrs;
+          try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+          } catch (IOException e) {
+            continue; // deleted concurrently
+          }
+          if (!attrs.isRegularFile()) {
+            continue;
+          }
+
+          long lastModified = attrs.lastModifiedTime().toMillis();
+          if (fileName.endsWith(TEMP_SUFFIX)) {
+            // left behind by a writer that died midway
+            if (now - lastModified > STALE_TEMP_FILE_MS) {
+              deleteQuietly(path);
+            }
+          } else if (fileName.endsWith(ENTRY_SUFFIX)) {
+            entries.add(new CacheEntry(path, attrs.size(), lastModified));
+            totalSize += attrs.size();
+          }
+        }
+      }
+
+      if (totalSize <= maxSizeBytes) {
+        return;
+      }
+
+      entries.sort(Comparator.comparingLong(e -> e.lastModified));
+      long targetSize = maxSizeBytes / 4 * 3;
+      for (CacheEntry entry : entries) {
+        if (totalSize <= targetSize) {
+          break;
+        }
+        deleteQuietly(entry.path);
+        totalSize -= entry.size;
+      }
+    } catch (IOException | UncheckedIOException e) {
+      Logger.strict("couldn't trim instrumented class cache " + cacheDir, e);
+    } finally {
+      trimming.set(false);
+    }
+  }
+
+  /** Discards an entry, e.g. because it turned out to be corrupt. */
+  void remove(String key) {
+    deleteQuietly(entryPath(key));
+  }
+
+  private Path entryPath(String key) {
+    return cacheDir.resolve(key.substring(0, 2)).resolve(key.substring(2) + ENTRY_SUFFIX);
+  }
+
+  /**
+   * Marks an entry as recently used. Entries are only touched once an hour, since eviction doesn't
+   * need any finer ordering, and writing metadata on every hit is costly.
+   */
+  private static void touch(Path path) {
+    try {
+      long now = System.currentTimeMillis();
+      if (now - Files.getLastModifiedTime(path).toMillis() > TOUCH_INTERVAL_MS) {
+        Files.setLastModifiedTime(path, FileTime.fromMillis(now));
+      }
+    } catch (IOException e) {
+      // best effort; eviction order will just be a little less accurate
+    }
+  }
+
+  private static void deleteQuietly(Path path) {
+    if (path == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // ignore, it'll be cleaned up by a later trim
+    }
+  }
+
+  /** The parts of a salt, as returned by {@link #parseSalt}. */
+  static class ParsedSalt {
+    private final Map<String, String> headers;
+    final String configurationCacheKey;
+
+    ParsedSalt(Map<String, String> headers, String configurationCacheKey) {
+      this.headers = headers;
+      this.configurationCacheKey = configurationCacheKey;
+    }
+
+    String getHeader(String label) {
+      return headers.get(label);
+    }
+  }
+
+  private static class CacheEntry {
+    final Path path;
+    final long size;
+    final long lastModified;
+
+    CacheEntry(Path path, long size, long lastModified) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+  }
+}
@@ -11,6 +11,31 @@ public class InvokeDynamic {
   // unable to pinpoint exactly why this affects us.
   private static final String INVOKEDYNAMIC_MINIMUM_VERSION = "1.8.0_40";
 
+  /**
+   * Returns {@code classInstrumentor} if it instruments classes for the requested mode, or else an
+   * instrumentor for that mode with the same decorator.
+   */
+  public static ClassInstrumentor classInstrumentorFor(
+      boolean invokeDynamic, ClassInstrumentor classInstrumentor) {
+    if (isInvokeDynamic(classInstrumentor) == invokeDynamic) {
+      return classInstrumentor;
+    }
+    return newClassInstrumentor(invokeDynamic, classInstrumentor.decorator);
+  }
+
+  /** Returns a new instrumentor for the invokedynamic or the legacy instrumentation mode. */
+  public static ClassInstrumentor newClassInstrumentor(
+      boolean invokeDynamic, ClassInstrumentor.Decorator decorator) {
+    return invokeDynamic
+        ? new InvokeDynamicClassInstrumentor(decorator)
+        : new OldClassInstrumentor(decorator);
+  }
+
+  /** Returns true if classes instrumented by {@code classInstrumentor} use invokedynamic. */
+  public static boolean isInvokeDynamic(ClassInstrumentor classInstrumentor) {
+    return classInstrumentor instanceof InvokeDynamicClassInstrumentor;
+  }
+
   private static boolean useInvokeDynamic() {
     String property = System.getProperty(ENABLE_INVOKEDYNAMIC);
     if (property != null) {
@@ -6,6 +6,7 @@ import static java.lang.invoke.MethodHandles.dropArguments;
 import static java.lang.invoke.MethodHandles.exactInvoker;
 import static java.lang.invoke.MethodHandles.filterArguments;
 import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
 import static java.lang.invoke.MethodHandles.throwException;
 import static java.lang.invoke.MethodType.methodType;
 import static org.robolectric.internal.bytecode.MethodCallSite.Kind.REGULAR;
@@ -18,16 +19,26 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.SwitchPoint;
 import java.lang.invoke.WrongMethodTypeException;
+import java.util.List;
 import org.robolectric.util.ReflectionHelpers;
 
 public class InvokeDynamicSupport {
   @SuppressWarnings("unused")
   private static Interceptors INTERCEPTORS;
 
+  /**
+   * The number of receiver classes a call site to a shadowed instance method is specialized for,
+   * before it falls back to a megamorphic lookup of the shadow.
+   */
+  private static final int INLINE_CACHE_SIZE =
+      Integer.getInteger("robolectric.invokedynamic.inlineCacheSize", 4);
+
   private static final MethodHandle BIND_CALL_SITE;
   private static final MethodHandle BIND_INIT_CALL_SITE;
   private static final MethodHandle EXCEPTION_HANDLER;
   private static final MethodHandle GET_SHADOW;
+  private static final MethodHandle IS_EXACT_CLASS;
+  private static final MethodHandle BIND_RECEIVER_CLASS;
 
   static {
     try {
@@ -41,6 +52,10 @@ public class InvokeDynamicSupport {
           methodType(Throwable.class, Throwable.class));
       EXCEPTION_HANDLER = filterArguments(throwException(void.class, Throwable.class), 0, cleanStackTrace);
       GET_SHADOW = lookup.findVirtual(ShadowedObject.class, "$$robo$getData", methodType(Object.class));
+      IS_EXACT_CLASS = lookup.findStatic(InvokeDynamicSupport.class, "isExactClass",
+          methodType(boolean.class, Class.class, Object.class));
+      BIND_RECEIVER_CLASS = lookup.findStatic(InvokeDynamicSupport.class, "bindReceiverClass",
+          methodType(MethodHandle.class, MethodCallSite.class, Object.class));
     } catch (NoSuchMethodException | IllegalAccessException e) {
       throw new AssertionError(e);
     }
@@ -117,36 +132,119 @@ public class InvokeDynamicSupport {
   }
 
   private static MethodHandle bindCallSite(MethodCallSite site) throws IllegalAccessException {
-    MethodHandle mh =
-        RobolectricInternals.findShadowMethodHandle(site.getTheClass(), site.getName(), site.type(),
-            site.isStatic());
+    return bindCallSite(site, null);
+  }
 
-    if (mh == null) {
-      // call original code
-      mh = site.getOriginal();
-    } else if (mh == ShadowWrangler.DO_NOTHING) {
-      // no-op
-      mh = dropArguments(mh, 0, site.type().parameterList());
-    } else if (!site.isStatic()) {
-      // drop arg 0 (this) for static methods
-      Class<?> shadowType = mh.type().parameterType(0);
-      mh = filterArguments(mh, 0, GET_SHADOW.asType(methodType(shadowType, site.thisType())));
+  /**
+   * Binds the site to its current shadow method. If {@code newReceiverClass} is null, the site's
+   * guard has failed and its inline cache starts afresh, otherwise that class is added to it.
+   */
+  private static MethodHandle bindCallSite(MethodCallSite site, Class<?> newReceiverClass)
+      throws IllegalAccessException {
+    // Resolution, caching and setTarget all happen under the site's lock, so a concurrent inline
+    // cache miss can't install a target built from a shadow method handle that's been replaced.
+    synchronized (site) {
+      // Fetched before the shadow method is resolved, so that a shadow change in between
+      // invalidates the new target rather than being missed.
+      SwitchPoint switchPoint = getInvalidator(site.getTheClass());
+      MethodHandle mh =
+          RobolectricInternals.findShadowMethodHandle(site.getTheClass(), site.getName(),
+              site.type(), site.isStatic());
+
+      if (mh == null) {
+        // call original code
+        mh = site.getOriginal();
+      } else if (mh == ShadowWrangler.DO_NOTHING) {
+        // no-op
+        mh = dropArguments(mh, 0, site.type().parameterList());
+      } else if (!site.isStatic()) {
+        List<Class<?>> receiverClasses = site.getReceiverClasses();
+        if (newReceiverClass == null) {
+          receiverClasses.clear();
+        } else if (!receiverClasses.contains(newReceiverClass)) {
+          receiverClasses.add(newReceiverClass);
+        }
+        site.setShadowMethodHandle(mh);
+        mh = inlineCachedShadowCall(site);
+      }
+
+      try {
+        return bindWithFallback(site, switchPoint, cleanStackTraces(mh), BIND_CALL_SITE);
+      } catch (Throwable t) {
+        // The error that bubbles up is currently not very helpful so we print any error messages
+        // here
+        t.printStackTrace();
+        System.err.println(site.getTheClass());
+        throw t;
+      }
     }
+  }
 
-    try {
-      return bindWithFallback(site, cleanStackTraces(mh), BIND_CALL_SITE);
-    } catch (Throwable t) {
-      // The error that bubbles up is currently not very helpful so we print any error messages
-      // here
-      t.printStackTrace();
-      System.err.println(site.getTheClass());
-      throw t;
+  /**
+   * Called on an inline cache miss: specializes the site for the receiver's class too, and returns
+   * the site's new target.
+   *
+   * <p>The shadow method is resolved again rather than reusing the site's cached handle, since the
+   * shadow may have changed after the caller passed the site's guard.
+   */
+  private static MethodHandle bindReceiverClass(MethodCallSite site, Object receiver)
+      throws IllegalAccessException {
+    return bindCallSite(site, receiver.getClass());
+  }
+
+  /**
+   * Returns a call to the site's shadow method which fetches the shadow from {@code this}.
+   *
+   * <p>Every instrumented class implements {@link ShadowedObject} itself, so fetching the shadow is
+   * an interface call which is megamorphic at call sites in commonly subclassed classes such as
+   * {@code View}. So for each of the first few receiver classes seen, the returned handle tests for
+   * that exact class and casts the receiver to it, which allows the JIT to inline the shadow lookup
+   * and the call to the shadow method. Other receivers rebind the site, until it has seen too many
+   * classes, after which it does the interface call.
+   */
+  private static MethodHandle inlineCachedShadowCall(MethodCallSite site) {
+    MethodHandle shadowMethodHandle = site.getShadowMethodHandle();
+    Class<?> shadowType = shadowMethodHandle.type().parameterType(0);
+    Class<?> thisType = site.thisType();
+    List<Class<?>> receiverClasses = site.getReceiverClasses();
+
+    if (receiverClasses.size() > INLINE_CACHE_SIZE || INLINE_CACHE_SIZE <= 0) {
+      return filterArguments(
+          shadowMethodHandle, 0, GET_SHADOW.asType(methodType(shadowType, thisType)));
+    }
+
+    MethodType type = site.type();
+    MethodHandle mh =
+        foldArguments(
+            exactInvoker(type),
+            BIND_RECEIVER_CLASS.bindTo(site).asType(methodType(MethodHandle.class, thisType)));
+    for (int i = receiverClasses.size() - 1; i >= 0; i--) {
+      Class<?> receiverClass = receiverClasses.get(i);
+      MethodHandle specialized =
+          filterArguments(
+                  shadowMethodHandle,
+                  0,
+                  GET_SHADOW.asType(methodType(shadowType, receiverClass)))
+              .asType(type);
+      MethodHandle test =
+          IS_EXACT_CLASS.bindTo(receiverClass).asType(methodType(boolean.class, thisType));
+      mh = guardWithTest(test, specialized, mh);
     }
+    return mh;
+  }
+
+  @SuppressWarnings("unused")
+  private static boolean isExactClass(Class<?> expected, Object receiver) {
+    return receiver.getClass() == expected;
   }
 
   private static MethodHandle bindWithFallback(RoboCallSite site, MethodHandle mh,
       MethodHandle fallback) {
-    SwitchPoint switchPoint = getInvalidator(site.getTheClass());
+    return bindWithFallback(site, getInvalidator(site.getTheClass()), mh, fallback);
+  }
+
+  private static MethodHandle bindWithFallback(RoboCallSite site, SwitchPoint switchPoint,
+      MethodHandle mh, MethodHandle fallback) {
     MethodType type = site.type();
 
     MethodHandle boundFallback = foldArguments(exactInvoker(type), fallback.bindTo(site));
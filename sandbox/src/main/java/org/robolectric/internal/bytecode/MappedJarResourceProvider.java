@@ -0,0 +1,353 @@
+package org.robolectric.internal.bytecode;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import javax.annotation.Nullable;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
+
+/**
+ * ResourceProvider which maps each jar into memory once, and indexes its central directory, so
+ * reading an entry needs neither a stream nor a lookup by scanning.
+ *
+ * <p>Stored entries are served as read-only slices of the mapping, without copying. {@link
+ * SandboxClassLoader#getByteCode} copies such a slice into an array once. Compressed entries are
+ * copied out of the mapping for {@link Inflater}, and inflated into a new array of their exact size;
+ * the buffer wraps that whole array, which {@link SandboxClassLoader#getByteCode} returns as it is,
+ * without copying it again.
+ *
+ * <p>Enabled for SDK jars by the {@code robolectric.mappedJarResources} system property.
+ */
+public class MappedJarResourceProvider implements ResourceProvider {
+
+  private static final MetricHandle READ_ENTRY =
+      PerfStatsCollector.getInstance().metricHandle("read mapped jar entry");
+  private static final PerfStatsCollector.Counter BYTES_READ =
+      PerfStatsCollector.getInstance().counter("mapped jar bytes read");
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_END_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int END_SIZE = 22;
+  private static final int ZIP64_END_LOCATOR_SIZE = 20;
+  private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private final List<MappedJar> jars = new ArrayList<>();
+
+  public MappedJarResourceProvider(Path... jarPaths) throws IOException {
+    for (Path jarPath : jarPaths) {
+      jars.add(new MappedJar(jarPath));
+    }
+  }
+
+  @Override
+  public URL getResource(String resName) {
+    for (MappedJar jar : jars) {
+      if (jar.entries.containsKey(resName)) {
+        return jar.urlFor(resName);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public InputStream getResourceAsStream(String resName) {
+    ByteBuffer buffer = getResourceBuffer(resName);
+    if (buffer == null) {
+      return null;
+    }
+    if (buffer.hasArray()) {
+      return new ByteArrayInputStream(
+          buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    return new ByteBufferInputStream(buffer);
+  }
+
+  @Override
+  @Nullable
+  public ByteBuffer getResourceBuffer(String resName) {
+    for (MappedJar jar : jars) {
+      Entry entry = jar.entries.get(resName);
+      if (entry != null) {
+        try {
+          return PerfStatsCollector.getInstance().measure(READ_ENTRY, () -> jar.read(entry));
+        } catch (IOException e) {
+          throw new UncheckedIOException("couldn't read " + resName + " from " + jar.path, e);
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    List<Path> paths = new ArrayList<>();
+    for (MappedJar jar : jars) {
+      paths.add(jar.path);
+    }
+    return "MappedJarResourceProvider" + paths;
+  }
+
+  private static class MappedJar {
+    private final Path path;
+    private final URL url;
+    private final MappedByteBuffer buffer;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    MappedJar(Path path) throws IOException {
+      this.path = path;
+      this.url = path.toUri().toURL();
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        if (channel.size() > Integer.MAX_VALUE) {
+          throw new ZipException(path + " is too large to map");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      // Only absolute reads are used on the shared buffer, so it's safe to read concurrently.
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      readCentralDirectory();
+    }
+
+    private void readCentralDirectory() throws ZipException {
+      int end = findEndOfCentralDirectory();
+      long entryCount = buffer.getShort(end + 10) & 0xFFFF;
+      long directoryOffset = buffer.getInt(end + 16) & ZIP64_MAGIC;
+
+      int locator = end - ZIP64_END_LOCATOR_SIZE;
+      if (locator >= 0 && buffer.getInt(locator) == ZIP64_END_LOCATOR_SIGNATURE) {
+        int zip64End = checkedOffset(buffer.getLong(locator + 8));
+        if (buffer.getInt(zip64End) != ZIP64_END_SIGNATURE) {
+          throw new ZipException("bad zip64 end of central directory in " + path);
+        }
+        entryCount = buffer.getLong(zip64End + 32);
+        directoryOffset = buffer.getLong(zip64End + 48);
+      }
+
+      int offset = checkedOffset(directoryOffset);
+      for (long i = 0; i < entryCount; i++) {
+        if (buffer.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+          throw new ZipException("bad central directory entry in " + path);
+        }
+        int method = buffer.getShort(offset + 10) & 0xFFFF;
+        long compressedSize = buffer.getInt(offset + 20) & ZIP64_MAGIC;
+        long size = buffer.getInt(offset + 24) & ZIP64_MAGIC;
+        int nameLength = buffer.getShort(offset + 28) & 0xFFFF;
+        int extraLength = buffer.getShort(offset + 30) & 0xFFFF;
+        int commentLength = buffer.getShort(offset + 32) & 0xFFFF;
+        long localHeaderOffset = buffer.getInt(offset + 42) & ZIP64_MAGIC;
+        String name = readString(offset + CENTRAL_HEADER_SIZE, nameLength);
+
+        if (size == ZIP64_MAGIC
+            || compressedSize == ZIP64_MAGIC
+            || localHeaderOffset == ZIP64_MAGIC) {
+          // The real values are in the zip64 extra field, in this order, if they overflowed.
+          int extra = offset + CENTRAL_HEADER_SIZE + nameLength;
+          int extraEnd = extra + extraLength;
+          while (extra + 4 <= extraEnd) {
+            int id = buffer.getShort(extra) & 0xFFFF;
+            int length = buffer.getShort(extra + 2) & 0xFFFF;
+            if (id == ZIP64_EXTRA_FIELD_ID) {
+              int field = extra + 4;
+              if (size == ZIP64_MAGIC) {
+                size = buffer.getLong(field);
+                field += 8;
+              }
+              if (compressedSize == ZIP64_MAGIC) {
+                compressedSize = buffer.getLong(field);
+                field += 8;
+              }
+              if (localHeaderOffset == ZIP64_MAGIC) {
+                localHeaderOffset = buffer.getLong(field);
+              }
+              break;
+            }
+            extra += 4 + length;
+          }
+        }
+
+        if (!name.endsWith("/")) {
+          entries.put(
+              name,
+              new Entry(
+                  method,
+                  checkedOffset(localHeaderOffset),
+                  checkedSize(compressedSize),
+                  checkedSize(size)));
+        }
+        offset += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+      }
+    }
+
+    private int findEndOfCentralDirectory() throws ZipException {
+      // The end record is followed by a comment of at most 64k.
+      int minOffset = Math.max(0, buffer.limit() - END_SIZE - 0xFFFF);
+      for (int offset = buffer.limit() - END_SIZE; offset >= minOffset; offset--) {
+        if (buffer.getInt(offset) == END_SIGNATURE) {
+          return offset;
+        }
+      }
+      throw new ZipException("no end of central directory in " + path);
+    }
+
+    ByteBuffer read(Entry entry) throws IOException {
+      int localHeader = entry.localHeaderOffset;
+      if (buffer.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+        throw new ZipException("bad local header");
+      }
+      // The local header's name and extra field lengths may differ from the central directory's.
+      int dataOffset =
+          localHeader
+              + LOCAL_HEADER_SIZE
+              + (buffer.getShort(localHeader + 26) & 0xFFFF)
+              + (buffer.getShort(localHeader + 28) & 0xFFFF);
+      ByteBuffer compressed = slice(dataOffset, entry.compressedSize);
+      BYTES_READ.add(entry.compressedSize);
+
+      switch (entry.method) {
+        case STORED:
+          return compressed;
+        case DEFLATED:
+          return ByteBuffer.wrap(inflate(compressed, entry.size));
+        default:
+          throw new ZipException("unsupported compression method " + entry.method);
+      }
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+      ByteBuffer duplicate = buffer.duplicate();
+      duplicate.position(offset);
+      duplicate.limit(offset + length);
+      return duplicate.slice().asReadOnlyBuffer();
+    }
+
+    private static byte[] inflate(ByteBuffer compressed, int size) throws ZipException {
+      byte[] input = new byte[compressed.remaining()];
+      compressed.get(input);
+      byte[] output = new byte[size];
+      Inflater inflater = new Inflater(/* nowrap= */ true);
+      try {
+        inflater.setInput(input);
+        int inflated = 0;
+        while (inflated < size) {
+          int count = inflater.inflate(output, inflated, size - inflated);
+          if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+            break;
+          }
+          inflated += count;
+        }
+        if (inflated != size) {
+          throw new ZipException("expected " + size + " bytes but inflated " + inflated);
+        }
+        return output;
+      } catch (DataFormatException e) {
+        ZipException zipException = new ZipException("corrupt entry");
+        zipException.initCause(e);
+        throw zipException;
+      } finally {
+        inflater.end();
+      }
+    }
+
+    private String readString(int offset, int length) {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(offset + i);
+      }
+      return new String(bytes, UTF_8);
+    }
+
+    private int checkedOffset(long offset) throws ZipException {
+      if (offset < 0 || offset >= buffer.limit()) {
+        throw new ZipException("bad offset " + offset + " in " + path);
+      }
+      return (int) offset;
+    }
+
+    private int checkedSize(long size) throws ZipException {
+      if (size < 0 || size > Integer.MAX_VALUE) {
+        throw new ZipException("bad entry size " + size + " in " + path);
+      }
+      return (int) size;
+    }
+
+    URL urlFor(String resName) {
+      try {
+        return new URL("jar:" + url + "!/" + resName);
+      } catch (MalformedURLException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  private static class Entry {
+    final int method;
+    final int localHeaderOffset;
+    final int compressedSize;
+    final int size;
+
+    Entry(int method, int localHeaderOffset, int compressedSize, int size) {
+      this.method = method;
+      this.localHeaderOffset = localHeaderOffset;
+      this.compressedSize = compressedSize;
+      this.size = size;
+    }
+  }
+
+  /** InputStream over a buffer, which it consumes. */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -4,12 +4,18 @@ import static org.robolectric.internal.bytecode.MethodCallSite.Kind.STATIC;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MethodCallSite extends RoboCallSite {
   private final String name;
   private final MethodHandle original;
   private final Kind kind;
 
+  // Inline cache state, guarded by this site.
+  private MethodHandle shadowMethodHandle;
+  private final List<Class<?>> receiverClasses = new ArrayList<>();
+
   public MethodCallSite(Class<?> theClass, MethodType type, String name, MethodHandle original,
       Kind kind) {
     super(type, theClass);
@@ -34,6 +40,21 @@ public class MethodCallSite extends RoboCallSite {
     return kind == STATIC;
   }
 
+  /** The shadow method this site is bound to, which takes the shadow in place of {@code this}. */
+  public MethodHandle getShadowMethodHandle() {
+    return shadowMethodHandle;
+  }
+
+  /** Binds this site to a shadow method. */
+  public void setShadowMethodHandle(MethodHandle shadowMethodHandle) {
+    this.shadowMethodHandle = shadowMethodHandle;
+  }
+
+  /** The receiver classes this site has been specialized for, in the order they were seen. */
+  public List<Class<?>> getReceiverClasses() {
+    return receiverClasses;
+  }
+
   @Override public String toString() {
     return "RoboCallSite{" +
         "theClass=" + getTheClass() +
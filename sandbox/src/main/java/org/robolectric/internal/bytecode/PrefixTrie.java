@@ -0,0 +1,80 @@
+package org.robolectric.internal.bytecode;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An immutable set of string prefixes, which finds whether any of them is a prefix of a given
+ * string in time proportional to the length of the matched prefix, regardless of how many prefixes
+ * there are.
+ */
+class PrefixTrie {
+  private static final char[] NO_CHARS = new char[0];
+  private static final Node[] NO_NODES = new Node[0];
+
+  private final Node root = new Node();
+
+  PrefixTrie(Collection<String> prefixes) {
+    for (String prefix : prefixes) {
+      add(prefix);
+    }
+  }
+
+  private void add(String prefix) {
+    Node node = root;
+    for (int i = 0; i < prefix.length(); i++) {
+      node = node.getOrAddChild(prefix.charAt(i));
+    }
+    node.terminal = true;
+  }
+
+  /** Returns true if any of the prefixes is a prefix of {@code s}. */
+  boolean matchesPrefixOf(String s) {
+    Node node = root;
+    for (int i = 0; ; i++) {
+      if (node.terminal) {
+        return true;
+      }
+      if (i == s.length()) {
+        return false;
+      }
+      node = node.getChild(s.charAt(i));
+      if (node == null) {
+        return false;
+      }
+    }
+  }
+
+  private static class Node {
+    // Children are kept sorted by character, for binary search.
+    private char[] chars = NO_CHARS;
+    private Node[] children = NO_NODES;
+    private boolean terminal;
+
+    Node getChild(char c) {
+      int index = Arrays.binarySearch(chars, c);
+      return index < 0 ? null : children[index];
+    }
+
+    Node getOrAddChild(char c) {
+      int index = Arrays.binarySearch(chars, c);
+      if (index >= 0) {
+        return children[index];
+      }
+
+      int insertAt = -index - 1;
+      char[] newChars = new char[chars.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(chars, 0, newChars, 0, insertAt);
+      System.arraycopy(children, 0, newChildren, 0, insertAt);
+      System.arraycopy(chars, insertAt, newChars, insertAt + 1, chars.length - insertAt);
+      System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+      Node child = new Node();
+      newChars[insertAt] = c;
+      newChildren[insertAt] = child;
+      chars = newChars;
+      children = newChildren;
+      return child;
+    }
+  }
+}
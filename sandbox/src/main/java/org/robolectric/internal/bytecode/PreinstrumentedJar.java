@@ -0,0 +1,200 @@
+package org.robolectric.internal.bytecode;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import javax.annotation.Nullable;
+import org.robolectric.util.Logger;
+import org.robolectric.util.Util;
+
+/**
+ * A jar whose classes were instrumented ahead of time by {@link org.robolectric.JarInstrumentor},
+ * from which {@link SandboxClassLoader} can define classes without running ASM at all.
+ *
+ * <p>Instrumented bytecode is only valid for the exact {@link InstrumentationConfiguration} and
+ * {@link ClassInstrumentor} which produced it, so each jar is tagged with an instrumentation key
+ * derived from both. When the {@code robolectric.preinstrumentedJars.dir} system property is set,
+ * sandboxes look in that directory for {@code <sdk jar name>-instrumented-<key>.jar}. If it's
+ * missing, they instrument classes at runtime as usual, and leave a {@code .spec} file next to where
+ * the jar is expected; {@code JarInstrumentor --spec <spec file> <sdk jar> <dir>} builds it.
+ *
+ * <p>Classes are defined with the jar as their {@link CodeSource}, and with exactly the bytes it
+ * contains, which is what the JVM needs to map them from a class data sharing archive instead of
+ * parsing them again in every fork; see {@link org.robolectric.ClassDataSharingArchiver}.
+ */
+public class PreinstrumentedJar {
+
+  /** Manifest attribute holding the instrumentation key of a pre-instrumented jar. */
+  public static final String INSTRUMENTATION_KEY_ATTRIBUTE = "Robolectric-Instrumentation-Key";
+
+  private static final String JARS_DIR = "robolectric.preinstrumentedJars.dir";
+  private static final String JAR_SUFFIX = ".jar";
+  private static final String SPEC_SUFFIX = ".spec";
+
+  private final JarFile jarFile;
+  private final CodeSource codeSource;
+
+  private PreinstrumentedJar(JarFile jarFile, URL url) {
+    this.jarFile = jarFile;
+    this.codeSource = new CodeSource(url, (Certificate[]) null);
+  }
+
+  /**
+   * Returns the pre-instrumented counterpart of {@code sourceJar} for the given configuration and
+   * instrumentor, or null if pre-instrumented jars are disabled or there's no matching jar.
+   */
+  @Nullable
+  public static PreinstrumentedJar find(
+      Path sourceJar, InstrumentationConfiguration config, ClassInstrumentor classInstrumentor) {
+    String jarsDir = System.getProperty(JARS_DIR);
+    if (jarsDir == null || jarsDir.isEmpty()) {
+      return null;
+    }
+
+    String spec = specFor(config, classInstrumentor);
+    String key = keyFor(spec);
+    Path jarPath = Paths.get(jarsDir).resolve(fileNameFor(sourceJar, key, JAR_SUFFIX));
+    if (!Files.exists(jarPath)) {
+      Path specPath = Paths.get(jarsDir).resolve(fileNameFor(sourceJar, key, SPEC_SUFFIX));
+      writeSpec(specPath, spec);
+      Logger.info("No pre-instrumented jar found at %s; see %s", jarPath, specPath);
+      return null;
+    }
+
+    try {
+      JarFile jarFile = new JarFile(jarPath.toFile());
+      Manifest manifest = jarFile.getManifest();
+      String jarKey =
+          manifest == null
+              ? null
+              : manifest.getMainAttributes().getValue(INSTRUMENTATION_KEY_ATTRIBUTE);
+      if (!key.equals(jarKey)) {
+        Logger.warn("Ignoring %s: instrumentation key %s doesn't match %s", jarPath, jarKey, key);
+        jarFile.close();
+        return null;
+      }
+      return new PreinstrumentedJar(jarFile, jarPath.toUri().toURL());
+    } catch (IOException e) {
+      Logger.strict("couldn't open pre-instrumented jar " + jarPath, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns a description of everything that affects instrumented bytecode, from which {@link
+   * #parseConfiguration(String)} and {@link #parseInstrumentor(String)} can rebuild the
+   * configuration and instrumentor.
+   */
+  public static String specFor(
+      InstrumentationConfiguration config, ClassInstrumentor classInstrumentor) {
+    return InstrumentedClassCache.salt(config, classInstrumentor);
+  }
+
+  /** Returns the instrumentation key for a spec. */
+  public static String keyFor(String spec) {
+    return Hashing.sha256().hashString(spec, UTF_8).toString().substring(0, 16);
+  }
+
+  /** Returns the name of the pre-instrumented counterpart of {@code sourceJar}. */
+  public static String jarFileNameFor(Path sourceJar, String key) {
+    return fileNameFor(sourceJar, key, JAR_SUFFIX);
+  }
+
+  public static InstrumentationConfiguration parseConfiguration(String spec) {
+    return InstrumentationConfiguration.fromCacheKey(
+        InstrumentedClassCache.parseSalt(spec).configurationCacheKey);
+  }
+
+  public static ClassInstrumentor parseInstrumentor(String spec) {
+    InstrumentedClassCache.ParsedSalt parsedSpec = InstrumentedClassCache.parseSalt(spec);
+    try {
+      ClassInstrumentor.Decorator decorator =
+          (ClassInstrumentor.Decorator)
+              Class.forName(parsedSpec.getHeader(InstrumentedClassCache.DECORATOR_HEADER))
+                  .getConstructor()
+                  .newInstance();
+      return (ClassInstrumentor)
+          Class.forName(parsedSpec.getHeader(InstrumentedClassCache.INSTRUMENTOR_HEADER))
+              .getConstructor(ClassInstrumentor.Decorator.class)
+              .newInstance(decorator);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("can't create instrumentor for spec", e);
+    }
+  }
+
+  /**
+   * Returns the bytecode for the given class exactly as {@link SandboxClassLoader} should define
+   * it, or null if this jar doesn't contain the class.
+   */
+  @Nullable
+  byte[] getClassBytes(String className) throws IOException {
+    ZipEntry entry = jarFile.getEntry(className.replace('.', '/') + ".class");
+    if (entry == null) {
+      return null;
+    }
+    try (InputStream inputStream = jarFile.getInputStream(entry)) {
+      return Util.readBytes(inputStream);
+    }
+  }
+
+  /** Returns the location from which this jar's classes are defined. */
+  CodeSource getCodeSource() {
+    return codeSource;
+  }
+
+  @Override
+  public String toString() {
+    return "PreinstrumentedJar[" + jarFile.getName() + "]";
+  }
+
+  private static String fileNameFor(Path sourceJar, String key, String suffix) {
+    String name = sourceJar.getFileName().toString();
+    if (name.endsWith(JAR_SUFFIX)) {
+      name = name.substring(0, name.length() - JAR_SUFFIX.length());
+    }
+    return name + "-instrumented-" + key + suffix;
+  }
+
+  private static void writeSpec(Path specPath, String spec) {
+    if (Files.exists(specPath)) {
+      return;
+    }
+    Path tempFile = null;
+    try {
+      Files.createDirectories(specPath.getParent());
+      tempFile = Files.createTempFile(specPath.getParent(), "spec", ".tmp");
+      Files.write(tempFile, spec.getBytes(UTF_8));
+      try {
+        Files.move(tempFile, specPath, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, specPath, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (FileAlreadyExistsException e) {
+      // another sandbox got there first
+    } catch (IOException e) {
+      Logger.strict("couldn't write instrumentation spec " + specPath, e);
+    } finally {
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+}
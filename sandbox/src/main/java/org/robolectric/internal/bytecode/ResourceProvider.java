@@ -2,6 +2,8 @@ package org.robolectric.internal.bytecode;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 
 /** A provider of resources (à la ClassLoader). */
 public interface ResourceProvider {
@@ -9,4 +11,14 @@ public interface ResourceProvider {
   URL getResource(String resName);
 
   InputStream getResourceAsStream(String resName);
+
+  /**
+   * Returns the contents of a resource, or null if it isn't found or isn't available as a buffer,
+   * in which case callers should fall back to {@link #getResourceAsStream}. A buffer backed by an
+   * array belongs to the caller, which may use the array directly.
+   */
+  @Nullable
+  default ByteBuffer getResourceBuffer(String resName) {
+    return null;
+  }
 }
@@ -56,7 +56,7 @@ public class Sandbox {
   }
 
   public void replaceShadowMap(ShadowMap shadowMap) {
-    if (InvokeDynamic.ENABLED) {
+    if (sandboxClassLoader.isInvokeDynamic()) {
       ShadowMap oldShadowMap = this.shadowMap;
       this.shadowMap = shadowMap;
       Set<String> invalidatedClasses = shadowMap.getInvalidatedClasses(oldShadowMap);
@@ -69,7 +69,7 @@ public class Sandbox {
 
     ClassLoader robolectricClassLoader = getRobolectricClassLoader();
     Class<?> robolectricInternalsClass = bootstrappedClass(RobolectricInternals.class);
-    if (InvokeDynamic.ENABLED) {
+    if (sandboxClassLoader.isInvokeDynamic()) {
       ShadowInvalidator invalidator = getShadowInvalidator();
       setStaticField(robolectricInternalsClass, "shadowInvalidator", invalidator);
     }
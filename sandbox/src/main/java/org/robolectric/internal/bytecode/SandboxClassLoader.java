@@ -5,15 +5,28 @@ import static com.google.common.base.StandardSystemProperty.PATH_SEPARATOR;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.security.ProtectionDomain;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import org.robolectric.util.Logger;
 import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
 import org.robolectric.util.Util;
 
 /**
@@ -21,10 +34,36 @@ import org.robolectric.util.Util;
  * shadow classes.
  */
 public class SandboxClassLoader extends URLClassLoader {
+  private static final MetricHandle LOAD_SANDBOXED_CLASS =
+      PerfStatsCollector.getInstance().metricHandle("load sandboxed class");
+  private static final MetricHandle ANALYZE_CLASS =
+      PerfStatsCollector.getInstance().metricHandle("analyze class");
+  private static final MetricHandle INSTRUMENT_CLASS =
+      PerfStatsCollector.getInstance().metricHandle("instrument class");
+
+  // Leaves a core free for the thread setting up the sandbox, which instruments classes too.
+  private static final int PREFETCH_THREADS =
+      Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+  private static final ExecutorService prefetchExecutor =
+      Executors.newFixedThreadPool(
+          PREFETCH_THREADS,
+          r -> {
+            Thread thread = new Thread(r, "Robolectric class prefetch");
+            thread.setDaemon(true);
+            return thread;
+          });
+
   private final InstrumentationConfiguration config;
   private final ResourceProvider resourceProvider;
   private final ClassInstrumentor classInstrumentor;
   private final ClassNodeProvider classNodeProvider;
+  private final InstrumentedClassCache instrumentedClassCache;
+  private final String instrumentedClassCacheSalt;
+  private final PreinstrumentedJar preinstrumentedJar;
+  private final ProtectionDomain preinstrumentedProtectionDomain;
+  private final Map<String, FutureTask<InstrumentedClass>> prefetchedClasses =
+      new ConcurrentHashMap<>();
+  private volatile ClassLoadProfile classLoadProfile;
 
   /** Constructor for use by tests. */
   SandboxClassLoader(InstrumentationConfiguration config) {
@@ -42,10 +81,33 @@ public class SandboxClassLoader extends URLClassLoader {
   public SandboxClassLoader(
       ClassLoader erstwhileClassLoader, InstrumentationConfiguration config,
       ResourceProvider resourceProvider, ClassInstrumentor classInstrumentor) {
+    this(erstwhileClassLoader, config, resourceProvider, classInstrumentor, null);
+  }
+
+  /**
+   * Creates a class loader which defines classes found in {@code preinstrumentedJar} directly,
+   * without instrumenting them.
+   */
+  public SandboxClassLoader(
+      InstrumentationConfiguration config, ResourceProvider resourceProvider,
+      ClassInstrumentor classInstrumentor, @Nullable PreinstrumentedJar preinstrumentedJar) {
+    this(Thread.currentThread().getContextClassLoader(), config, resourceProvider,
+        classInstrumentor, preinstrumentedJar);
+  }
+
+  public SandboxClassLoader(
+      ClassLoader erstwhileClassLoader, InstrumentationConfiguration config,
+      ResourceProvider resourceProvider, ClassInstrumentor classInstrumentor,
+      @Nullable PreinstrumentedJar preinstrumentedJar) {
     super(getClassPathUrls(erstwhileClassLoader), erstwhileClassLoader);
 
     this.config = config;
     this.resourceProvider = resourceProvider;
+    this.preinstrumentedJar = preinstrumentedJar;
+    this.preinstrumentedProtectionDomain =
+        preinstrumentedJar == null
+            ? null
+            : new ProtectionDomain(preinstrumentedJar.getCodeSource(), null, this, null);
 
     this.classInstrumentor = classInstrumentor;
 
@@ -54,7 +116,20 @@ public class SandboxClassLoader extends URLClassLoader {
       protected byte[] getClassBytes(String internalClassName) throws ClassNotFoundException {
         return getByteCode(internalClassName);
       }
+
+      @Override
+      protected String getClassSourceKey(String internalClassName) {
+        URL url = resourceProvider.getResource(classFilename(internalClassName));
+        // Jars don't change while tests run, so their entries identify their content.
+        return url != null && "jar".equals(url.getProtocol()) ? url.toString() : null;
+      }
     };
+
+    instrumentedClassCache = InstrumentedClassCache.getDefault();
+    instrumentedClassCacheSalt =
+        instrumentedClassCache == null
+            ? null
+            : InstrumentedClassCache.salt(config, classInstrumentor);
   }
 
   private static URL[] getClassPathUrls(ClassLoader classloader) {
@@ -112,7 +187,7 @@ public class SandboxClassLoader extends URLClassLoader {
       if (config.shouldAcquire(name)) {
         loadedClass =
             PerfStatsCollector.getInstance()
-                .measure("load sandboxed class", () -> maybeInstrumentClass(name));
+                .measure(LOAD_SANDBOXED_CLASS, () -> maybeInstrumentClass(name));
       } else {
         loadedClass = getParent().loadClass(name);
       }
@@ -125,24 +200,161 @@ public class SandboxClassLoader extends URLClassLoader {
     }
   }
 
+  /**
+   * Returns true if this class loader has already loaded the named class. Nothing can have changed
+   * the static state of a class which hasn't been loaded yet.
+   */
+  public boolean isClassLoaded(String className) {
+    return findLoadedClass(className) != null;
+  }
+
+  /** Returns true if classes instrumented by this class loader call shadows via invokedynamic. */
+  boolean isInvokeDynamic() {
+    return InvokeDynamic.isInvokeDynamic(classInstrumentor);
+  }
+
+  /**
+   * Records the classes this class loader loads from now on in a {@link ClassLoadProfile} with the
+   * given name, and starts instrumenting the classes recorded by the last sandbox with the same
+   * name in parallel, so they're ready before they're needed. Does nothing unless class load
+   * profiles are enabled.
+   */
+  protected void startClassLoadProfile(String profileName) {
+    ClassLoadProfile profile = ClassLoadProfile.forName(profileName, config, classInstrumentor);
+    if (profile == null) {
+      return;
+    }
+
+    // Pre-instrumented classes are cheap enough to define on demand.
+    if (preinstrumentedJar == null) {
+      for (String className : profile.getProfiledClassNames()) {
+        if (config.shouldAcquire(className) && findLoadedClass(className) == null) {
+          FutureTask<InstrumentedClass> task =
+              new FutureTask<>(() -> instrumentClass(className));
+          if (prefetchedClasses.putIfAbsent(className, task) == null) {
+            prefetchExecutor.execute(task);
+          }
+        }
+      }
+    }
+    classLoadProfile = profile;
+  }
+
+  /**
+   * Saves the classes loaded since {@link #startClassLoadProfile(String)} as the profile for later
+   * sandboxes, and stops recording. Should be called once the sandbox has set up its first test.
+   */
+  public void saveClassLoadProfile() {
+    ClassLoadProfile profile = classLoadProfile;
+    if (profile != null) {
+      profile.save();
+      // Anything not needed by now probably won't be needed at all.
+      Iterator<FutureTask<InstrumentedClass>> tasks = prefetchedClasses.values().iterator();
+      while (tasks.hasNext()) {
+        tasks.next().cancel(false);
+        tasks.remove();
+      }
+    }
+  }
+
   protected Class<?> maybeInstrumentClass(String className) throws ClassNotFoundException {
+    ClassLoadProfile profile = classLoadProfile;
+    if (profile != null) {
+      profile.record(className);
+    }
+
+    if (preinstrumentedJar != null) {
+      Class<?> preinstrumentedClass = definePreinstrumentedClass(className);
+      if (preinstrumentedClass != null) {
+        return preinstrumentedClass;
+      }
+    }
+
+    InstrumentedClass instrumentedClass = getPrefetchedClass(className);
+    if (instrumentedClass == null) {
+      instrumentedClass = instrumentClass(className);
+    }
+
+    try {
+      ensurePackage(className);
+      return defineClass(className, instrumentedClass.bytes, 0, instrumentedClass.bytes.length);
+    } catch (ClassFormatError e) {
+      if (instrumentedClass.cacheKey == null) {
+        throw e;
+      }
+      Logger.strict("discarding corrupt cached class " + className, e);
+      instrumentedClassCache.remove(instrumentedClass.cacheKey);
+      byte[] bytes = instrumentClassBytes(className, getByteCode(className), null);
+      return defineClass(className, bytes, 0, bytes.length);
+    }
+  }
+
+  /**
+   * Returns the class instrumented ahead of time for the class load profile, instrumenting it now
+   * if no prefetch worker has got to it yet, or null if it wasn't prefetched or prefetching failed.
+   */
+  @Nullable
+  private InstrumentedClass getPrefetchedClass(String className) {
+    FutureTask<InstrumentedClass> task = prefetchedClasses.remove(className);
+    if (task == null) {
+      return null;
+    }
+
+    // A no-op if a worker has already started it.
+    task.run();
+    try {
+      return Uninterruptibles.getUninterruptibly(task);
+    } catch (ExecutionException | CancellationException e) {
+      // try again on this thread, so any failure is reported as usual
+      return null;
+    }
+  }
+
+  /**
+   * Returns the bytes to define for the given class, which may be read from the instrumented class
+   * cache. Doesn't define the class, so may be called on any thread.
+   */
+  private InstrumentedClass instrumentClass(String className) throws ClassNotFoundException {
     final byte[] origClassBytes = getByteCode(className);
 
-    MutableClass mutableClass = PerfStatsCollector.getInstance().measure("analyze class",
+    String cacheKey = null;
+    // Only instrumented classes are cached, so don't hash and look up classes, such as tests,
+    // which almost certainly aren't.
+    if (instrumentedClassCache != null && config.isInstrumentedByName(className)) {
+      cacheKey = InstrumentedClassCache.keyFor(instrumentedClassCacheSalt, origClassBytes);
+      String finalCacheKey = cacheKey;
+      byte[] cachedBytes =
+          PerfStatsCollector.getInstance()
+              .measure(
+                  "read cached instrumented class", () -> instrumentedClassCache.get(finalCacheKey));
+      if (cachedBytes != null) {
+        return new InstrumentedClass(cachedBytes, cacheKey);
+      }
+    }
+
+    return new InstrumentedClass(instrumentClassBytes(className, origClassBytes, cacheKey), null);
+  }
+
+  private byte[] instrumentClassBytes(
+      String className, byte[] origClassBytes, @Nullable String cacheKey)
+      throws ClassNotFoundException {
+    MutableClass mutableClass = PerfStatsCollector.getInstance().measure(ANALYZE_CLASS,
         () -> classInstrumentor.analyzeClass(origClassBytes, config, classNodeProvider)
     );
 
     try {
       final byte[] bytes;
       if (config.shouldInstrument(mutableClass)) {
-        bytes = PerfStatsCollector.getInstance().measure("instrument class",
+        bytes = PerfStatsCollector.getInstance().measure(INSTRUMENT_CLASS,
             () -> classInstrumentor.instrumentToBytes(mutableClass)
         );
+        if (cacheKey != null) {
+          instrumentedClassCache.put(cacheKey, bytes);
+        }
       } else {
         bytes = postProcessUninstrumentedClass(mutableClass, origClassBytes);
       }
-      ensurePackage(className);
-      return defineClass(className, bytes, 0, bytes.length);
+      return bytes;
     } catch (Exception e) {
       throw new ClassNotFoundException("couldn't load " + className, e);
     } catch (OutOfMemoryError e) {
@@ -151,12 +363,33 @@ public class SandboxClassLoader extends URLClassLoader {
     }
   }
 
+  private Class<?> definePreinstrumentedClass(String className) throws ClassNotFoundException {
+    byte[] bytes;
+    try {
+      bytes =
+          PerfStatsCollector.getInstance()
+              .measure(
+                  "read pre-instrumented class",
+                  () -> preinstrumentedJar.getClassBytes(className));
+    } catch (IOException e) {
+      throw new ClassNotFoundException("couldn't load " + className, e);
+    }
+    if (bytes == null) {
+      return null;
+    }
+
+    ensurePackage(className);
+    // Defining the jar's own bytes from the jar's location lets the JVM share the class's metadata
+    // through a class data sharing archive, if it was started with one.
+    return defineClass(className, bytes, 0, bytes.length, preinstrumentedProtectionDomain);
+  }
+
   protected byte[] postProcessUninstrumentedClass(
       MutableClass mutableClass, byte[] origClassBytes) {
     return origClassBytes;
   }
 
-  protected byte[] getByteCode(String className) throws ClassNotFoundException {
+  private static String classFilename(String className) {
     // Mockito shipped a workaround to work with the (previously broken) SandboxClassLoader:
     // https://github.com/mockito/mockito/issues/845
     // We need to special-case this one file to make sure the integration with the inline-mockmaker
@@ -168,7 +401,23 @@ public class SandboxClassLoader extends URLClassLoader {
         className.equals("org.mockito.internal.creation.bytebuddy.inject.MockMethodDispatcher")
             ? "raw"
             : "class";
-    String classFilename = className.replace('.', '/') + "." + extension;
+    return className.replace('.', '/') + "." + extension;
+  }
+
+  protected byte[] getByteCode(String className) throws ClassNotFoundException {
+    String classFilename = classFilename(className);
+    ByteBuffer classBytesBuffer = resourceProvider.getResourceBuffer(classFilename);
+    if (classBytesBuffer != null) {
+      if (classBytesBuffer.hasArray()
+          && classBytesBuffer.arrayOffset() == 0
+          && classBytesBuffer.position() == 0
+          && classBytesBuffer.remaining() == classBytesBuffer.array().length) {
+        return classBytesBuffer.array();
+      }
+      byte[] classBytes = new byte[classBytesBuffer.remaining()];
+      classBytesBuffer.get(classBytes);
+      return classBytes;
+    }
     try (InputStream classBytesStream = getClassBytesAsStreamPreferringLocalUrls(classFilename)) {
       if (classBytesStream == null) {
         throw new ClassNotFoundException(className);
@@ -191,4 +440,14 @@ public class SandboxClassLoader extends URLClassLoader {
     }
   }
 
+  /** Bytes ready to be defined, and the cache entry they came from, if any. */
+  private static class InstrumentedClass {
+    final byte[] bytes;
+    @Nullable final String cacheKey;
+
+    InstrumentedClass(byte[] bytes, @Nullable String cacheKey) {
+      this.bytes = bytes;
+      this.cacheKey = cacheKey;
+    }
+  }
 }
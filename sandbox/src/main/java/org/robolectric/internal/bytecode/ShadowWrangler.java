@@ -17,10 +17,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 import javax.annotation.Priority;
 import org.robolectric.annotation.RealObject;
@@ -82,13 +83,46 @@ public class ShadowWrangler implements ClassHandler {
   private final ShadowMap shadowMap;
   private final Interceptors interceptors;
   private final ShadowMatcher shadowMatcher;
-  private final Map<String, Plan> planCache =
-      Collections.synchronizedMap(new LinkedHashMap<String, Plan>() {
+  /**
+   * Upper bound on cached plans per instrumented class. Classes rarely come close; this only
+   * guards against unbounded growth.
+   */
+  private static final int PLAN_CACHE_CAPACITY_PER_CLASS =
+      Integer.getInteger("robolectric.planCache.capacityPerClass", 2000);
+
+  /** Stands in for {@link #CALL_REAL_CODE_PLAN} in plan tables, which can't hold nulls. */
+  private static final Plan CALL_REAL_CODE_PLAN_MARKER = new Plan() {
+    @Override
+    public Object run(Object instance, Object[] params) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String describe() {
+      return "call real code";
+    }
+  };
+
+  /** key is instrumented class; values are plans keyed by method signature */
+  private final ClassValueMap<Map<String, Plan>> planTables =
+      new ClassValueMap<Map<String, Plan>>() {
         @Override
-        protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
-          return size() > 500;
+        protected Map<String, Plan> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
         }
-      });
+      };
+
+  private static final PerfStatsCollector.MetricHandle FIND_SHADOW_METHOD =
+      PerfStatsCollector.getInstance().metricHandle("find shadow method");
+  private static final PerfStatsCollector.MetricHandle FIND_SHADOW_METHOD_HANDLE =
+      PerfStatsCollector.getInstance().metricHandle("find shadow method handle");
+  private static final PerfStatsCollector.MetricHandle INDEX_SHADOW_METHODS =
+      PerfStatsCollector.getInstance().metricHandle("index shadow methods");
+
+  private final PerfStatsCollector.Counter planCacheHits =
+      PerfStatsCollector.getInstance().counter("shadow plan cache hit");
+  private final PerfStatsCollector.Counter planCacheMisses =
+      PerfStatsCollector.getInstance().counter("shadow plan cache miss");
 
   /** key is instrumented class */
   private final ClassValueMap<ShadowInfo> cachedShadowInfos = new ClassValueMap<ShadowInfo>() {
@@ -97,6 +131,25 @@ public class ShadowWrangler implements ClassHandler {
     }
   };
 
+  /** key is instrumented class; null if it has no shadow of its own */
+  private final ClassValueMap<ResolvedShadow> resolvedShadows =
+      new ClassValueMap<ResolvedShadow>() {
+        @Override
+        protected ResolvedShadow computeValue(Class<?> type) {
+          return resolveShadow(type);
+        }
+      };
+
+  /** key is shadow class; values are its valid shadow methods */
+  private final ClassValueMap<Map<MethodKey, Method>> shadowMethodTables =
+      new ClassValueMap<Map<MethodKey, Method>>() {
+        @Override
+        protected Map<MethodKey, Method> computeValue(Class<?> type) {
+          return PerfStatsCollector.getInstance()
+              .measure(INDEX_SHADOW_METHODS, () -> indexShadowMethods(type));
+        }
+      };
+
   /** key is shadow class */
   private final ClassValueMap<ShadowMetadata> cachedShadowMetadata = new ClassValueMap<ShadowMetadata>() {
     @Nonnull
@@ -173,20 +226,27 @@ public class ShadowWrangler implements ClassHandler {
   }
 
   @Override
+  @SuppressWarnings("ReferenceEquality")
   public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
-    Plan plan;
-    if (planCache.containsKey(signature)) {
-      plan = planCache.get(signature);
-    } else {
-      plan = calculatePlan(signature, isStatic, theClass);
-      planCache.put(signature, plan);
+    Map<String, Plan> planTable = planTables.get(theClass);
+    Plan plan = planTable.get(signature);
+    if (plan != null) {
+      planCacheHits.increment();
+      return plan == CALL_REAL_CODE_PLAN_MARKER ? CALL_REAL_CODE_PLAN : plan;
     }
+
+    planCacheMisses.increment();
+    plan = calculatePlan(signature, isStatic, theClass);
+    if (planTable.size() >= PLAN_CACHE_CAPACITY_PER_CLASS) {
+      planTable.clear();
+    }
+    planTable.put(signature, plan == CALL_REAL_CODE_PLAN ? CALL_REAL_CODE_PLAN_MARKER : plan);
     return plan;
   }
 
   @SuppressWarnings("ReferenceEquality")
   private Plan calculatePlan(String signature, boolean isStatic, Class<?> definingClass) {
-    return PerfStatsCollector.getInstance().measure("find shadow method", () -> {
+    return PerfStatsCollector.getInstance().measure(FIND_SHADOW_METHOD, () -> {
       final ClassLoader classLoader = definingClass.getClassLoader();
       final InvocationProfile invocationProfile =
           new InvocationProfile(signature, isStatic, classLoader);
@@ -209,7 +269,7 @@ public class ShadowWrangler implements ClassHandler {
   @SuppressWarnings("ReferenceEquality")
   @Override public MethodHandle findShadowMethodHandle(Class<?> definingClass, String name,
       MethodType methodType, boolean isStatic) throws IllegalAccessException {
-    return PerfStatsCollector.getInstance().measure("find shadow method handle", () -> {
+    return PerfStatsCollector.getInstance().measure(FIND_SHADOW_METHOD_HANDLE, () -> {
       MethodType actualType = isStatic ? methodType : methodType.dropParameterTypes(0, 1);
       Class<?>[] paramTypes = actualType.parameterArray();
 
@@ -235,94 +295,81 @@ public class ShadowWrangler implements ClassHandler {
   }
 
   protected Method pickShadowMethod(Class<?> definingClass, String name, Class<?>[] paramTypes) {
-    ShadowInfo shadowInfo = getExactShadowInfo(definingClass);
-    if (shadowInfo == null) {
+    ResolvedShadow resolvedShadow = resolvedShadows.get(definingClass);
+    if (resolvedShadow == null) {
       return CALL_REAL_CODE;
-    } else {
-      ClassLoader classLoader = definingClass.getClassLoader();
-      Class<?> shadowClass;
-      try {
-        shadowClass = Class.forName(shadowInfo.shadowClassName, false, classLoader);
-      } catch (ClassNotFoundException e) {
-        throw new IllegalStateException(e);
-      }
+    }
 
-      Method method = findShadowMethod(definingClass, name, paramTypes, shadowInfo, shadowClass);
-      if (method == null) {
-        return shadowInfo.callThroughByDefault ? CALL_REAL_CODE : DO_NOTHING_METHOD;
-      } else {
-        return method;
-      }
+    Method method = resolvedShadow.findMethod(name, paramTypes);
+    if (method == null) {
+      return resolvedShadow.shadowInfo.callThroughByDefault ? CALL_REAL_CODE : DO_NOTHING_METHOD;
+    } else {
+      return method;
     }
   }
 
-  /**
-   * Searches for an {@code @Implementation} method on a given shadow class.
-   *
-   * <p>If the shadow class allows loose signatures, search for them.
-   *
-   * <p>If the shadow class doesn't have such a method, but does have a superclass which implements
-   * the same class as it, call ourself recursively with the shadow superclass.
-   */
-  private Method findShadowMethod(
-      Class<?> definingClass,
-      String name,
-      Class<?>[] types,
-      ShadowInfo shadowInfo,
-      Class<?> shadowClass) {
-    Method method = findShadowMethodDeclaredOnClass(shadowClass, name, types);
+  private ResolvedShadow resolveShadow(Class<?> definingClass) {
+    ShadowInfo shadowInfo = getExactShadowInfo(definingClass);
+    if (shadowInfo == null) {
+      return null;
+    }
 
-    if (method == null && shadowInfo.looseSignatures) {
-      Class<?>[] genericTypes = MethodType.genericMethodType(types.length).parameterArray();
-      method = findShadowMethodDeclaredOnClass(shadowClass, name, genericTypes);
+    ClassLoader classLoader = definingClass.getClassLoader();
+    Class<?> shadowClass;
+    try {
+      shadowClass = Class.forName(shadowInfo.shadowClassName, false, classLoader);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
     }
 
-    if (method != null) {
-      return method;
-    } else {
-      // if the shadow's superclass shadows the same class as this shadow, then recurse.
-      // Buffalo buffalo buffalo buffalo buffalo buffalo buffalo.
-      Class<?> shadowSuperclass = shadowClass.getSuperclass();
-      if (shadowSuperclass != null && !shadowSuperclass.equals(Object.class)) {
-        ShadowInfo shadowSuperclassInfo = ShadowMap.obtainShadowInfo(shadowSuperclass, true);
-        if (shadowSuperclassInfo != null
-            && shadowSuperclassInfo.isShadowOf(definingClass)
-            && shadowMatcher.matches(shadowSuperclassInfo)) {
-
-          method =
-              findShadowMethod(definingClass, name, types, shadowSuperclassInfo, shadowSuperclass);
-        }
+    // If the shadow's superclass shadows the same class as this shadow, then its methods apply too.
+    // Buffalo buffalo buffalo buffalo buffalo buffalo buffalo.
+    List<ShadowLevel> levels = new ArrayList<>();
+    ShadowInfo levelInfo = shadowInfo;
+    Class<?> levelClass = shadowClass;
+    while (true) {
+      levels.add(new ShadowLevel(levelInfo.looseSignatures, levelClass));
+
+      Class<?> shadowSuperclass = levelClass.getSuperclass();
+      if (shadowSuperclass == null || shadowSuperclass.equals(Object.class)) {
+        break;
+      }
+      ShadowInfo shadowSuperclassInfo = ShadowMap.obtainShadowInfo(shadowSuperclass, true);
+      if (shadowSuperclassInfo == null
+          || !shadowSuperclassInfo.isShadowOf(definingClass)
+          || !shadowMatcher.matches(shadowSuperclassInfo)) {
+        break;
       }
+      levelInfo = shadowSuperclassInfo;
+      levelClass = shadowSuperclass;
     }
-
-    return method;
+    return new ResolvedShadow(shadowInfo, shadowClass, levels);
   }
 
-  private Method findShadowMethodDeclaredOnClass(
-      Class<?> shadowClass, String methodName, Class<?>[] paramClasses) {
-    try {
-      Method method = shadowClass.getDeclaredMethod(methodName, paramClasses);
-
-      // todo: allow per-version overloading
-      // if (method == null) {
-      //   String methodPrefix = name + "$$";
-      //   for (Method candidateMethod : shadowClass.getDeclaredMethods()) {
-      //     if (candidateMethod.getName().startsWith(methodPrefix)) {
-      //
-      //     }
-      //   }
-      // }
+  /**
+   * Indexes the {@code @Implementation} methods declared on a shadow class by name and parameter
+   * types, choosing the same method as {@link Class#getDeclaredMethod} would for each.
+   */
+  private Map<MethodKey, Method> indexShadowMethods(Class<?> shadowClass) {
+    Map<MethodKey, Method> declaredMethods = new HashMap<>();
+    for (Method method : shadowClass.getDeclaredMethods()) {
+      MethodKey key = new MethodKey(method.getName(), method.getParameterTypes());
+      Method other = declaredMethods.get(key);
+      // prefer the most specific return type, which rules out bridge methods
+      if (other == null || other.getReturnType().isAssignableFrom(method.getReturnType())) {
+        declaredMethods.put(key, method);
+      }
+    }
 
+    Map<MethodKey, Method> shadowMethods = new HashMap<>();
+    for (Map.Entry<MethodKey, Method> entry : declaredMethods.entrySet()) {
+      Method method = entry.getValue();
       if (isValidShadowMethod(method)) {
         method.setAccessible(true);
-        return method;
-      } else {
-        return null;
+        shadowMethods.put(entry.getKey(), method);
       }
-
-    } catch (NoSuchMethodException e) {
-      return null;
     }
+    return shadowMethods;
   }
 
   private boolean isValidShadowMethod(Method method) {
@@ -396,17 +443,16 @@ public class ShadowWrangler implements ClassHandler {
   }
 
   private Object createShadowFor(Class<?> theClass) {
-    ShadowInfo shadowInfo = getShadowInfo(theClass);
-    if (shadowInfo == null) {
+    ResolvedShadow resolvedShadow = getInheritedResolvedShadow(theClass);
+    if (resolvedShadow == null) {
       return NO_SHADOW;
     } else {
       try {
-        Class<?> shadowClass = loadClass(shadowInfo.shadowClassName, theClass.getClassLoader());
-        ShadowMetadata shadowMetadata = getShadowMetadata(shadowClass);
+        ShadowMetadata shadowMetadata = getShadowMetadata(resolvedShadow.shadowClass);
         return shadowMetadata.constructor.newInstance();
       } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
-        throw new RuntimeException("Could not instantiate shadow " + shadowInfo.shadowClassName
-            + " for " + theClass, e);
+        throw new RuntimeException("Could not instantiate shadow "
+            + resolvedShadow.shadowInfo.shadowClassName + " for " + theClass, e);
       }
     }
   }
@@ -416,12 +462,12 @@ public class ShadowWrangler implements ClassHandler {
   }
 
   @Override public MethodHandle getShadowCreator(Class<?> theClass) {
-    ShadowInfo shadowInfo = getShadowInfo(theClass);
-    if (shadowInfo == null) return dropArguments(NO_SHADOW_HANDLE, 0, theClass);
-    String shadowClassName = shadowInfo.shadowClassName;
+    ResolvedShadow resolvedShadow = getInheritedResolvedShadow(theClass);
+    if (resolvedShadow == null) return dropArguments(NO_SHADOW_HANDLE, 0, theClass);
+    String shadowClassName = resolvedShadow.shadowInfo.shadowClassName;
 
     try {
-      Class<?> shadowClass = Class.forName(shadowClassName, false, theClass.getClassLoader());
+      Class<?> shadowClass = resolvedShadow.shadowClass;
       ShadowMetadata shadowMetadata = getShadowMetadata(shadowClass);
 
       MethodHandle mh = identity(shadowClass); // (instance)
@@ -434,7 +480,7 @@ public class ShadowWrangler implements ClassHandler {
       mh = foldArguments(mh, LOOKUP.unreflectConstructor(shadowMetadata.constructor));  // (shadow, instance)
 
       return mh; // (instance)
-    } catch (IllegalAccessException | ClassNotFoundException e) {
+    } catch (IllegalAccessException e) {
       throw new RuntimeException(
           "Could not instantiate shadow " + shadowClassName + " for " + theClass, e);
     }
@@ -447,12 +493,13 @@ public class ShadowWrangler implements ClassHandler {
     }
   }
 
-  private ShadowInfo getShadowInfo(Class<?> clazz) {
-    ShadowInfo shadowInfo = null;
-    for (; shadowInfo == null && clazz != null; clazz = clazz.getSuperclass()) {
-      shadowInfo = getExactShadowInfo(clazz);
+  /** Returns the resolved shadow of the given class, or else of its nearest shadowed ancestor. */
+  private ResolvedShadow getInheritedResolvedShadow(Class<?> clazz) {
+    ResolvedShadow resolvedShadow = null;
+    for (; resolvedShadow == null && clazz != null; clazz = clazz.getSuperclass()) {
+      resolvedShadow = resolvedShadows.get(clazz);
     }
-    return shadowInfo;
+    return resolvedShadow;
   }
 
   private ShadowInfo getExactShadowInfo(Class<?> clazz) {
@@ -515,6 +562,87 @@ public class ShadowWrangler implements ClassHandler {
     }
   }
 
+  /**
+   * The shadow of an instrumented class, and the shadow classes whose methods apply to it. Their
+   * methods are indexed the first time they're searched.
+   */
+  private class ResolvedShadow {
+    final ShadowInfo shadowInfo;
+    final Class<?> shadowClass;
+    /** most specific shadow class first */
+    final List<ShadowLevel> levels;
+
+    ResolvedShadow(ShadowInfo shadowInfo, Class<?> shadowClass, List<ShadowLevel> levels) {
+      this.shadowInfo = shadowInfo;
+      this.shadowClass = shadowClass;
+      this.levels = levels;
+    }
+
+    /**
+     * Returns the shadow method for the given signature, searching each shadow class in turn, and
+     * allowing loose signatures where its shadow does; or null if there is none.
+     */
+    Method findMethod(String name, Class<?>[] paramTypes) {
+      MethodKey key = new MethodKey(name, paramTypes);
+      MethodKey looseKey = null;
+      for (ShadowLevel level : levels) {
+        Map<MethodKey, Method> methods = shadowMethodTables.get(level.shadowClass);
+        Method method = methods.get(key);
+        if (method == null && level.looseSignatures) {
+          if (looseKey == null) {
+            Class<?>[] genericTypes =
+                MethodType.genericMethodType(paramTypes.length).parameterArray();
+            looseKey = new MethodKey(name, genericTypes);
+          }
+          method = methods.get(looseKey);
+        }
+        if (method != null) {
+          return method;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static class ShadowLevel {
+    final boolean looseSignatures;
+    final Class<?> shadowClass;
+
+    ShadowLevel(boolean looseSignatures, Class<?> shadowClass) {
+      this.looseSignatures = looseSignatures;
+      this.shadowClass = shadowClass;
+    }
+  }
+
+  private static class MethodKey {
+    private final String name;
+    private final Class<?>[] paramTypes;
+    private final int hashCode;
+
+    MethodKey(String name, Class<?>[] paramTypes) {
+      this.name = name;
+      this.paramTypes = paramTypes;
+      this.hashCode = 31 * name.hashCode() + Arrays.hashCode(paramTypes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof MethodKey)) {
+        return false;
+      }
+      MethodKey that = (MethodKey) o;
+      return name.equals(that.name) && Arrays.equals(paramTypes, that.paramTypes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
   private static class ShadowMetadata {
     final Constructor<?> constructor;
     final List<Field> realObjectFields = new ArrayList<>();
@@ -0,0 +1,111 @@
+package org.robolectric;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ClassDataSharingArchiverTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File archiveFile;
+  private ByteArrayOutputStream out;
+  private ByteArrayOutputStream err;
+
+  @Before
+  public void setUp() throws Exception {
+    archiveFile = new File(tempFolder.getRoot(), "robolectric.jsa");
+    out = new ByteArrayOutputStream();
+    err = new ByteArrayOutputStream();
+  }
+
+  @Test
+  public void buildCommand_shouldArchiveAtExitAndRunTheMainClass() {
+    List<String> command =
+        ClassDataSharingArchiver.buildCommand(
+            "/jdk",
+            "a.jar:b.jar",
+            new Properties(),
+            archiveFile,
+            "org.junit.runner.JUnitCore",
+            Arrays.asList("com.example.FooTest", "com.example.BarTest"));
+
+    assertThat(command)
+        .containsExactly(
+            "/jdk" + File.separator + "bin" + File.separator + "java",
+            "-XX:ArchiveClassesAtExit=" + archiveFile,
+            "-cp",
+            "a.jar:b.jar",
+            "org.junit.runner.JUnitCore",
+            "com.example.FooTest",
+            "com.example.BarTest")
+        .inOrder();
+  }
+
+  @Test
+  public void buildCommand_shouldForwardOnlyRobolectricProperties() {
+    Properties properties = new Properties();
+    properties.setProperty("robolectric.preinstrumentedJars.dir", "/jars");
+    properties.setProperty("java.class.path", "ignored.jar");
+    properties.setProperty("robolectric.logging", "stdout");
+
+    List<String> command =
+        ClassDataSharingArchiver.buildCommand(
+            "/jdk", "a.jar", properties, archiveFile, "Main", Collections.emptyList());
+
+    assertThat(command.subList(2, command.size()))
+        .containsExactly(
+            "-Drobolectric.logging=stdout",
+            "-Drobolectric.preinstrumentedJars.dir=/jars",
+            "-cp",
+            "a.jar",
+            "Main")
+        .inOrder();
+  }
+
+  @Test
+  public void reportResult_whenArchiveWasWritten_shouldReturnTheExitCode() throws Exception {
+    assertThat(archiveFile.createNewFile()).isTrue();
+
+    assertThat(reportResult(0)).isEqualTo(0);
+    assertThat(out.toString(UTF_8.name()))
+        .contains("-XX:SharedArchiveFile=" + archiveFile);
+    assertThat(err.toString(UTF_8.name())).isEmpty();
+  }
+
+  @Test
+  public void reportResult_whenNoArchiveWasWritten_shouldFail() throws Exception {
+    assertThat(reportResult(0)).isEqualTo(1);
+    assertThat(err.toString(UTF_8.name())).contains("No archive was written");
+    assertThat(out.toString(UTF_8.name())).isEmpty();
+  }
+
+  @Test
+  public void reportResult_whenTrainingRunFailedWithoutArchive_shouldReturnItsExitCode()
+      throws Exception {
+    assertThat(reportResult(3)).isEqualTo(3);
+    assertThat(err.toString(UTF_8.name())).contains("Training run exited with 3");
+    assertThat(err.toString(UTF_8.name())).contains("No archive was written");
+  }
+
+  private int reportResult(int exitCode) throws Exception {
+    return ClassDataSharingArchiver.reportResult(
+        archiveFile,
+        exitCode,
+        new PrintStream(out, true, UTF_8.name()),
+        new PrintStream(err, true, UTF_8.name()));
+  }
+}
@@ -376,6 +376,37 @@ public class ShadowWranglerIntegrationTest {
     }
   }
 
+  @SandboxConfig(shadows = ShadowWithCovariantOverride.class)
+  @Test public void whenShadowMethodIsOverriddenWithCovariantReturnType_shouldUseOverridingMethod()
+      throws Exception {
+    assertThat(new AClassReturningCharSequence().get())
+        .isEqualTo("from ShadowWithCovariantOverride");
+  }
+
+  @Instrument
+  public static class AClassReturningCharSequence {
+    public CharSequence get() {
+      return "from AClassReturningCharSequence";
+    }
+  }
+
+  @Implements(AClassReturningCharSequence.class)
+  public static class ShadowReturningCharSequence {
+    @Implementation
+    protected CharSequence get() {
+      return "from ShadowReturningCharSequence";
+    }
+  }
+
+  @Implements(AClassReturningCharSequence.class)
+  public static class ShadowWithCovariantOverride extends ShadowReturningCharSequence {
+    @Implementation
+    @Override
+    protected String get() {
+      return "from ShadowWithCovariantOverride";
+    }
+  }
+
   @Test @SandboxConfig(shadows = ShadowOfAClassWithStaticInitializer.class)
   public void classesWithInstrumentedShadowsDontDoubleInitialize() throws Exception {
     // if we didn't reject private shadow methods, __staticInitializer__ on the shadow
@@ -0,0 +1,86 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.testing.AClassToForget;
+import org.robolectric.testing.AClassToRemember;
+import org.robolectric.testing.AnExampleClass;
+
+@RunWith(JUnit4.class)
+public class ClassLoadProfileTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path profileDir;
+  private InstrumentationConfiguration config;
+
+  @Before
+  public void setUp() throws Exception {
+    profileDir = tempFolder.newFolder("profiles").toPath();
+    System.setProperty("robolectric.classLoadProfile.dir", profileDir.toString());
+    config =
+        InstrumentationConfiguration.newBuilder()
+            .addInstrumentedPackage("org.robolectric.testing.")
+            .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    System.clearProperty("robolectric.classLoadProfile.dir");
+  }
+
+  @Test
+  public void shouldRecordLoadedClassesInOrder() throws Exception {
+    SandboxClassLoader classLoader = new SandboxClassLoader(config);
+    classLoader.startClassLoadProfile("test");
+    classLoader.loadClass(AnExampleClass.class.getName());
+    classLoader.loadClass(AClassToForget.class.getName());
+    classLoader.saveClassLoadProfile();
+    // loaded after saving, so not recorded
+    classLoader.loadClass(AClassToRemember.class.getName());
+
+    ClassLoadProfile profile =
+        ClassLoadProfile.forName(
+            "test", config, new OldClassInstrumentor(new ShadowDecorator()));
+    assertThat(profile.getProfiledClassNames())
+        .containsExactly(AnExampleClass.class.getName(), AClassToForget.class.getName())
+        .inOrder();
+  }
+
+  @Test
+  public void shouldDefinePrefetchedClasses() throws Exception {
+    SandboxClassLoader firstClassLoader = new SandboxClassLoader(config);
+    firstClassLoader.startClassLoadProfile("test");
+    firstClassLoader.loadClass(AnExampleClass.class.getName());
+    firstClassLoader.saveClassLoadProfile();
+
+    SandboxClassLoader secondClassLoader = new SandboxClassLoader(config);
+    secondClassLoader.startClassLoadProfile("test");
+    Class<?> prefetchedClass = secondClassLoader.loadClass(AnExampleClass.class.getName());
+
+    assertThat(prefetchedClass.getClassLoader()).isSameInstanceAs(secondClassLoader);
+    assertThat(prefetchedClass.getDeclaredField("__robo_data__")).isNotNull();
+  }
+
+  @Test
+  public void shouldNotRecordProfileWhenDisabled() throws Exception {
+    System.clearProperty("robolectric.classLoadProfile.dir");
+    SandboxClassLoader classLoader = new SandboxClassLoader(config);
+    classLoader.startClassLoadProfile("test");
+    classLoader.loadClass(AnExampleClass.class.getName());
+    classLoader.saveClassLoadProfile();
+
+    try (Stream<Path> files = Files.list(profileDir)) {
+      assertThat(files.count()).isEqualTo(0);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.testing.AChild;
+import org.robolectric.util.Util;
+
+@RunWith(JUnit4.class)
+public class ClassNodeProviderTest {
+
+  @Test
+  public void shouldReadClassHierarchyFromHeader() throws Exception {
+    ClassHeader header = new TestClassNodeProvider().getClassHeader(internalName(AChild.class));
+
+    assertThat(header.name).isEqualTo("org/robolectric/testing/AChild");
+    assertThat(header.superName).isEqualTo("org/robolectric/testing/AParent");
+    assertThat(header.interfaces).isEmpty();
+  }
+
+  @Test
+  public void shouldReadInterfacesFromHeader() throws Exception {
+    ClassHeader header = new TestClassNodeProvider().getClassHeader("java/util/ArrayList");
+
+    assertThat(header.superName).isEqualTo("java/util/AbstractList");
+    assertThat(header.interfaces).contains("java/util/List");
+  }
+
+  @Test
+  public void shouldShareHeadersOfIdenticalClassesBetweenProviders() throws Exception {
+    ClassHeader header1 = new TestClassNodeProvider().getClassHeader(internalName(AChild.class));
+    ClassHeader header2 = new TestClassNodeProvider().getClassHeader(internalName(AChild.class));
+
+    assertThat(header2).isSameInstanceAs(header1);
+  }
+
+  @Test
+  public void shouldShareHeadersFromSameSourceWithoutReadingClass() throws Exception {
+    TestClassNodeProvider provider1 = new TestClassNodeProvider("key");
+    TestClassNodeProvider provider2 = new TestClassNodeProvider("key");
+    ClassHeader header1 = provider1.getClassHeader("java/util/ArrayList");
+    ClassHeader header2 = provider2.getClassHeader("java/util/ArrayList");
+
+    assertThat(header2).isSameInstanceAs(header1);
+    assertThat(provider2.classesRead).isEqualTo(0);
+  }
+
+  private static String internalName(Class<?> clazz) {
+    return clazz.getName().replace('.', '/');
+  }
+
+  private static class TestClassNodeProvider extends ClassNodeProvider {
+    private final String sourceKey;
+    int classesRead;
+
+    TestClassNodeProvider() {
+      this(null);
+    }
+
+    TestClassNodeProvider(String sourceKey) {
+      this.sourceKey = sourceKey;
+    }
+
+    @Override
+    protected String getClassSourceKey(String className) {
+      return sourceKey == null ? null : sourceKey + "!/" + className;
+    }
+
+    @Override
+    protected byte[] getClassBytes(String className) throws ClassNotFoundException {
+      classesRead++;
+      try (InputStream in = ClassLoader.getSystemResourceAsStream(className + ".class")) {
+        if (in == null) {
+          throw new ClassNotFoundException(className);
+        }
+        return Util.readBytes(in);
+      } catch (IOException e) {
+        throw new ClassNotFoundException(className, e);
+      }
+    }
+  }
+}
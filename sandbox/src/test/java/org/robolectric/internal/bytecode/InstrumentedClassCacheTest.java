@@ -0,0 +1,151 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class InstrumentedClassCacheTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path cacheDir;
+  private InstrumentedClassCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = tempFolder.newFolder("cache").toPath();
+    cache = new InstrumentedClassCache(cacheDir, 1000);
+  }
+
+  @Test
+  public void get_shouldReturnNullForMissingEntry() throws Exception {
+    assertThat(cache.get(key("salt", new byte[] {1, 2, 3}))).isNull();
+  }
+
+  @Test
+  public void get_shouldReturnWhatWasPut() throws Exception {
+    String key = key("salt", new byte[] {1, 2, 3});
+    cache.put(key, new byte[] {4, 5, 6});
+
+    assertThat(cache.get(key)).isEqualTo(new byte[] {4, 5, 6});
+    assertThat(new InstrumentedClassCache(cacheDir, 1000).get(key))
+        .isEqualTo(new byte[] {4, 5, 6});
+  }
+
+  @Test
+  public void keyFor_shouldDependOnSaltAndBytes() throws Exception {
+    assertThat(key("salt", new byte[] {1})).isEqualTo(key("salt", new byte[] {1}));
+    assertThat(key("salt", new byte[] {1})).isNotEqualTo(key("other salt", new byte[] {1}));
+    assertThat(key("salt", new byte[] {1})).isNotEqualTo(key("salt", new byte[] {2}));
+  }
+
+  @Test
+  public void salt_shouldDependOnConfiguration() throws Exception {
+    ClassInstrumentor instrumentor = new OldClassInstrumentor(new ShadowDecorator());
+    InstrumentationConfiguration config1 =
+        InstrumentationConfiguration.newBuilder().addInstrumentedPackage("a.").build();
+    InstrumentationConfiguration config2 =
+        InstrumentationConfiguration.newBuilder().addInstrumentedPackage("b.").build();
+
+    assertThat(InstrumentedClassCache.salt(config1, instrumentor))
+        .isEqualTo(InstrumentedClassCache.salt(
+            InstrumentationConfiguration.newBuilder().addInstrumentedPackage("a.").build(),
+            instrumentor));
+    assertThat(InstrumentedClassCache.salt(config1, instrumentor))
+        .isNotEqualTo(InstrumentedClassCache.salt(config2, instrumentor));
+    assertThat(InstrumentedClassCache.salt(config1, instrumentor))
+        .isNotEqualTo(InstrumentedClassCache.salt(
+            config1, new InvokeDynamicClassInstrumentor(new ShadowDecorator())));
+  }
+
+  @Test
+  public void parseSalt_shouldReturnHeadersAndConfiguration() throws Exception {
+    InstrumentationConfiguration config =
+        InstrumentationConfiguration.newBuilder().addInstrumentedPackage("a.").build();
+    String salt =
+        InstrumentedClassCache.salt(config, new OldClassInstrumentor(new ShadowDecorator()));
+
+    InstrumentedClassCache.ParsedSalt parsedSalt = InstrumentedClassCache.parseSalt(salt);
+
+    assertThat(parsedSalt.getHeader(InstrumentedClassCache.INSTRUMENTOR_HEADER))
+        .isEqualTo(OldClassInstrumentor.class.getName());
+    assertThat(parsedSalt.getHeader(InstrumentedClassCache.DECORATOR_HEADER))
+        .isEqualTo(ShadowDecorator.class.getName());
+    assertThat(parsedSalt.configurationCacheKey).isEqualTo(config.getCacheKey());
+  }
+
+  @Test
+  public void parseSalt_shouldRejectMissingHeaders() throws Exception {
+    try {
+      InstrumentedClassCache.parseSalt("v" + InstrumentedClassCache.FORMAT_VERSION + "\n");
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // the salt has no headers
+    }
+  }
+
+  @Test
+  public void trimIfNeeded_shouldEvictLeastRecentlyUsedEntries() throws Exception {
+    String oldKey = key("salt", new byte[] {1});
+    String newKey = key("salt", new byte[] {2});
+    InstrumentedClassCache roomyCache = new InstrumentedClassCache(cacheDir, 1_000_000);
+    roomyCache.put(oldKey, new byte[600]);
+    roomyCache.put(newKey, new byte[600]);
+    setLastModified(oldKey, 1000L);
+    setLastModified(newKey, 2000L);
+
+    cache.trimIfNeeded();
+
+    assertThat(cache.get(oldKey)).isNull();
+    assertThat(cache.get(newKey)).isNotNull();
+  }
+
+  @Test
+  public void get_shouldOnlyTouchEntriesNotUsedWithinAnHour() throws Exception {
+    String key = key("salt", new byte[] {1});
+    cache.put(key, new byte[] {1});
+    long recently = System.currentTimeMillis() - 60_000;
+    setLastModified(key, recently);
+
+    cache.get(key);
+    assertThat(getLastModified(key)).isEqualTo(recently);
+
+    setLastModified(key, 1000L);
+    cache.get(key);
+    assertThat(getLastModified(key)).isGreaterThan(recently);
+  }
+
+  @Test
+  public void put_shouldNotLeaveTempFilesBehind() throws Exception {
+    cache.put(key("salt", new byte[] {1}), new byte[] {1});
+
+    try (Stream<Path> paths = Files.walk(cacheDir)) {
+      assertThat(paths.anyMatch(p -> p.toString().endsWith(".tmp"))).isFalse();
+    }
+  }
+
+  private void setLastModified(String key, long millis) throws Exception {
+    File entry = cacheDir.resolve(key.substring(0, 2)).resolve(key.substring(2) + ".class").toFile();
+    Files.setLastModifiedTime(entry.toPath(), FileTime.fromMillis(millis));
+  }
+
+  private long getLastModified(String key) throws Exception {
+    File entry = cacheDir.resolve(key.substring(0, 2)).resolve(key.substring(2) + ".class").toFile();
+    return Files.getLastModifiedTime(entry.toPath()).toMillis();
+  }
+
+  private static String key(String salt, byte[] bytes) {
+    return InstrumentedClassCache.keyFor(salt, bytes);
+  }
+}
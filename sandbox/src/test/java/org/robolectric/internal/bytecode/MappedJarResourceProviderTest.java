@@ -0,0 +1,114 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.util.Util;
+
+@RunWith(JUnit4.class)
+public class MappedJarResourceProviderTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final byte[] STORED_CONTENT = "stored content".getBytes(UTF_8);
+  private static final byte[] DEFLATED_CONTENT =
+      "deflated content, deflated content, deflated content".getBytes(UTF_8);
+
+  private File jarFile;
+
+  @Before
+  public void setUp() throws Exception {
+    jarFile = tempFolder.newFile("test.jar");
+    try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile))) {
+      ZipEntry stored = new ZipEntry("a/Stored.class");
+      stored.setMethod(ZipEntry.STORED);
+      stored.setSize(STORED_CONTENT.length);
+      CRC32 crc = new CRC32();
+      crc.update(STORED_CONTENT);
+      stored.setCrc(crc.getValue());
+      out.putNextEntry(stored);
+      out.write(STORED_CONTENT);
+      out.closeEntry();
+
+      out.putNextEntry(new ZipEntry("a/"));
+      out.closeEntry();
+
+      out.putNextEntry(new ZipEntry("a/Deflated.class"));
+      out.write(DEFLATED_CONTENT);
+      out.closeEntry();
+    }
+  }
+
+  @Test
+  public void shouldReadStoredAndDeflatedEntries() throws Exception {
+    MappedJarResourceProvider provider = new MappedJarResourceProvider(jarFile.toPath());
+
+    assertThat(toBytes(provider.getResourceBuffer("a/Stored.class"))).isEqualTo(STORED_CONTENT);
+    assertThat(toBytes(provider.getResourceBuffer("a/Deflated.class")))
+        .isEqualTo(DEFLATED_CONTENT);
+    try (InputStream in = provider.getResourceAsStream("a/Stored.class")) {
+      assertThat(Util.readBytes(in)).isEqualTo(STORED_CONTENT);
+    }
+    try (InputStream in = provider.getResourceAsStream("a/Deflated.class")) {
+      assertThat(Util.readBytes(in)).isEqualTo(DEFLATED_CONTENT);
+    }
+  }
+
+  @Test
+  public void storedEntriesShouldBeIndependentSlices() throws Exception {
+    MappedJarResourceProvider provider = new MappedJarResourceProvider(jarFile.toPath());
+
+    ByteBuffer first = provider.getResourceBuffer("a/Stored.class");
+    first.get(new byte[first.remaining()]);
+
+    assertThat(first.isDirect()).isTrue();
+    assertThat(toBytes(provider.getResourceBuffer("a/Stored.class"))).isEqualTo(STORED_CONTENT);
+  }
+
+  @Test
+  public void deflatedEntriesShouldWrapAnArrayOfTheirExactSize() throws Exception {
+    MappedJarResourceProvider provider = new MappedJarResourceProvider(jarFile.toPath());
+
+    ByteBuffer buffer = provider.getResourceBuffer("a/Deflated.class");
+
+    assertThat(buffer.hasArray()).isTrue();
+    assertThat(buffer.arrayOffset()).isEqualTo(0);
+    assertThat(buffer.array()).isEqualTo(DEFLATED_CONTENT);
+  }
+
+  @Test
+  public void shouldReturnUrlsLikeAJarClassLoader() throws Exception {
+    MappedJarResourceProvider provider = new MappedJarResourceProvider(jarFile.toPath());
+
+    try (InputStream in = provider.getResource("a/Deflated.class").openStream()) {
+      assertThat(Util.readBytes(in)).isEqualTo(DEFLATED_CONTENT);
+    }
+  }
+
+  @Test
+  public void shouldReturnNullForMissingEntriesAndDirectories() throws Exception {
+    MappedJarResourceProvider provider = new MappedJarResourceProvider(jarFile.toPath());
+
+    assertThat(provider.getResource("a/Missing.class")).isNull();
+    assertThat(provider.getResourceAsStream("a/Missing.class")).isNull();
+    assertThat(provider.getResourceBuffer("a/")).isNull();
+  }
+
+  private static byte[] toBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
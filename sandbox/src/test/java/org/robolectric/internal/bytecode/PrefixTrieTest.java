@@ -0,0 +1,43 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PrefixTrieTest {
+
+  @Test
+  public void shouldMatchStringsStartingWithAnyPrefix() {
+    PrefixTrie trie = new PrefixTrie(Arrays.asList("android.", "androidx.test.", "org.kxml2."));
+
+    assertThat(trie.matchesPrefixOf("android.app.Activity")).isTrue();
+    assertThat(trie.matchesPrefixOf("androidx.test.core.ApplicationProvider")).isTrue();
+    assertThat(trie.matchesPrefixOf("org.kxml2.io.KXmlParser")).isTrue();
+    assertThat(trie.matchesPrefixOf("android.")).isTrue();
+
+    assertThat(trie.matchesPrefixOf("androidx.fragment.app.Fragment")).isFalse();
+    assertThat(trie.matchesPrefixOf("android")).isFalse();
+    assertThat(trie.matchesPrefixOf("org.kxml.Foo")).isFalse();
+    assertThat(trie.matchesPrefixOf("")).isFalse();
+  }
+
+  @Test
+  public void shouldMatchPrefixesNotEndingAtPackageBoundaries() {
+    PrefixTrie trie = new PrefixTrie(Arrays.asList("com.example.Foo"));
+
+    assertThat(trie.matchesPrefixOf("com.example.Foo")).isTrue();
+    assertThat(trie.matchesPrefixOf("com.example.FooBar")).isTrue();
+    assertThat(trie.matchesPrefixOf("com.example.Fo")).isFalse();
+  }
+
+  @Test
+  public void emptyPrefixShouldMatchEverything() {
+    assertThat(new PrefixTrie(Arrays.asList("")).matchesPrefixOf("anything")).isTrue();
+    assertThat(new PrefixTrie(Collections.emptyList()).matchesPrefixOf("anything")).isFalse();
+  }
+}
@@ -1,7 +1,9 @@
 package org.robolectric.internal;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * Interface implemented by packages that provide shadows to Robolectric.
@@ -14,6 +16,26 @@ public interface ShadowProvider {
    */
   void reset();
 
+  /**
+   * Reset the static state of those shadows whose state may have changed since they were last
+   * reset. Shadows whose class name is rejected by {@code isDirty} are left alone.
+   *
+   * @param isDirty Predicate which accepts the binary names of shadow classes that need resetting.
+   */
+  default void reset(Predicate<String> isDirty) {
+    reset();
+  }
+
+  /**
+   * Returns the individual resetters of the shadows provided by this package which apply to the
+   * current SDK, in the order that {@link #reset()} invokes them.
+   *
+   * <p>Providers which don't implement this have a single resetter, which resets everything.
+   */
+  default List<ResetterEntry> getResetters() {
+    return Collections.singletonList(new ResetterEntry(getClass().getName(), false, this::reset));
+  }
+
   /**
    * Array of Java package names that are shadowed by this package.
    *
@@ -38,4 +60,37 @@ public interface ShadowProvider {
   default Map<String, String> getShadowPickerMap() {
     return Collections.emptyMap();
   }
+
+  /** A {@link org.robolectric.annotation.Resetter} method of a shadow. */
+  final class ResetterEntry implements Runnable {
+    private final String shadowClassName;
+    private final boolean threadSafe;
+    private final Runnable resetter;
+
+    public ResetterEntry(String shadowClassName, boolean threadSafe, Runnable resetter) {
+      this.shadowClassName = shadowClassName;
+      this.threadSafe = threadSafe;
+      this.resetter = resetter;
+    }
+
+    /** The binary name of the shadow class declaring the resetter. */
+    public String getShadowClassName() {
+      return shadowClassName;
+    }
+
+    /** @see org.robolectric.annotation.Resetter#threadSafe() */
+    public boolean isThreadSafe() {
+      return threadSafe;
+    }
+
+    @Override
+    public void run() {
+      resetter.run();
+    }
+
+    @Override
+    public String toString() {
+      return "ResetterEntry{" + shadowClassName + (threadSafe ? ", threadSafe" : "") + "}";
+    }
+  }
 }
@@ -0,0 +1,228 @@
+package org.robolectric.shadows;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.IntentFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * Index of the components whose intent filters may match an intent, in the manner of the
+ * framework's {@code IntentResolver}.
+ *
+ * <p>Components are indexed by the actions, categories, data schemes and base MIME types of their
+ * filters. The index only narrows down the components worth checking; callers must still verify
+ * candidates with {@link IntentFilter#match}.
+ *
+ * <p>Filters parsed from the manifest are indexed once. Tests may add actions, categories and data
+ * to a filter they registered themselves after registering it, so for those filters only, the
+ * index records how many of each the filter had when it was indexed, and indexes the filter again
+ * once it has grown.
+ */
+final class IntentFilterIndex {
+
+  private static final String ACTION = "action:";
+  private static final String CATEGORY = "category:";
+  private static final String SCHEME = "scheme:";
+  private static final String TYPE = "type:";
+
+  private static final String WILDCARD_TYPE = "*";
+
+  private final Map<String, SortedSet<ComponentName>> componentsByKey = new HashMap<>();
+  private final Map<ComponentName, Set<String>> keysByComponent = new HashMap<>();
+  private final Map<ComponentName, List<IndexedFilter>> changeableFilters = new HashMap<>();
+
+  /** Adds the given filter of the given component to the index. */
+  void add(ComponentName componentName, IntentFilter filter) {
+    index(componentName, filter);
+  }
+
+  /**
+   * Adds the given filter of the given component to the index, and indexes it again if actions,
+   * categories or data are later added to it.
+   */
+  void addChangeable(ComponentName componentName, IntentFilter filter) {
+    List<IndexedFilter> filters = changeableFilters.get(componentName);
+    if (filters == null) {
+      filters = new ArrayList<>();
+      changeableFilters.put(componentName, filters);
+    }
+    filters.add(new IndexedFilter(filter));
+    index(componentName, filter);
+  }
+
+  private void index(ComponentName componentName, IntentFilter filter) {
+    Set<String> keys = keysByComponent.get(componentName);
+    if (keys == null) {
+      keys = new HashSet<>();
+      keysByComponent.put(componentName, keys);
+    }
+    addKeys(keys, ACTION, filter.actionsIterator());
+    addKeys(keys, CATEGORY, filter.categoriesIterator());
+    addKeys(keys, SCHEME, filter.schemesIterator());
+    Iterator<String> types = filter.typesIterator();
+    if (types != null) {
+      while (types.hasNext()) {
+        keys.add(TYPE + baseType(types.next()));
+      }
+    }
+    for (String key : keys) {
+      SortedSet<ComponentName> components = componentsByKey.get(key);
+      if (components == null) {
+        components = new TreeSet<>();
+        componentsByKey.put(key, components);
+      }
+      components.add(componentName);
+    }
+  }
+
+  /** Removes all filters of the given component from the index. */
+  void remove(ComponentName componentName) {
+    changeableFilters.remove(componentName);
+    Set<String> keys = keysByComponent.remove(componentName);
+    if (keys == null) {
+      return;
+    }
+    for (String key : keys) {
+      SortedSet<ComponentName> components = componentsByKey.get(key);
+      components.remove(componentName);
+      if (components.isEmpty()) {
+        componentsByKey.remove(key);
+      }
+    }
+  }
+
+  void clear() {
+    componentsByKey.clear();
+    keysByComponent.clear();
+    changeableFilters.clear();
+  }
+
+  /**
+   * Indexes again the changeable filters which have grown since they were indexed. Their keys can
+   * only have been added to, so indexing them again just adds the new keys.
+   */
+  private void reindexChangedFilters() {
+    for (Map.Entry<ComponentName, List<IndexedFilter>> entry : changeableFilters.entrySet()) {
+      for (IndexedFilter indexedFilter : entry.getValue()) {
+        if (indexedFilter.update()) {
+          index(entry.getKey(), indexedFilter.filter);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the components, in order, which have a filter that may match the given intent, or
+   * {@code null} if the intent doesn't narrow the search and every component must be checked.
+   */
+  @Nullable
+  SortedSet<ComponentName> getCandidates(Intent intent) {
+    reindexChangedFilters();
+    SortedSet<ComponentName> candidates = null;
+    if (intent.getAction() != null) {
+      candidates = smallest(candidates, componentsFor(ACTION + intent.getAction()));
+    }
+    Set<String> categories = intent.getCategories();
+    if (categories != null) {
+      for (String category : categories) {
+        candidates = smallest(candidates, componentsFor(CATEGORY + category));
+      }
+    }
+    String scheme = intent.getScheme();
+    // Filters without schemes may still match content: and file: URIs, if they declare a type.
+    if (scheme != null
+        && !scheme.isEmpty()
+        && !"content".equals(scheme)
+        && !"file".equals(scheme)) {
+      candidates = smallest(candidates, componentsFor(SCHEME + scheme));
+    }
+    String type = intent.getType();
+    // Intents of type */* match any filter that declares a type.
+    if (type != null && !"*/*".equals(type)) {
+      SortedSet<ComponentName> exact = componentsFor(TYPE + baseType(type));
+      SortedSet<ComponentName> wildcard = componentsFor(TYPE + WILDCARD_TYPE);
+      if (candidates == null || exact.size() + wildcard.size() < candidates.size()) {
+        if (wildcard.isEmpty()) {
+          candidates = exact;
+        } else {
+          candidates = new TreeSet<>(exact);
+          candidates.addAll(wildcard);
+        }
+      }
+    }
+    return candidates == null ? null : Collections.unmodifiableSortedSet(candidates);
+  }
+
+  private SortedSet<ComponentName> componentsFor(String key) {
+    SortedSet<ComponentName> components = componentsByKey.get(key);
+    return components == null ? Collections.emptySortedSet() : components;
+  }
+
+  private static SortedSet<ComponentName> smallest(
+      @Nullable SortedSet<ComponentName> current, SortedSet<ComponentName> next) {
+    return current == null || next.size() < current.size() ? next : current;
+  }
+
+  private static void addKeys(Set<String> keys, String prefix, @Nullable Iterator<String> values) {
+    if (values == null) {
+      return;
+    }
+    while (values.hasNext()) {
+      keys.add(prefix + values.next());
+    }
+  }
+
+  /**
+   * Returns the part of a MIME type before the slash. {@link IntentFilter} stores partial types
+   * such as {@code image/*} as just their base type, so they share a key with full types.
+   */
+  private static String baseType(String type) {
+    int slash = type.indexOf('/');
+    return slash < 0 ? type : type.substring(0, slash);
+  }
+
+  /**
+   * A filter along with how many of each indexed attribute it had when it was last indexed.
+   * {@link IntentFilter} only lets these be added to, so a change in count is a change in keys.
+   */
+  private static final class IndexedFilter {
+    final IntentFilter filter;
+    private int actions;
+    private int categories;
+    private int schemes;
+    private int types;
+
+    IndexedFilter(IntentFilter filter) {
+      this.filter = filter;
+      update();
+    }
+
+    /** Records the current counts, returning whether any changed. */
+    boolean update() {
+      int newActions = filter.countActions();
+      int newCategories = filter.countCategories();
+      int newSchemes = filter.countDataSchemes();
+      int newTypes = filter.countDataTypes();
+      boolean changed =
+          newActions != actions
+              || newCategories != categories
+              || newSchemes != schemes
+              || newTypes != types;
+      actions = newActions;
+      categories = newCategories;
+      schemes = newSchemes;
+      types = newTypes;
+      return changed;
+    }
+  }
+}
@@ -22,6 +22,7 @@ import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.RealObject;
 import org.robolectric.annotation.Resetter;
 import org.robolectric.shadow.api.Shadow;
+import org.robolectric.util.JvmDefaults;
 
 @SuppressWarnings({"UnusedDeclaration"})
 @Implements(AlarmManager.class)
@@ -35,7 +36,7 @@ public class ShadowAlarmManager {
 
   @Resetter
   public static void reset() {
-    TimeZone.setDefault(DEFAULT_TIMEZONE);
+    JvmDefaults.getInstance().restoreTimeZone(DEFAULT_TIMEZONE);
   }
 
   @Implementation
@@ -43,7 +44,7 @@ public class ShadowAlarmManager {
     // Do the real check first
     Shadow.directlyOn(realObject, AlarmManager.class).setTimeZone(timeZone);
     // Then do the right side effect
-    TimeZone.setDefault(TimeZone.getTimeZone(timeZone));
+    JvmDefaults.getInstance().setTimeZone(TimeZone.getTimeZone(timeZone));
   }
 
   @Implementation
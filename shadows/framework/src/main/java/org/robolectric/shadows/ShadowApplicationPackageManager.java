@@ -94,10 +94,10 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.SortedSet;
 import java.util.function.BiConsumer;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.GetInstallerPackageNameMode;
@@ -466,6 +466,7 @@ public class ShadowApplicationPackageManager extends ShadowPackageManager {
         flags,
         (pkg) -> pkg.services,
         serviceFilters,
+        serviceFilterIndex,
         (resolveInfo, serviceInfo) -> resolveInfo.serviceInfo = serviceInfo,
         (resolveInfo) -> resolveInfo.serviceInfo,
         ServiceInfo::new);
@@ -502,6 +503,7 @@ public class ShadowApplicationPackageManager extends ShadowPackageManager {
         flags,
         (pkg) -> pkg.activities,
         activityFilters,
+        activityFilterIndex,
         (resolveInfo, activityInfo) -> resolveInfo.activityInfo = activityInfo,
         (resolveInfo) -> resolveInfo.activityInfo,
         ActivityInfo::new);
@@ -512,6 +514,7 @@ public class ShadowApplicationPackageManager extends ShadowPackageManager {
       int flags,
       Function<PackageInfo, I[]> componentsInPackage,
       SortedMap<ComponentName, List<IntentFilter>> filters,
+      IntentFilterIndex filterIndex,
       BiConsumer<ResolveInfo, I> componentSetter,
       Function<ResolveInfo, I> componentInResolveInfo,
       Function<I, I> copyConstructor) {
@@ -524,7 +527,9 @@ public class ShadowApplicationPackageManager extends ShadowPackageManager {
       result.addAll(resolveInfoList);
     }
 
-    result.addAll(queryComponentsInManifest(intent, componentsInPackage, filters, componentSetter));
+    result.addAll(
+        queryComponentsInManifest(
+            intent, componentsInPackage, filters, filterIndex, componentSetter));
 
     for (Iterator<ResolveInfo> iterator = result.iterator(); iterator.hasNext(); ) {
       ResolveInfo resolveInfo = iterator.next();
@@ -594,6 +599,7 @@ public class ShadowApplicationPackageManager extends ShadowPackageManager {
       Intent intent,
       Function<PackageInfo, I[]> componentsInPackage,
       SortedMap<ComponentName, List<IntentFilter>> filters,
+      IntentFilterIndex filterIndex,
       BiConsumer<ResolveInfo, I> componentSetter) {
     if (isExplicitIntent(intent)) {
       ComponentName component = getComponentForIntent(intent);
@@ -611,13 +617,9 @@ public class ShadowApplicationPackageManager extends ShadowPackageManager {
       return Collections.emptyList();
     } else {
       List<ResolveInfo> resolveInfoList = new ArrayList<>();
-      Map<ComponentName, List<IntentFilter>> filtersForPackage =
-          mapForPackage(filters, intent.getPackage());
       components:
-      for (Map.Entry<ComponentName, List<IntentFilter>> componentEntry :
-          filtersForPackage.entrySet()) {
-        ComponentName componentName = componentEntry.getKey();
-        for (IntentFilter filter : componentEntry.getValue()) {
+      for (ComponentName componentName : componentsToMatch(intent, filters, filterIndex)) {
+        for (IntentFilter filter : filters.get(componentName)) {
           int match = matchIntentFilter(intent, filter);
           if (match > 0) {
             PackageInfo packageInfo = packageInfos.get(componentName.getPackageName());
@@ -639,6 +641,26 @@ public class ShadowApplicationPackageManager extends ShadowPackageManager {
     }
   }
 
+  /**
+   * Returns the components, in order, whose filters may match the given implicit intent, using
+   * the index to avoid matching against every registered filter.
+   */
+  private static Set<ComponentName> componentsToMatch(
+      Intent intent,
+      SortedMap<ComponentName, List<IntentFilter>> filters,
+      IntentFilterIndex filterIndex) {
+    String packageName = intent.getPackage();
+    SortedSet<ComponentName> candidates = filterIndex.getCandidates(intent);
+    if (candidates == null) {
+      return mapForPackage(filters, packageName).keySet();
+    }
+    if (packageName == null) {
+      return candidates;
+    }
+    return candidates.subSet(
+        new ComponentName(packageName, ""), new ComponentName(packageName + " ", ""));
+  }
+
   /** Behaves as {@link #queryIntentActivities(Intent, int)} and currently ignores userId. */
   @Implementation(minSdk = JELLY_BEAN_MR1)
   protected List<ResolveInfo> queryIntentActivitiesAsUser(Intent intent, int flags, int userId) {
@@ -762,6 +784,7 @@ public class ShadowApplicationPackageManager extends ShadowPackageManager {
         flags,
         (pkg) -> pkg.receivers,
         receiverFilters,
+        receiverFilterIndex,
         (resolveInfo, activityInfo) -> resolveInfo.activityInfo = activityInfo,
         (resolveInfo) -> resolveInfo.activityInfo,
         ActivityInfo::new);
@@ -977,6 +1000,7 @@ public class ShadowApplicationPackageManager extends ShadowPackageManager {
         flags,
         (pkg) -> pkg.providers,
         providerFilters,
+        providerFilterIndex,
         (resolveInfo, providerInfo) -> resolveInfo.providerInfo = providerInfo,
         (resolveInfo) -> resolveInfo.providerInfo,
         ProviderInfo::new);
@@ -11,7 +11,7 @@ public class ShadowCookieManager {
   private static RoboCookieManager cookieManager;
   private boolean flushed;
 
-  @Resetter
+  @Resetter(threadSafe = true)
   public static void resetCookies() {
     cookieManager = null;
   }
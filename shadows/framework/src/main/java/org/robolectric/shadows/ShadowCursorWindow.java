@@ -11,6 +11,7 @@ import com.almworks.sqlite4java.SQLiteConstants;
 import com.almworks.sqlite4java.SQLiteException;
 import com.almworks.sqlite4java.SQLiteStatement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -44,17 +45,17 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static byte[] nativeGetBlob(long windowPtr, int row, int column) {
-    Value value = WINDOW_DATA.get(windowPtr).value(row, column);
+    Data data = WINDOW_DATA.get(windowPtr);
 
-    switch (value.type) {
+    switch (data.type(row, column)) {
       case Cursor.FIELD_TYPE_NULL:
         return null;
       case Cursor.FIELD_TYPE_BLOB:
         // This matches Android's behavior, which does not match the SQLite spec
-        byte[] blob = (byte[])value.value;
+        byte[] blob = (byte[]) data.object(row, column);
         return blob == null ? new byte[]{} : blob;
       case Cursor.FIELD_TYPE_STRING:
-        return ((String)value.value).getBytes(UTF_8);
+        return ((String) data.object(row, column)).getBytes(UTF_8);
       default:
         throw new android.database.sqlite.SQLiteException("Getting blob when column is non-blob. Row " + row + ", col " + column);
     }
@@ -67,12 +68,19 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static String nativeGetString(long windowPtr, int row, int column) {
-    Value val = WINDOW_DATA.get(windowPtr).value(row, column);
-    if (val.type == Cursor.FIELD_TYPE_BLOB) {
-      throw new android.database.sqlite.SQLiteException("Getting string when column is blob. Row " + row + ", col " + column);
+    Data data = WINDOW_DATA.get(windowPtr);
+    switch (data.type(row, column)) {
+      case Cursor.FIELD_TYPE_NULL:
+        return null;
+      case Cursor.FIELD_TYPE_INTEGER:
+        return Long.toString(data.longValue(row, column));
+      case Cursor.FIELD_TYPE_FLOAT:
+        return Double.toString(data.doubleValue(row, column));
+      case Cursor.FIELD_TYPE_BLOB:
+        throw new android.database.sqlite.SQLiteException("Getting string when column is blob. Row " + row + ", col " + column);
+      default:
+        return (String) data.object(row, column);
     }
-    Object value = val.value;
-    return value == null ? null : String.valueOf(value);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -82,7 +90,15 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static long nativeGetLong(long windowPtr, int row, int column) {
-    return nativeGetNumber(windowPtr, row, column).longValue();
+    Data data = WINDOW_DATA.get(windowPtr);
+    switch (data.type(row, column)) {
+      case Cursor.FIELD_TYPE_INTEGER:
+        return data.longValue(row, column);
+      case Cursor.FIELD_TYPE_FLOAT:
+        return (long) data.doubleValue(row, column);
+      default:
+        return (long) nativeGetNumber(data, row, column);
+    }
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -92,7 +108,15 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static double nativeGetDouble(long windowPtr, int row, int column) {
-    return nativeGetNumber(windowPtr, row, column).doubleValue();
+    Data data = WINDOW_DATA.get(windowPtr);
+    switch (data.type(row, column)) {
+      case Cursor.FIELD_TYPE_INTEGER:
+        return data.longValue(row, column);
+      case Cursor.FIELD_TYPE_FLOAT:
+        return data.doubleValue(row, column);
+      default:
+        return nativeGetNumber(data, row, column);
+    }
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -102,7 +126,7 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static int nativeGetType(long windowPtr, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).value(row, column).type;
+    return WINDOW_DATA.get(windowPtr).type(row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -132,7 +156,7 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static boolean nativePutBlob(long windowPtr, byte[] value, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(value, Cursor.FIELD_TYPE_BLOB), row, column);
+    return WINDOW_DATA.get(windowPtr).putObject(value, Cursor.FIELD_TYPE_BLOB, row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -142,7 +166,7 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static boolean nativePutString(long windowPtr, String value, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(value, Cursor.FIELD_TYPE_STRING), row, column);
+    return WINDOW_DATA.get(windowPtr).putObject(value, Cursor.FIELD_TYPE_STRING, row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -152,7 +176,7 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static boolean nativePutLong(long windowPtr, long value, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(value, Cursor.FIELD_TYPE_INTEGER), row, column);
+    return WINDOW_DATA.get(windowPtr).putLong(value, row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -162,7 +186,7 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static boolean nativePutDouble(long windowPtr, double value, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(value, Cursor.FIELD_TYPE_FLOAT), row, column);
+    return WINDOW_DATA.get(windowPtr).putDouble(value, row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -172,7 +196,7 @@ public class ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static boolean nativePutNull(long windowPtr, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(null, Cursor.FIELD_TYPE_NULL), row, column);
+    return WINDOW_DATA.get(windowPtr).putNull(row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -209,60 +233,104 @@ public class ShadowCursorWindow {
     return WINDOW_DATA.setData(windowPtr, stmt);
   }
 
-  private static Number nativeGetNumber(long windowPtr, int row, int column) {
-    Value value = WINDOW_DATA.get(windowPtr).value(row, column);
-    switch (value.type) {
+  /** Converts a cell which is neither an integer nor a float to a number. */
+  private static double nativeGetNumber(Data data, int row, int column) {
+    int type = data.type(row, column);
+    switch (type) {
       case Cursor.FIELD_TYPE_NULL:
-      case SQLiteConstants.SQLITE_NULL:
         return 0;
-      case Cursor.FIELD_TYPE_INTEGER:
-      case Cursor.FIELD_TYPE_FLOAT:
-        return (Number) value.value;
       case Cursor.FIELD_TYPE_STRING: {
         try {
-          return Double.parseDouble((String) value.value);
+          return Double.parseDouble((String) data.object(row, column));
         } catch (NumberFormatException e) {
           return 0;
         }
       }
       case Cursor.FIELD_TYPE_BLOB:
-        throw new android.database.sqlite.SQLiteException("could not convert "+value);
+        throw new android.database.sqlite.SQLiteException("could not convert blob. Row " + row + ", col " + column);
       default:
-        throw new android.database.sqlite.SQLiteException("unknown type: "+value.type);
+        throw new android.database.sqlite.SQLiteException("unknown type: " + type);
     }
   }
 
+  /**
+   * The contents of a window, stored by column rather than by row, so that filling a window with a
+   * large result allocates a few arrays rather than an object per cell.
+   *
+   * <p>Each column holds a type for each of its cells, and a primitive value: the value itself for
+   * integers, the bits of the value for floats, and otherwise an index into a pool of strings and
+   * blobs shared by the whole window.
+   */
   private static class Data {
-    private final List<Row> rows;
+    private static final int INITIAL_ROW_CAPACITY = 16;
+
     private final String name;
+    private final List<Object> objects = new ArrayList<>();
+    private Column[] columns = new Column[0];
     private int numColumns;
+    private int numRows;
+    private int rowCapacity;
 
-    public Data(String name, int cursorWindowSize) {
+    public Data(String name) {
       this.name = name;
-      this.rows = new ArrayList<Row>(cursorWindowSize);
     }
 
-    public Value value(int rowN, int colN) {
-      Row row = rows.get(rowN);
-      if (row == null) {
-        throw new IllegalArgumentException("Bad row number: " + rowN + ", count: " + rows.size());
-      }
-      return row.get(colN);
+    public int type(int row, int column) {
+      checkCell(row, column);
+      return columns[column].types[row];
+    }
+
+    public long longValue(int row, int column) {
+      return columns[column].values[row];
+    }
+
+    public double doubleValue(int row, int column) {
+      return Double.longBitsToDouble(columns[column].values[row]);
+    }
+
+    public Object object(int row, int column) {
+      return objects.get((int) columns[column].values[row]);
     }
 
     public int numRows() {
-      return rows.size();
+      return numRows;
     }
 
-    public boolean putValue(Value value, int rowN, int colN) {
-      return rows.get(rowN).set(colN, value);
+    public boolean putLong(long value, int row, int column) {
+      checkCell(row, column);
+      columns[column].set(row, Cursor.FIELD_TYPE_INTEGER, value);
+      return true;
+    }
+
+    public boolean putDouble(double value, int row, int column) {
+      checkCell(row, column);
+      columns[column].set(row, Cursor.FIELD_TYPE_FLOAT, Double.doubleToRawLongBits(value));
+      return true;
+    }
+
+    public boolean putObject(Object value, int type, int row, int column) {
+      checkCell(row, column);
+      objects.add(value);
+      columns[column].set(row, type, objects.size() - 1);
+      return true;
+    }
+
+    public boolean putNull(int row, int column) {
+      checkCell(row, column);
+      columns[column].set(row, Cursor.FIELD_TYPE_NULL, 0);
+      return true;
     }
 
     public void fillWith(SQLiteStatement stmt) throws SQLiteException {
       //Android caches results in the WindowedCursor to allow moveToPrevious() to function.
-      //Robolectric will have to cache the results too. In the rows list.
+      //Robolectric will have to cache the results too. In the column arrays.
       while (stmt.step()) {
-        rows.add(fillRowValues(stmt));
+        int columnCount = stmt.columnCount();
+        if (columnCount > numColumns) {
+          setNumColumns(columnCount);
+        }
+        allocRow();
+        fillRowValues(stmt, numRows - 1, columnCount);
       }
     }
 
@@ -278,25 +346,57 @@ public class ShadowCursorWindow {
       }
     }
 
-    private static Row fillRowValues(SQLiteStatement stmt) throws SQLiteException {
-      final int columnCount = stmt.columnCount();
-      Row row = new Row(columnCount);
+    private void fillRowValues(SQLiteStatement stmt, int row, int columnCount)
+        throws SQLiteException {
       for (int index = 0; index < columnCount; index++) {
-        row.set(index, new Value(stmt.columnValue(index), cursorValueType(stmt.columnType(index))));
+        int type = cursorValueType(stmt.columnType(index));
+        switch (type) {
+          case Cursor.FIELD_TYPE_INTEGER:
+            putLong(stmt.columnLong(index), row, index);
+            break;
+          case Cursor.FIELD_TYPE_FLOAT:
+            putDouble(stmt.columnDouble(index), row, index);
+            break;
+          case Cursor.FIELD_TYPE_STRING:
+            putObject(stmt.columnString(index), type, row, index);
+            break;
+          case Cursor.FIELD_TYPE_BLOB:
+            putObject(stmt.columnBlob(index), type, row, index);
+            break;
+          default:
+            // new rows are already null
+        }
       }
-      return row;
     }
 
     public void clear() {
-      rows.clear();
+      numRows = 0;
+      objects.clear();
     }
 
     public boolean allocRow() {
-      rows.add(new Row(numColumns));
+      if (numRows == rowCapacity) {
+        rowCapacity = Math.max(INITIAL_ROW_CAPACITY, rowCapacity * 2);
+        for (Column column : columns) {
+          column.grow(rowCapacity);
+        }
+      }
+      for (Column column : columns) {
+        column.set(numRows, Cursor.FIELD_TYPE_NULL, 0);
+      }
+      numRows++;
       return true;
     }
 
     public boolean setNumColumns(int numColumns) {
+      if (numColumns > columns.length) {
+        Column[] newColumns = Arrays.copyOf(columns, numColumns);
+        for (int i = columns.length; i < numColumns; i++) {
+          // cells of rows which are already allocated are null
+          newColumns[i] = new Column(rowCapacity);
+        }
+        columns = newColumns;
+      }
       this.numColumns = numColumns;
       return true;
     }
@@ -304,35 +404,35 @@ public class ShadowCursorWindow {
     public String getName() {
       return name;
     }
-  }
-
-  private static class Row {
-    private final List<Value> values;
 
-    public Row(int length) {
-      values = new ArrayList<Value>(length);
-      for (int i=0; i<length; i++) {
-        values.add(new Value(null, Cursor.FIELD_TYPE_NULL));
+    private void checkCell(int row, int column) {
+      if (row < 0 || row >= numRows) {
+        throw new IndexOutOfBoundsException("Bad row number: " + row + ", count: " + numRows);
+      }
+      if (column < 0 || column >= numColumns) {
+        throw new IndexOutOfBoundsException(
+            "Bad column number: " + column + ", count: " + numColumns);
       }
     }
+  }
 
-    public Value get(int n) {
-      return values.get(n);
-    }
+  private static class Column {
+    private byte[] types;
+    private long[] values;
 
-    public boolean set(int colN, Value value) {
-      values.set(colN, value);
-      return true;
+    Column(int rowCapacity) {
+      types = new byte[rowCapacity];
+      values = new long[rowCapacity];
     }
-  }
 
-  private static class Value {
-    private final Object value;
-    private final int type;
+    void grow(int rowCapacity) {
+      types = Arrays.copyOf(types, rowCapacity);
+      values = Arrays.copyOf(values, rowCapacity);
+    }
 
-    public Value(final Object value, final int type) {
-      this.value = value;
-      this.type = type;
+    void set(int row, int type, long value) {
+      types[row] = (byte) type;
+      values[row] = value;
     }
   }
 
@@ -367,7 +467,7 @@ public class ShadowCursorWindow {
 
     public long create(String name, int cursorWindowSize) {
       long ptr = windowPtrCounter.incrementAndGet();
-      dataMap.put(ptr, new Data(name, cursorWindowSize));
+      dataMap.put(ptr, new Data(name));
       return ptr;
     }
   }
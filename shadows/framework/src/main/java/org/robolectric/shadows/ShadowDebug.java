@@ -84,7 +84,7 @@ public class ShadowDebug {
     tracingFilename = tracePath;
   }
 
-  @Resetter
+  @Resetter(threadSafe = true)
   public static void reset() {
     tracingStarted = false;
     tracingFilename = null;
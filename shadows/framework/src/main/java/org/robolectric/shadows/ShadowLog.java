@@ -10,20 +10,35 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Supplier;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.Resetter;
 
+/**
+ * Retains everything logged through {@link Log}, and optionally writes it to {@link #stream}.
+ *
+ * <p>By default every log item is retained until the end of the test. Tests of chatty code can
+ * bound retention to the most recent items, overall and for each tag, with {@link #setMaxLogs}
+ * and {@link #setMaxLogsPerTag}, or the {@code robolectric.logging.maxLogs} and {@code
+ * robolectric.logging.maxLogsPerTag} system properties. Logging never takes a lock, so these
+ * limits are meant to be set up before the code under test starts logging from other threads.
+ */
 @Implements(Log.class)
 public class ShadowLog {
   public static PrintStream stream;
 
   private static final int extraLogLength = "l/: \n".length();
-  private static final Map<String, Queue<LogItem>> logsByTag = Collections.synchronizedMap(new
-      HashMap<String, Queue<LogItem>>());
-  private static final Queue<LogItem> logs = new ConcurrentLinkedQueue<>();
+  // stands in for the null tag, which ConcurrentHashMap can't hold
+  private static final Object NULL_TAG = new Object();
+  private static final Map<Object, LogBuffer> logsByTag = new ConcurrentHashMap<>();
+  private static volatile int maxLogs = defaultMaxLogs("robolectric.logging.maxLogs");
+  private static volatile int maxLogsPerTag = defaultMaxLogs("robolectric.logging.maxLogsPerTag");
+  private static volatile LogBuffer logs = LogBuffer.create(maxLogs);
   private static final Map<String, Integer> tagToLevel = Collections.synchronizedMap(new
       HashMap<String, Integer>());
 
@@ -134,6 +149,59 @@ public class ShadowLog {
     return extraLogLength + tagLength + msgLength;
   }
 
+  /**
+   * Sets the maximum number of log items retained by {@link #getLogs()}. Once it's reached, the
+   * oldest items are dropped to make room for new ones.
+   *
+   * <p>Call this during test setup: items logged by other threads while the retained items are
+   * being copied to the resized buffer may be lost.
+   *
+   * @param max the maximum number of items, or {@link Integer#MAX_VALUE} to retain every item
+   */
+  public static synchronized void setMaxLogs(int max) {
+    checkMaxLogs(max);
+    maxLogs = max;
+    logs = logs.resize(max);
+  }
+
+  /**
+   * Sets the maximum number of log items retained for each tag by {@link #getLogsForTag}. Once
+   * it's reached for a tag, its oldest items are dropped to make room for new ones.
+   *
+   * <p>Call this during test setup: items logged by other threads while the retained items are
+   * being copied to the resized buffer may be lost.
+   *
+   * @param max the maximum number of items, or {@link Integer#MAX_VALUE} to retain every item
+   */
+  public static synchronized void setMaxLogsPerTag(int max) {
+    checkMaxLogs(max);
+    maxLogsPerTag = max;
+    logsByTag.replaceAll((tag, tagLogs) -> tagLogs.resize(max));
+  }
+
+  private static void checkMaxLogs(int max) {
+    if (max <= 0) {
+      throw new IllegalArgumentException("max must be positive, but was " + max);
+    }
+  }
+
+  private static int defaultMaxLogs(String propertyName) {
+    int max = Integer.getInteger(propertyName, Integer.MAX_VALUE);
+    checkMaxLogs(max);
+    return max;
+  }
+
+  /** Returns the number of log items which have been dropped from {@link #getLogs()}. */
+  public static long getDroppedLogCount() {
+    return logs.droppedCount();
+  }
+
+  /** Returns the number of log items which have been dropped from {@link #getLogsForTag}. */
+  public static long getDroppedLogCountForTag(String tag) {
+    LogBuffer tagLogs = logsByTag.get(tagKey(tag));
+    return tagLogs == null ? 0 : tagLogs.droppedCount();
+  }
+
   /**
    * Sets the log level of a given tag, that {@link #isLoggable} will follow.
    * @param tag A log tag
@@ -154,23 +222,16 @@ public class ShadowLog {
     }
 
     LogItem item = new LogItem(timeString, level, tag, msg, throwable);
-    Queue<LogItem> itemList;
-
-    synchronized (logsByTag) {
-      if (!logsByTag.containsKey(tag)) {
-        itemList = new ConcurrentLinkedQueue<>();
-        logsByTag.put(tag, itemList);
-      } else {
-        itemList = logsByTag.get(tag);
-      }
-    }
-
-    itemList.add(item);
+    logsByTag.computeIfAbsent(tagKey(tag), key -> LogBuffer.create(maxLogsPerTag)).add(item);
     logs.add(item);
 
     return 0;
   }
 
+  private static Object tagKey(String tag) {
+    return tag == null ? NULL_TAG : tag;
+  }
+
   protected static char levelToChar(int level) {
     final char c;
     switch (level) {
@@ -206,7 +267,7 @@ public class ShadowLog {
    * @return List of log items
    */
   public static List<LogItem> getLogs() {
-    return new ArrayList<>(logs);
+    return logs.snapshot();
   }
 
   /**
@@ -216,8 +277,8 @@ public class ShadowLog {
    * @return The list of log items for the tag or an empty list if no logs for that tag exist.
    */
   public static List<LogItem> getLogsForTag(String tag) {
-    Queue<LogItem> logs = logsByTag.get(tag);
-    return logs == null ? Collections.emptyList() : new ArrayList<>(logs);
+    LogBuffer tagLogs = logsByTag.get(tagKey(tag));
+    return tagLogs == null ? Collections.emptyList() : tagLogs.snapshot();
   }
 
   /** Clear all accumulated logs. */
@@ -226,8 +287,10 @@ public class ShadowLog {
   }
 
   @Resetter
-  public static void reset() {
-    logs.clear();
+  public static synchronized void reset() {
+    maxLogs = defaultMaxLogs("robolectric.logging.maxLogs");
+    maxLogsPerTag = defaultMaxLogs("robolectric.logging.maxLogsPerTag");
+    logs = LogBuffer.create(maxLogs);
     logsByTag.clear();
     tagToLevel.clear();
     wtfIsFatal = false;
@@ -262,6 +325,117 @@ public class ShadowLog {
     }
   }
 
+  /** Log items in the order they were logged, retaining either all of them or the most recent. */
+  private abstract static class LogBuffer {
+
+    private long droppedBeforeResize;
+
+    static LogBuffer create(int max) {
+      return max == Integer.MAX_VALUE ? new UnboundedLogBuffer() : new RingLogBuffer(max);
+    }
+
+    abstract void add(LogItem item);
+
+    abstract List<LogItem> snapshot();
+
+    /** Returns the number of items dropped by this buffer, and any it was resized from. */
+    long droppedCount() {
+      return droppedBeforeResize + droppedSinceResize();
+    }
+
+    abstract long droppedSinceResize();
+
+    /** Returns a buffer with a new maximum size, holding the most recent items from this one. */
+    LogBuffer resize(int max) {
+      LogBuffer resized = create(max);
+      for (LogItem item : snapshot()) {
+        resized.add(item);
+      }
+      resized.droppedBeforeResize = droppedCount();
+      return resized;
+    }
+  }
+
+  private static class UnboundedLogBuffer extends LogBuffer {
+    private final Queue<LogItem> items = new ConcurrentLinkedQueue<>();
+
+    @Override
+    void add(LogItem item) {
+      items.add(item);
+    }
+
+    @Override
+    List<LogItem> snapshot() {
+      return new ArrayList<>(items);
+    }
+
+    @Override
+    long droppedSinceResize() {
+      return 0;
+    }
+  }
+
+  /**
+   * A lock-free ring buffer of the most recent items. Each slot records the position of its item
+   * in the log, so that a snapshot taken while another thread is overwriting slots skips items
+   * which have just been dropped, rather than returning them out of order, and so that a writer
+   * which falls a lap behind doesn't overwrite a newer item.
+   */
+  private static class RingLogBuffer extends LogBuffer {
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong nextPosition = new AtomicLong();
+
+    RingLogBuffer(int max) {
+      slots = new AtomicReferenceArray<>(max);
+    }
+
+    @Override
+    void add(LogItem item) {
+      long position = nextPosition.getAndIncrement();
+      int index = (int) (position % slots.length());
+      Slot slot = new Slot(position, item);
+      while (true) {
+        Slot current = slots.get(index);
+        if (current != null && current.position > position) {
+          // a newer item has already taken this slot, so this one has been dropped
+          return;
+        }
+        if (slots.compareAndSet(index, current, slot)) {
+          return;
+        }
+      }
+    }
+
+    @Override
+    List<LogItem> snapshot() {
+      long end = nextPosition.get();
+      List<LogItem> items = new ArrayList<>();
+      for (long position = Math.max(0, end - slots.length()); position < end; position++) {
+        Slot slot = slots.get((int) (position % slots.length()));
+        // the slot may not be written yet, or may have been overwritten since
+        if (slot != null && slot.position == position) {
+          items.add(slot.item);
+        }
+      }
+      return items;
+    }
+
+    @Override
+    long droppedSinceResize() {
+      return Math.max(0, nextPosition.get() - slots.length());
+    }
+
+    private static class Slot {
+      final long position;
+      final LogItem item;
+
+      Slot(long position, LogItem item) {
+        this.position = position;
+        this.item = item;
+      }
+    }
+  }
+
   public static class LogItem {
     public final String timeString;
     public final int type;
@@ -122,6 +122,11 @@ public class ShadowPackageManager {
   static final SortedMap<ComponentName, List<IntentFilter>> serviceFilters = new TreeMap<>();
   static final SortedMap<ComponentName, List<IntentFilter>> providerFilters = new TreeMap<>();
   static final SortedMap<ComponentName, List<IntentFilter>> receiverFilters = new TreeMap<>();
+  // Indexes of the filters above, kept in sync with them, used to resolve implicit intents.
+  static final IntentFilterIndex activityFilterIndex = new IntentFilterIndex();
+  static final IntentFilterIndex serviceFilterIndex = new IntentFilterIndex();
+  static final IntentFilterIndex providerFilterIndex = new IntentFilterIndex();
+  static final IntentFilterIndex receiverFilterIndex = new IntentFilterIndex();
 
   private static Map<String, PackageInfo> packageArchiveInfo = new HashMap<>();
   static final Map<String, PackageStats> packageStatsMap = new HashMap<>();
@@ -168,6 +173,7 @@ public class ShadowPackageManager {
   public ActivityInfo addActivityIfNotPresent(ComponentName componentName) {
     return addComponent(
         activityFilters,
+        activityFilterIndex,
         p -> p.activities,
         (p, a) -> p.activities = a,
         updateName(componentName, new ActivityInfo()),
@@ -185,6 +191,7 @@ public class ShadowPackageManager {
   public ServiceInfo addServiceIfNotPresent(ComponentName componentName) {
     return addComponent(
         serviceFilters,
+        serviceFilterIndex,
         p -> p.services,
         (p, a) -> p.services = a,
         updateName(componentName, new ServiceInfo()),
@@ -202,6 +209,7 @@ public class ShadowPackageManager {
   public ActivityInfo addReceiverIfNotPresent(ComponentName componentName) {
     return addComponent(
         receiverFilters,
+        receiverFilterIndex,
         p -> p.receivers,
         (p, a) -> p.receivers = a,
         updateName(componentName, new ActivityInfo()),
@@ -219,6 +227,7 @@ public class ShadowPackageManager {
   public ProviderInfo addProviderIfNotPresent(ComponentName componentName) {
     return addComponent(
         providerFilters,
+        providerFilterIndex,
         p -> p.providers,
         (p, a) -> p.providers = a,
         updateName(componentName, new ProviderInfo()),
@@ -245,6 +254,7 @@ public class ShadowPackageManager {
   public void addOrUpdateActivity(ActivityInfo activityInfo) {
     addComponent(
         activityFilters,
+        activityFilterIndex,
         p -> p.activities,
         (p, a) -> p.activities = a,
         new ActivityInfo(activityInfo),
@@ -262,6 +272,7 @@ public class ShadowPackageManager {
   public void addOrUpdateService(ServiceInfo serviceInfo) {
     addComponent(
         serviceFilters,
+        serviceFilterIndex,
         p -> p.services,
         (p, a) -> p.services = a,
         new ServiceInfo(serviceInfo),
@@ -280,6 +291,7 @@ public class ShadowPackageManager {
   public void addOrUpdateReceiver(ActivityInfo receiverInfo) {
     addComponent(
         receiverFilters,
+        receiverFilterIndex,
         p -> p.receivers,
         (p, a) -> p.receivers = a,
         new ActivityInfo(receiverInfo),
@@ -298,6 +310,7 @@ public class ShadowPackageManager {
   public void addOrUpdateProvider(ProviderInfo providerInfo) {
     addComponent(
         providerFilters,
+        providerFilterIndex,
         p -> p.providers,
         (p, a) -> p.providers = a,
         new ProviderInfo(providerInfo),
@@ -312,7 +325,11 @@ public class ShadowPackageManager {
   @Nullable
   public ActivityInfo removeActivity(ComponentName componentName) {
     return removeComponent(
-        componentName, activityFilters, p -> p.activities, (p, a) -> p.activities = a);
+        componentName,
+        activityFilters,
+        activityFilterIndex,
+        p -> p.activities,
+        (p, a) -> p.activities = a);
   }
 
   /**
@@ -323,7 +340,11 @@ public class ShadowPackageManager {
   @Nullable
   public ServiceInfo removeService(ComponentName componentName) {
     return removeComponent(
-        componentName, serviceFilters, p -> p.services, (p, a) -> p.services = a);
+        componentName,
+        serviceFilters,
+        serviceFilterIndex,
+        p -> p.services,
+        (p, a) -> p.services = a);
   }
 
   /**
@@ -334,7 +355,11 @@ public class ShadowPackageManager {
   @Nullable
   public ProviderInfo removeProvider(ComponentName componentName) {
     return removeComponent(
-        componentName, providerFilters, p -> p.providers, (p, a) -> p.providers = a);
+        componentName,
+        providerFilters,
+        providerFilterIndex,
+        p -> p.providers,
+        (p, a) -> p.providers = a);
   }
 
   /**
@@ -345,11 +370,16 @@ public class ShadowPackageManager {
   @Nullable
   public ActivityInfo removeReceiver(ComponentName componentName) {
     return removeComponent(
-        componentName, receiverFilters, p -> p.receivers, (p, a) -> p.receivers = a);
+        componentName,
+        receiverFilters,
+        receiverFilterIndex,
+        p -> p.receivers,
+        (p, a) -> p.receivers = a);
   }
 
   private <C extends ComponentInfo> C addComponent(
       SortedMap<ComponentName, List<IntentFilter>> filtersMap,
+      IntentFilterIndex filterIndex,
       Function<PackageInfo, C[]> componentArrayInPackage,
       BiConsumer<PackageInfo, C[]> componentsSetter,
       C newComponent,
@@ -392,8 +422,9 @@ public class ShadowPackageManager {
     componentsSetter.accept(packageInfo, components);
     components[components.length - 1] = newComponent;
 
-    filtersMap.put(
-        new ComponentName(newComponent.packageName, newComponent.name), new ArrayList<>());
+    ComponentName componentName = new ComponentName(newComponent.packageName, newComponent.name);
+    filtersMap.put(componentName, new ArrayList<>());
+    filterIndex.remove(componentName);
     return newComponent;
   }
 
@@ -401,9 +432,11 @@ public class ShadowPackageManager {
   private <C extends ComponentInfo> C removeComponent(
       ComponentName componentName,
       SortedMap<ComponentName, List<IntentFilter>> filtersMap,
+      IntentFilterIndex filterIndex,
       Function<PackageInfo, C[]> componentArrayInPackage,
       BiConsumer<PackageInfo, C[]> componentsSetter) {
     filtersMap.remove(componentName);
+    filterIndex.remove(componentName);
     String packageName = componentName.getPackageName();
     PackageInfo packageInfo = packageInfos.get(packageName);
     if (packageInfo == null) {
@@ -1066,13 +1099,25 @@ public class ShadowPackageManager {
   public void deletePackage(String packageName) {
     deletedPackages.add(packageName);
     packageInfos.remove(packageName);
-    mapForPackage(activityFilters, packageName).clear();
-    mapForPackage(serviceFilters, packageName).clear();
-    mapForPackage(providerFilters, packageName).clear();
-    mapForPackage(receiverFilters, packageName).clear();
+    clearFiltersForPackage(activityFilters, activityFilterIndex, packageName);
+    clearFiltersForPackage(serviceFilters, serviceFilterIndex, packageName);
+    clearFiltersForPackage(providerFilters, providerFilterIndex, packageName);
+    clearFiltersForPackage(receiverFilters, receiverFilterIndex, packageName);
     moduleInfos.remove(packageName);
   }
 
+  private static void clearFiltersForPackage(
+      SortedMap<ComponentName, List<IntentFilter>> filtersMap,
+      IntentFilterIndex filterIndex,
+      String packageName) {
+    SortedMap<ComponentName, List<IntentFilter>> filtersForPackage =
+        mapForPackage(filtersMap, packageName);
+    for (ComponentName componentName : filtersForPackage.keySet()) {
+      filterIndex.remove(componentName);
+    }
+    filtersForPackage.clear();
+  }
+
   protected void deletePackage(String packageName, IPackageDeleteObserver observer, int flags) {
     pendingDeleteCallbacks.put(packageName, observer);
   }
@@ -1172,14 +1217,15 @@ public class ShadowPackageManager {
     packageInfo.applicationInfo.uid = Process.myUid();
     packageInfo.applicationInfo.dataDir = createTempDir(packageInfo.packageName + "-dataDir");
     installPackage(packageInfo);
-    addFilters(activityFilters, appPackage.activities);
-    addFilters(serviceFilters, appPackage.services);
-    addFilters(providerFilters, appPackage.providers);
-    addFilters(receiverFilters, appPackage.receivers);
+    addFilters(activityFilters, activityFilterIndex, appPackage.activities);
+    addFilters(serviceFilters, serviceFilterIndex, appPackage.services);
+    addFilters(providerFilters, providerFilterIndex, appPackage.providers);
+    addFilters(receiverFilters, receiverFilterIndex, appPackage.receivers);
   }
 
   private void addFilters(
       Map<ComponentName, List<IntentFilter>> componentMap,
+      IntentFilterIndex filterIndex,
       List<? extends PackageParser.Component<?>> components) {
     if (components == null) {
       return;
@@ -1192,7 +1238,9 @@ public class ShadowPackageManager {
         componentMap.put(componentName, registeredFilters);
       }
       for (IntentInfo intentInfo : component.intents) {
-        registeredFilters.add(new IntentFilter(intentInfo));
+        IntentFilter filter = new IntentFilter(intentInfo);
+        registeredFilters.add(filter);
+        filterIndex.add(componentName, filter);
       }
     }
   }
@@ -1357,7 +1405,7 @@ public class ShadowPackageManager {
    */
   public void addIntentFilterForActivity(ComponentName componentName, IntentFilter filter)
       throws NameNotFoundException {
-    addIntentFilterForComponent(componentName, filter, activityFilters);
+    addIntentFilterForComponent(componentName, filter, activityFilters, activityFilterIndex);
   }
 
   /**
@@ -1367,7 +1415,7 @@ public class ShadowPackageManager {
    */
   public void addIntentFilterForService(ComponentName componentName, IntentFilter filter)
       throws NameNotFoundException {
-    addIntentFilterForComponent(componentName, filter, serviceFilters);
+    addIntentFilterForComponent(componentName, filter, serviceFilters, serviceFilterIndex);
   }
 
   /**
@@ -1377,7 +1425,7 @@ public class ShadowPackageManager {
    */
   public void addIntentFilterForReceiver(ComponentName componentName, IntentFilter filter)
       throws NameNotFoundException {
-    addIntentFilterForComponent(componentName, filter, receiverFilters);
+    addIntentFilterForComponent(componentName, filter, receiverFilters, receiverFilterIndex);
   }
 
   /**
@@ -1387,7 +1435,7 @@ public class ShadowPackageManager {
    */
   public void addIntentFilterForProvider(ComponentName componentName, IntentFilter filter)
       throws NameNotFoundException {
-    addIntentFilterForComponent(componentName, filter, providerFilters);
+    addIntentFilterForComponent(componentName, filter, providerFilters, providerFilterIndex);
   }
 
   /**
@@ -1397,7 +1445,7 @@ public class ShadowPackageManager {
    */
   public void clearIntentFilterForActivity(ComponentName componentName)
       throws NameNotFoundException {
-    clearIntentFilterForComponent(componentName, activityFilters);
+    clearIntentFilterForComponent(componentName, activityFilters, activityFilterIndex);
   }
 
   /**
@@ -1407,7 +1455,7 @@ public class ShadowPackageManager {
    */
   public void clearIntentFilterForService(ComponentName componentName)
       throws NameNotFoundException {
-    clearIntentFilterForComponent(componentName, serviceFilters);
+    clearIntentFilterForComponent(componentName, serviceFilters, serviceFilterIndex);
   }
 
   /**
@@ -1417,7 +1465,7 @@ public class ShadowPackageManager {
    */
   public void clearIntentFilterForReceiver(ComponentName componentName)
       throws NameNotFoundException {
-    clearIntentFilterForComponent(componentName, receiverFilters);
+    clearIntentFilterForComponent(componentName, receiverFilters, receiverFilterIndex);
   }
 
   /**
@@ -1427,13 +1475,14 @@ public class ShadowPackageManager {
    */
   public void clearIntentFilterForProvider(ComponentName componentName)
       throws NameNotFoundException {
-    clearIntentFilterForComponent(componentName, providerFilters);
+    clearIntentFilterForComponent(componentName, providerFilters, providerFilterIndex);
   }
 
   private void addIntentFilterForComponent(
       ComponentName componentName,
       IntentFilter filter,
-      Map<ComponentName, List<IntentFilter>> filterMap)
+      Map<ComponentName, List<IntentFilter>> filterMap,
+      IntentFilterIndex filterIndex)
       throws NameNotFoundException {
     // Existing components should have an entry in respective filterMap.
     // It is OK to search over all filter maps, as it is impossible to have the same component name
@@ -1441,17 +1490,21 @@ public class ShadowPackageManager {
     List<IntentFilter> filters = filterMap.get(componentName);
     if (filters != null) {
       filters.add(filter);
+      filterIndex.addChangeable(componentName, filter);
       return;
     }
     throw new NameNotFoundException(componentName + " doesn't exist");
   }
 
   private void clearIntentFilterForComponent(
-      ComponentName componentName, Map<ComponentName, List<IntentFilter>> filterMap)
+      ComponentName componentName,
+      Map<ComponentName, List<IntentFilter>> filterMap,
+      IntentFilterIndex filterIndex)
       throws NameNotFoundException {
     List<IntentFilter> filters = filterMap.get(componentName);
     if (filters != null) {
       filters.clear();
+      filterIndex.remove(componentName);
       return;
     }
     throw new NameNotFoundException(componentName + " doesn't exist");
@@ -1626,9 +1679,13 @@ public class ShadowPackageManager {
     hiddenPackages.clear();
     sequenceNumberChangedPackagesMap.clear();
     activityFilters.clear();
+    activityFilterIndex.clear();
     serviceFilters.clear();
+    serviceFilterIndex.clear();
     providerFilters.clear();
+    providerFilterIndex.clear();
     receiverFilters.clear();
+    receiverFilterIndex.clear();
     packageSettings.clear();
     safeMode = false;
   }
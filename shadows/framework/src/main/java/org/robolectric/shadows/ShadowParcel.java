@@ -8,6 +8,7 @@ import static android.os.Build.VERSION_CODES.M;
 import static android.os.Build.VERSION_CODES.O_MR1;
 import static android.os.Build.VERSION_CODES.P;
 import static org.robolectric.RuntimeEnvironment.castNativePtr;
+import static org.robolectric.util.reflector.Reflector.reflector;
 
 import android.os.BadParcelableException;
 import android.os.IBinder;
@@ -27,16 +28,25 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import org.robolectric.annotation.HiddenApi;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.ParcelMode;
 import org.robolectric.annotation.RealObject;
+import org.robolectric.annotation.Resetter;
+import org.robolectric.config.ConfigurationRegistry;
 import org.robolectric.res.android.NativeObjRegistry;
 import org.robolectric.util.ReflectionHelpers;
 import org.robolectric.util.ReflectionHelpers.ClassParameter;
+import org.robolectric.util.reflector.Accessor;
+import org.robolectric.util.reflector.ForType;
+import org.robolectric.util.reflector.Static;
 
 /**
  * Robolectric's {@link Parcel} pretends to be backed by a byte buffer, closely matching {@link
@@ -44,14 +54,19 @@ import org.robolectric.util.ReflectionHelpers.ClassParameter;
  * is strongly typed, to detect non-portable code and common testing mistakes. It may throw {@link
  * IllegalArgumentException} or {@link IllegalStateException} for error-prone behavior normal {@link
  * Parcel} tolerates.
+ *
+ * <p>Tests which build large parcels may use {@link ParcelMode} to have parcels backed by a byte
+ * array instead; see {@link CompactByteBuffer}.
  */
 @Implements(Parcel.class)
 public class ShadowParcel {
   private static final String TAG = "Parcel";
 
   @RealObject private Parcel realObject;
-  private static final NativeObjRegistry<ByteBuffer> NATIVE_BYTE_BUFFER_REGISTRY =
-      new NativeObjRegistry<>(ByteBuffer.class);
+  private static final NativeObjRegistry<ParcelBuffer> NATIVE_BYTE_BUFFER_REGISTRY =
+      new NativeObjRegistry<>(ParcelBuffer.class);
+
+  private static ParcelMode.Mode parcelMode;
 
   @Implementation(maxSdk = JELLY_BEAN_MR1)
   @SuppressWarnings("TypeParameterUnusedInFormals")
@@ -420,7 +435,59 @@ public class ShadowParcel {
   @Implementation
   @HiddenApi
   public static Number nativeCreate() {
-    return castNativePtr(NATIVE_BYTE_BUFFER_REGISTRY.register(new ByteBuffer()));
+    return castNativePtr(NATIVE_BYTE_BUFFER_REGISTRY.register(newParcelBuffer()));
+  }
+
+  @Implementation
+  protected static Parcel obtain() {
+    Parcel parcel = reflector(ParcelReflector.class).$$robo$$android_os_Parcel$obtain();
+    // Parcel's pool may hold parcels recycled by an earlier test, which used another ParcelMode.
+    long nativePtr = reflector(ParcelReflector.class, parcel).getNativePtr();
+    ParcelBuffer parcelBuffer = NATIVE_BYTE_BUFFER_REGISTRY.getNativeObject(nativePtr);
+    if (!isInParcelMode(parcelBuffer)) {
+      NATIVE_BYTE_BUFFER_REGISTRY.update(nativePtr, newParcelBuffer());
+    }
+    return parcel;
+  }
+
+  private static ParcelBuffer newParcelBuffer() {
+    switch (getParcelMode()) {
+      case COMPACT:
+        return new CompactByteBuffer(/* typeChecked= */ true);
+      case COMPACT_UNCHECKED:
+        return new CompactByteBuffer(/* typeChecked= */ false);
+      default:
+        return new ByteBuffer();
+    }
+  }
+
+  private static boolean isInParcelMode(ParcelBuffer parcelBuffer) {
+    switch (getParcelMode()) {
+      case COMPACT:
+        return parcelBuffer instanceof CompactByteBuffer
+            && ((CompactByteBuffer) parcelBuffer).typeChecked;
+      case COMPACT_UNCHECKED:
+        return parcelBuffer instanceof CompactByteBuffer
+            && !((CompactByteBuffer) parcelBuffer).typeChecked;
+      default:
+        return parcelBuffer instanceof ByteBuffer;
+    }
+  }
+
+  private static ParcelMode.Mode getParcelMode() {
+    // Looking up configuration is relatively costly, so only do it once per test.
+    if (parcelMode == null) {
+      parcelMode =
+          ConfigurationRegistry.instance == null
+              ? ParcelMode.Mode.TYPED
+              : ConfigurationRegistry.get(ParcelMode.Mode.class);
+    }
+    return parcelMode;
+  }
+
+  @Resetter
+  public static void reset() {
+    parcelMode = null;
   }
 
   @HiddenApi
@@ -432,7 +499,12 @@ public class ShadowParcel {
   @Implementation(minSdk = LOLLIPOP)
   @SuppressWarnings("robolectric.ShadowReturnTypeMismatch")
   protected static void nativeFreeBuffer(long nativePtr) {
-    NATIVE_BYTE_BUFFER_REGISTRY.getNativeObject(nativePtr).clear();
+    ParcelBuffer parcelBuffer = NATIVE_BYTE_BUFFER_REGISTRY.getNativeObject(nativePtr);
+    if (isInParcelMode(parcelBuffer)) {
+      parcelBuffer.clear();
+    } else {
+      NATIVE_BYTE_BUFFER_REGISTRY.update(nativePtr, newParcelBuffer());
+    }
   }
 
   @HiddenApi
@@ -466,7 +538,13 @@ public class ShadowParcel {
   @Implementation(minSdk = LOLLIPOP)
   @SuppressWarnings("robolectric.ShadowReturnTypeMismatch")
   protected static void nativeUnmarshall(long nativePtr, byte[] data, int offset, int length) {
-    NATIVE_BYTE_BUFFER_REGISTRY.update(nativePtr, ByteBuffer.fromByteArray(data, offset, length));
+    ParcelBuffer parcelBuffer = NATIVE_BYTE_BUFFER_REGISTRY.getNativeObject(nativePtr);
+    NATIVE_BYTE_BUFFER_REGISTRY.update(
+        nativePtr,
+        parcelBuffer instanceof CompactByteBuffer
+            ? CompactByteBuffer.fromByteArray(
+                data, offset, length, ((CompactByteBuffer) parcelBuffer).typeChecked)
+            : ByteBuffer.fromByteArray(data, offset, length));
   }
 
   @HiddenApi
@@ -480,8 +558,12 @@ public class ShadowParcel {
   @SuppressWarnings("robolectric.ShadowReturnTypeMismatch")
   protected static void nativeAppendFrom(
       long thisNativePtr, long otherNativePtr, int offset, int length) {
-    ByteBuffer thisByteBuffer = NATIVE_BYTE_BUFFER_REGISTRY.getNativeObject(thisNativePtr);
-    ByteBuffer otherByteBuffer = NATIVE_BYTE_BUFFER_REGISTRY.getNativeObject(otherNativePtr);
+    ParcelBuffer thisByteBuffer = NATIVE_BYTE_BUFFER_REGISTRY.getNativeObject(thisNativePtr);
+    ParcelBuffer otherByteBuffer = NATIVE_BYTE_BUFFER_REGISTRY.getNativeObject(otherNativePtr);
+    if (thisByteBuffer.getClass() != otherByteBuffer.getClass()) {
+      throw new IllegalArgumentException(
+          "Can't append from a parcel created with a different ParcelMode");
+    }
     thisByteBuffer.appendFrom(otherByteBuffer, offset, length);
   }
 
@@ -594,7 +676,7 @@ public class ShadowParcel {
    *       only at most one allocation for every 4 byte positions.
    * </ul>
    */
-  private static class ByteBuffer {
+  private static class ByteBuffer implements ParcelBuffer {
     /** Number of bytes in Parcel used by an int, length, or anything smaller. */
     private static final int INT_SIZE_BYTES = 4;
     /** Number of bytes in Parcel used by a long or double. */
@@ -837,11 +919,13 @@ public class ShadowParcel {
      * Appends the contents of the other byte buffer to this byte buffer starting at offset and
      * ending at length.
      *
-     * @param other ByteBuffer to append to this one
+     * @param otherBuffer ByteBuffer to append to this one
      * @param offset number of bytes from beginning of byte buffer to start copy from
      * @param length number of bytes to copy
      */
-    public void appendFrom(ByteBuffer other, int offset, int length) {
+    @Override
+    public void appendFrom(ParcelBuffer otherBuffer, int offset, int length) {
+      ByteBuffer other = (ByteBuffer) otherBuffer;
       int oldSize = dataSize;
       if (dataPosition != dataSize) {
         // Parcel.cpp will always expand the buffer by length even if it is overwriting existing
@@ -1192,6 +1276,578 @@ public class ShadowParcel {
     }
   }
 
+  /** The operations ShadowParcel needs from its representation of a Parcel's data. */
+  private interface ParcelBuffer {
+    void clear();
+
+    byte[] createByteArray();
+
+    boolean readByteArray(byte[] dest, int destLen);
+
+    void writeByteArray(byte[] b, int offset, int length);
+
+    void writeInt(int i);
+
+    int readInt();
+
+    void writeLong(long l);
+
+    long readLong();
+
+    void writeFloat(float f);
+
+    float readFloat();
+
+    void writeDouble(double d);
+
+    double readDouble();
+
+    void writeString(String s);
+
+    String readString();
+
+    void writeStrongBinder(IBinder b);
+
+    IBinder readStrongBinder();
+
+    void appendFrom(ParcelBuffer other, int offset, int length);
+
+    byte[] toByteArray();
+
+    int dataAvailable();
+
+    int dataCapacity();
+
+    int dataPosition();
+
+    int dataSize();
+
+    void setDataPosition(int pos);
+
+    void setDataSize(int size);
+
+    void setDataCapacityAtLeast(int newCapacity);
+  }
+
+  /**
+   * CompactByteBuffer holds a Parcel's data as bytes, laid out the way a real Parcel lays them
+   * out: little-endian, with every value padded to 4 bytes. Memory use, and the cost of marshalling
+   * and unmarshalling, are linear in the size of the parcel rather than in the number of byte
+   * positions times the size of a reference, as in {@link ByteBuffer}.
+   *
+   * <p>Binders can't be represented as bytes, so they're held in a side table keyed by position.
+   * As with a real Parcel, parcels containing binders can't be marshalled.
+   *
+   * <p>When {@link #typeChecked}, a second side table holds one type tag per 4-byte word, which is
+   * enough to keep most of {@link ByteBuffer}'s fail-fast behavior: reading a value as a different
+   * type than it was written, reading from the middle of a value, reading uninitialized data, and
+   * reading past the end without calling setDataPosition(0) all throw. As in {@link ByteBuffer},
+   * all-zero data may be read as any type. Data which was unmarshalled from bytes may also be read
+   * as any type, since the types it was written as are unknown.
+   */
+  private static class CompactByteBuffer implements ParcelBuffer {
+    private static final int INT_SIZE_BYTES = 4;
+    private static final int LONG_OR_DOUBLE_SIZE_BYTES = 8;
+    /** Size of struct flat_binder_object in android/binder.h. */
+    private static final int BINDER_SIZE_BYTES = 5 * INT_SIZE_BYTES;
+    /** BINDER_TYPE_BINDER in android/binder.h. */
+    private static final int BINDER_TYPE_BINDER = 0x73622a85;
+    private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
+
+    private static final byte TAG_UNINITIALIZED = 0;
+    private static final byte TAG_UNKNOWN = 1;
+    private static final byte TAG_CONTINUATION = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_STRING = 7;
+    private static final byte TAG_BYTE_ARRAY = 8;
+    private static final byte TAG_BINDER = 9;
+    private static final String[] TAG_NAMES = {
+      "uninitialized data",
+      "unmarshalled data",
+      "the middle of a value",
+      "Integer",
+      "Long",
+      "Float",
+      "Double",
+      "String",
+      "byte[]",
+      "IBinder"
+    };
+
+    private final boolean typeChecked;
+    private byte[] data;
+    /** The type of the value starting at each 4-byte word, or null if not {@link #typeChecked}. */
+    private byte[] tags;
+    /** Binders by their position. */
+    private final Map<Integer, IBinder> binders = new HashMap<>();
+    private int dataPosition;
+    private int dataSize;
+    /** As in {@link ByteBuffer}. */
+    private boolean failNextReadIfPastEnd;
+
+    CompactByteBuffer(boolean typeChecked) {
+      this.typeChecked = typeChecked;
+      clear();
+    }
+
+    @Override
+    public void clear() {
+      data = EMPTY_BYTE_ARRAY;
+      tags = typeChecked ? EMPTY_BYTE_ARRAY : null;
+      binders.clear();
+      dataPosition = 0;
+      dataSize = 0;
+      failNextReadIfPastEnd = false;
+    }
+
+    @Override
+    public byte[] createByteArray() {
+      int length = readInt();
+      if (length == -1) {
+        return null;
+      }
+      if (length == 0) {
+        return EMPTY_BYTE_ARRAY;
+      }
+      if (length < 0 || !startRead(alignToInt(length), TAG_BYTE_ARRAY)) {
+        return null;
+      }
+      byte[] result = Arrays.copyOfRange(data, dataPosition, dataPosition + length);
+      dataPosition += alignToInt(length);
+      return result;
+    }
+
+    @Override
+    public boolean readByteArray(byte[] dest, int destLen) {
+      byte[] result = createByteArray();
+      if (result == null || destLen != result.length) {
+        return false;
+      }
+      System.arraycopy(result, 0, dest, 0, destLen);
+      return true;
+    }
+
+    @Override
+    public void writeByteArray(byte[] b, int offset, int length) {
+      writeInt(length);
+      if (length != 0) {
+        int start = startWrite(alignToInt(length), TAG_BYTE_ARRAY);
+        System.arraycopy(b, offset, data, start, length);
+      }
+    }
+
+    @Override
+    public void writeInt(int i) {
+      putInt(startWrite(INT_SIZE_BYTES, TAG_INT), i);
+    }
+
+    @Override
+    public int readInt() {
+      if (!startRead(INT_SIZE_BYTES, TAG_INT)) {
+        return 0;
+      }
+      int result = getInt(dataPosition);
+      dataPosition += INT_SIZE_BYTES;
+      return result;
+    }
+
+    @Override
+    public void writeLong(long l) {
+      putLong(startWrite(LONG_OR_DOUBLE_SIZE_BYTES, TAG_LONG), l);
+    }
+
+    @Override
+    public long readLong() {
+      if (!startRead(LONG_OR_DOUBLE_SIZE_BYTES, TAG_LONG)) {
+        return 0L;
+      }
+      long result = getLong(dataPosition);
+      dataPosition += LONG_OR_DOUBLE_SIZE_BYTES;
+      return result;
+    }
+
+    @Override
+    public void writeFloat(float f) {
+      putInt(startWrite(INT_SIZE_BYTES, TAG_FLOAT), Float.floatToRawIntBits(f));
+    }
+
+    @Override
+    public float readFloat() {
+      if (!startRead(INT_SIZE_BYTES, TAG_FLOAT)) {
+        return 0f;
+      }
+      float result = Float.intBitsToFloat(getInt(dataPosition));
+      dataPosition += INT_SIZE_BYTES;
+      return result;
+    }
+
+    @Override
+    public void writeDouble(double d) {
+      putLong(startWrite(LONG_OR_DOUBLE_SIZE_BYTES, TAG_DOUBLE), Double.doubleToRawLongBits(d));
+    }
+
+    @Override
+    public double readDouble() {
+      if (!startRead(LONG_OR_DOUBLE_SIZE_BYTES, TAG_DOUBLE)) {
+        return 0d;
+      }
+      double result = Double.longBitsToDouble(getLong(dataPosition));
+      dataPosition += LONG_OR_DOUBLE_SIZE_BYTES;
+      return result;
+    }
+
+    @Override
+    public void writeString(String s) {
+      if (s == null) {
+        putInt(startWrite(INT_SIZE_BYTES, TAG_STRING), -1);
+        return;
+      }
+      // Android encodes strings as length plus a null-terminated array of 2-byte characters.
+      int length = s.length();
+      int start = startWrite(alignToInt(INT_SIZE_BYTES + (length + 1) * 2), TAG_STRING);
+      putInt(start, length);
+      for (int i = 0; i < length; i++) {
+        char c = s.charAt(i);
+        int charPosition = start + INT_SIZE_BYTES + i * 2;
+        data[charPosition] = (byte) c;
+        data[charPosition + 1] = (byte) (c >>> 8);
+      }
+    }
+
+    @Override
+    public String readString() {
+      // Peek at the length to find out how many bytes the string takes.
+      if (!startRead(INT_SIZE_BYTES, TAG_STRING, /* checkTags= */ false)) {
+        return null;
+      }
+      int length = getInt(dataPosition);
+      int sizeBytes = length < 0 ? INT_SIZE_BYTES : alignToInt(INT_SIZE_BYTES + (length + 1) * 2);
+      if (length < -1 || !startRead(sizeBytes, TAG_STRING)) {
+        return null;
+      }
+      String result = null;
+      if (length >= 0) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+          int charPosition = dataPosition + INT_SIZE_BYTES + i * 2;
+          chars[i] = (char) ((data[charPosition] & 0xff) | (data[charPosition + 1] & 0xff) << 8);
+        }
+        result = new String(chars);
+      }
+      dataPosition += sizeBytes;
+      return result;
+    }
+
+    @Override
+    public void writeStrongBinder(IBinder b) {
+      int start = startWrite(BINDER_SIZE_BYTES, TAG_BINDER);
+      putInt(start, BINDER_TYPE_BINDER);
+      binders.put(start, b);
+    }
+
+    @Override
+    public IBinder readStrongBinder() {
+      if (!startRead(BINDER_SIZE_BYTES, TAG_BINDER)) {
+        return null;
+      }
+      IBinder result = binders.get(dataPosition);
+      dataPosition += BINDER_SIZE_BYTES;
+      return result;
+    }
+
+    @Override
+    public void appendFrom(ParcelBuffer otherBuffer, int offset, int length) {
+      CompactByteBuffer other = (CompactByteBuffer) otherBuffer;
+      if (dataPosition != dataSize) {
+        // See ByteBuffer.appendFrom.
+        throw new UnreliableBehaviorError(
+            "Real Android parcels behave unreliably if appendFrom is "
+                + "called from any position other than the end");
+      }
+      if (offset < 0 || length < 0 || offset + length > other.dataSize) {
+        throw new IllegalArgumentException(
+            "Can't append " + length + " bytes at offset " + offset + " of " + other.dataSize);
+      }
+      int start = dataPosition;
+      setDataSize(dataSize + length);
+      System.arraycopy(other.data, offset, data, start, length);
+      if (tags != null) {
+        if (other.tags != null && offset % INT_SIZE_BYTES == 0 && start % INT_SIZE_BYTES == 0) {
+          System.arraycopy(
+              other.tags,
+              offset / INT_SIZE_BYTES,
+              tags,
+              start / INT_SIZE_BYTES,
+              alignToInt(length) / INT_SIZE_BYTES);
+        } else {
+          fillTags(start, length, TAG_UNKNOWN);
+        }
+      }
+      for (Map.Entry<Integer, IBinder> entry : other.binders.entrySet()) {
+        int position = entry.getKey();
+        if (position >= offset && position < offset + length) {
+          binders.put(start + position - offset, entry.getValue());
+        }
+      }
+      dataPosition = start + length;
+      failNextReadIfPastEnd = true;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+      for (IBinder binder : binders.values()) {
+        if (binder != null) {
+          // Same as Parcel.cpp.
+          throw new RuntimeException("Tried to marshall a Parcel that contained Binder objects.");
+        }
+      }
+      if (tags != null) {
+        for (int i = 0; i < alignToInt(dataSize) / INT_SIZE_BYTES; i++) {
+          if (tags[i] == TAG_UNINITIALIZED) {
+            throw new UnreliableBehaviorError(
+                "Marshalling uninitialized data at position " + i * INT_SIZE_BYTES);
+          }
+        }
+      }
+      return Arrays.copyOf(data, dataSize);
+    }
+
+    /** Creates a buffer holding the given marshalled bytes. */
+    static CompactByteBuffer fromByteArray(
+        byte[] array, int offset, int length, boolean typeChecked) {
+      CompactByteBuffer byteBuffer = new CompactByteBuffer(typeChecked);
+      byteBuffer.setDataSize(length);
+      System.arraycopy(array, offset, byteBuffer.data, 0, length);
+      if (byteBuffer.tags != null) {
+        byteBuffer.fillTags(0, length, TAG_UNKNOWN);
+      }
+      // Android leaves the data position at the end in this case.
+      byteBuffer.dataPosition = length;
+      byteBuffer.failNextReadIfPastEnd = true;
+      return byteBuffer;
+    }
+
+    @Override
+    public int dataAvailable() {
+      return dataSize - dataPosition;
+    }
+
+    @Override
+    public int dataCapacity() {
+      return data.length;
+    }
+
+    @Override
+    public int dataPosition() {
+      return dataPosition;
+    }
+
+    @Override
+    public int dataSize() {
+      return dataSize;
+    }
+
+    @Override
+    public void setDataPosition(int pos) {
+      if (pos > dataSize) {
+        // NOTE: Real parcel ignores this until a write occurs.
+        throw new UnreliableBehaviorError(pos + " greater than dataSize " + dataSize);
+      }
+      dataPosition = pos;
+      failNextReadIfPastEnd = false;
+    }
+
+    @Override
+    public void setDataSize(int size) {
+      if (size < dataSize) {
+        // Clear the inaccessible bytes, so they remain cleared if expanded again.
+        Arrays.fill(data, size, dataSize, (byte) 0);
+        if (tags != null) {
+          Arrays.fill(
+              tags,
+              alignToInt(size) / INT_SIZE_BYTES,
+              alignToInt(dataSize) / INT_SIZE_BYTES,
+              TAG_UNINITIALIZED);
+        }
+        removeBinders(size, dataSize);
+      }
+      setDataCapacityAtLeast(size);
+      dataSize = size;
+      if (dataPosition >= dataSize) {
+        dataPosition = dataSize;
+      }
+    }
+
+    @Override
+    public void setDataCapacityAtLeast(int newCapacity) {
+      // NOTE: Parcel only ever increases data capacity, as in ByteBuffer.
+      if (newCapacity > data.length) {
+        data = Arrays.copyOf(data, newCapacity);
+        if (tags != null) {
+          tags = Arrays.copyOf(tags, alignToInt(newCapacity) / INT_SIZE_BYTES);
+        }
+      }
+    }
+
+    /**
+     * Makes room for a value of {@code sizeBytes} (which must be aligned) at the current position,
+     * and returns its start position.
+     */
+    private int startWrite(int sizeBytes, byte tag) {
+      int start = dataPosition;
+      int endPosition = start + sizeBytes;
+      if (endPosition > data.length) {
+        // Parcel grows by 3/2 of the new size.
+        setDataCapacityAtLeast(endPosition * 3 / 2);
+      }
+      if (endPosition > dataSize) {
+        failNextReadIfPastEnd = true;
+        dataSize = endPosition;
+      }
+      // Clear any padding, and anything left behind by an overwritten value.
+      Arrays.fill(data, start, endPosition, (byte) 0);
+      if (tags != null) {
+        if (start % INT_SIZE_BYTES == 0) {
+          tags[start / INT_SIZE_BYTES] = tag;
+          fillTags(start + INT_SIZE_BYTES, sizeBytes - INT_SIZE_BYTES, TAG_CONTINUATION);
+        } else {
+          fillTags(start, sizeBytes, TAG_UNKNOWN);
+        }
+      }
+      removeBinders(start, endPosition);
+      dataPosition = endPosition;
+      return start;
+    }
+
+    private boolean startRead(int sizeBytes, byte tag) {
+      return startRead(sizeBytes, tag, /* checkTags= */ true);
+    }
+
+    /**
+     * Returns true if a value of {@code sizeBytes} can be read at the current position, or false if
+     * the default value should be returned. If {@link #typeChecked}, throws if reading the value
+     * would be unreliable.
+     */
+    private boolean startRead(int sizeBytes, byte tag, boolean checkTags) {
+      if (dataPosition >= dataSize) {
+        if (typeChecked && failNextReadIfPastEnd) {
+          throw new UnreliableBehaviorError(
+              "Did you forget to setDataPosition(0) before reading the parcel?");
+        }
+        return false;
+      }
+      if (dataPosition + sizeBytes > dataSize) {
+        if (typeChecked) {
+          throw new UnreliableBehaviorError(
+              String.format(
+                  Locale.US,
+                  "Looking for %s at position %d, but it is interrupted by the end of the buffer",
+                  TAG_NAMES[tag],
+                  dataPosition));
+        }
+        return false;
+      }
+      if (checkTags && tags != null && dataPosition % INT_SIZE_BYTES == 0) {
+        checkTags(sizeBytes, tag);
+      }
+      return true;
+    }
+
+    private void checkTags(int sizeBytes, byte tag) {
+      int firstWord = dataPosition / INT_SIZE_BYTES;
+      int endWord = firstWord + sizeBytes / INT_SIZE_BYTES;
+      byte mismatch = -1;
+      for (int i = firstWord; i < endWord; i++) {
+        byte expected = i == firstWord ? tag : TAG_CONTINUATION;
+        if (tags[i] == TAG_UNINITIALIZED) {
+          // While Parcel will treat these as zeros, in tests, this is almost always an error.
+          throw new UnreliableBehaviorError(
+              "Reading uninitialized data at position " + i * INT_SIZE_BYTES);
+        } else if (tags[i] != expected && tags[i] != TAG_UNKNOWN && mismatch == -1) {
+          mismatch = tags[i];
+        }
+      }
+      // The value must not continue past the bytes being read.
+      if (mismatch == -1
+          && endWord < alignToInt(dataSize) / INT_SIZE_BYTES
+          && tags[endWord] == TAG_CONTINUATION) {
+        mismatch = tags[firstWord];
+      }
+      if (mismatch != -1 && !isAllZeroes(dataPosition, dataPosition + sizeBytes)) {
+        // See ByteBuffer.readValue for why this is wrapped.
+        throw new RuntimeException(
+            new UnreliableBehaviorError(
+                String.format(
+                    Locale.US,
+                    "Looking for %s at position %d, found %s, "
+                        + "and it is non-portable to reinterpret it",
+                    TAG_NAMES[tag],
+                    dataPosition,
+                    TAG_NAMES[mismatch])));
+      }
+    }
+
+    private boolean isAllZeroes(int start, int end) {
+      for (int i = start; i < end; i++) {
+        if (data[i] != 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Sets the tags of the words overlapping the given range of bytes. */
+    private void fillTags(int start, int sizeBytes, byte tag) {
+      if (sizeBytes > 0) {
+        Arrays.fill(
+            tags, start / INT_SIZE_BYTES, alignToInt(start + sizeBytes) / INT_SIZE_BYTES, tag);
+      }
+    }
+
+    private void removeBinders(int start, int end) {
+      if (binders.isEmpty()) {
+        return;
+      }
+      Iterator<Integer> positions = binders.keySet().iterator();
+      while (positions.hasNext()) {
+        int position = positions.next();
+        if (position >= start && position < end) {
+          positions.remove();
+        }
+      }
+    }
+
+    private static int alignToInt(int unpaddedSizeBytes) {
+      return ((unpaddedSizeBytes + 3) / 4) * 4;
+    }
+
+    private int getInt(int position) {
+      return (data[position] & 0xff)
+          | (data[position + 1] & 0xff) << 8
+          | (data[position + 2] & 0xff) << 16
+          | (data[position + 3] & 0xff) << 24;
+    }
+
+    private void putInt(int position, int value) {
+      data[position] = (byte) value;
+      data[position + 1] = (byte) (value >>> 8);
+      data[position + 2] = (byte) (value >>> 16);
+      data[position + 3] = (byte) (value >>> 24);
+    }
+
+    private long getLong(int position) {
+      return (getInt(position) & 0xffffffffL) | (long) getInt(position + 4) << 32;
+    }
+
+    private void putLong(int position, long value) {
+      putInt(position, (int) value);
+      putInt(position + 4, (int) (value >>> 32));
+    }
+  }
+
   @Implementation(maxSdk = P)
   protected static FileDescriptor openFileDescriptor(String file, int mode) throws IOException {
     RandomAccessFile randomAccessFile =
@@ -1215,4 +1871,15 @@ public class ShadowParcel {
     return ReflectionHelpers.callConstructor(
         FileDescriptor.class, ClassParameter.from(int.class, fd));
   }
+
+  @ForType(Parcel.class)
+  private interface ParcelReflector {
+    /** Parcel's own, unshadowed {@link Parcel#obtain()}. */
+    @Static
+    Parcel $$robo$$android_os_Parcel$obtain();
+
+    /** An int before {@link android.os.Build.VERSION_CODES#LOLLIPOP}; unboxed as a long. */
+    @Accessor("mNativePtr")
+    long getNativePtr();
+  }
 }
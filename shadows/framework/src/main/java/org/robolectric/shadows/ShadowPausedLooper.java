@@ -89,14 +89,7 @@ public final class ShadowPausedLooper extends ShadowLooper {
 
   @Override
   public void idleFor(long time, TimeUnit timeUnit) {
-    long endingTimeMs = SystemClock.uptimeMillis() + timeUnit.toMillis(time);
-    long nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
-    while (nextScheduledTimeMs != 0 && nextScheduledTimeMs <= endingTimeMs) {
-      SystemClock.setCurrentTimeMillis(nextScheduledTimeMs);
-      idle();
-      nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
-    }
-    SystemClock.setCurrentTimeMillis(endingTimeMs);
+    executeOnLooper(new IdlingForRunnable(SystemClock.uptimeMillis() + timeUnit.toMillis(time)));
   }
 
   @Override
@@ -296,15 +289,48 @@ public final class ShadowPausedLooper extends ShadowLooper {
     }
   }
 
+  /** Runs every message which is due. Must be called on the looper's thread. */
+  private void runDueMessages() {
+    while (!shadowQueue().isIdle()) {
+      Message msg = shadowQueue().getNext();
+      msg.getTarget().dispatchMessage(msg);
+      shadowMsg(msg).recycleUnchecked();
+    }
+  }
+
   private class IdlingRunnable extends ControlRunnable {
 
     @Override
     public void run() {
-      while (!shadowQueue().isIdle()) {
-        Message msg = shadowQueue().getNext();
-        msg.getTarget().dispatchMessage(msg);
-        shadowMsg(msg).recycleUnchecked();
+      runDueMessages();
+      runLatch.countDown();
+    }
+  }
+
+  /**
+   * Advances the clock straight to each scheduled message in turn until the given time, running
+   * due messages at each step.
+   *
+   * <p>The whole span runs in one go on the looper's thread, rather than handing control to it
+   * once per step.
+   */
+  private class IdlingForRunnable extends ControlRunnable {
+
+    private final long endingTimeMs;
+
+    private IdlingForRunnable(long endingTimeMs) {
+      this.endingTimeMs = endingTimeMs;
+    }
+
+    @Override
+    public void run() {
+      long nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
+      while (nextScheduledTimeMs != 0 && nextScheduledTimeMs <= endingTimeMs) {
+        SystemClock.setCurrentTimeMillis(nextScheduledTimeMs);
+        runDueMessages();
+        nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
       }
+      SystemClock.setCurrentTimeMillis(endingTimeMs);
       runLatch.countDown();
     }
   }
@@ -52,8 +52,7 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
     invokeConstructor(MessageQueue.class, realQueue, from(boolean.class, quitAllowed));
     int ptr = (int) nativeQueueRegistry.register(this);
     reflector(ReflectorMessageQueue.class, realQueue).setPtr(ptr);
-    clockListener =
-        newCurrentTimeMillis -> nativeWake(ptr);
+    clockListener = newCurrentTimeMillis -> wakeIfDue();
     ShadowPausedSystemClock.addListener(clockListener);
   }
 
@@ -106,6 +105,18 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
     }
   }
 
+  /**
+   * Wakes the looper if it's waiting for a message, and the clock has advanced far enough for one
+   * to be due. Loopers with nothing to do are left waiting.
+   */
+  private void wakeIfDue() {
+    synchronized (realQueue) {
+      if (isPolling && !isIdle()) {
+        realQueue.notifyAll();
+      }
+    }
+  }
+
   @Implementation(maxSdk = JELLY_BEAN_MR1)
   protected void nativeWake(int ptr) {
     synchronized (realQueue) {
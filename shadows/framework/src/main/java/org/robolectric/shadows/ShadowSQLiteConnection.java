@@ -31,7 +31,6 @@ import com.almworks.sqlite4java.SQLiteStatement;
 import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,12 +42,16 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.Resetter;
 import org.robolectric.shadows.util.SQLiteLibraryLoader;
+import org.robolectric.util.PerfStatsCollector;
 
 @Implements(value = android.database.sqlite.SQLiteConnection.class, isInAndroidSdk = false)
 public class ShadowSQLiteConnection {
@@ -353,13 +356,22 @@ public class ShadowSQLiteConnection {
 // VisibleForTesting
 static class Connections {
 
+  /** Matches the busy timeout Android configures in android_database_SQLiteConnection.cpp. */
+  private static final long BUSY_TIMEOUT_MS = 2500;
+
+  private static final PerfStatsCollector.MetricHandle EXECUTOR_WAIT_METRIC =
+      PerfStatsCollector.getInstance().metricHandle("wait for SQLite connection thread");
+  private static final PerfStatsCollector.Counter BATCHED_OPERATION_COUNTER =
+      PerfStatsCollector.getInstance().counter("batched SQLite operation");
+
   private final Object lock = new Object();
   private final AtomicLong pointerCounter = new AtomicLong(0);
   private final Map<Long, SQLiteStatement> statementsMap = new HashMap<>();
   private final Map<Long, SQLiteConnection> connectionsMap = new HashMap<>();
   private final Map<Long, List<Long>> statementPtrsForConnection = new HashMap<>();
-
-  private ExecutorService dbExecutor = Executors.newSingleThreadExecutor();
+  private final Map<Long, ConnectionThread> threadsForConnection = new HashMap<>();
+  private final Map<Long, Boolean> readOnlyStatements = new HashMap<>();
+  private final Map<String, ReadWriteLock> databaseLocks = new HashMap<>();
 
   SQLiteConnection getConnection(final long connectionPtr) {
     synchronized (lock) {
@@ -388,25 +400,56 @@ static class Connections {
     }
   }
 
+  private ConnectionThread getConnectionThread(final long connectionPtr) {
+    synchronized (lock) {
+      getConnection(connectionPtr); // check connection
+      return threadsForConnection.get(connectionPtr);
+    }
+  }
+
   long open(final String path) {
+    final boolean inMemory = useInMemoryDatabase.get() || IN_MEMORY_PATH.equals(path);
+    final long connectionPtr = pointerCounter.incrementAndGet();
+    final ReadWriteLock databaseLock;
     synchronized (lock) {
-      final SQLiteConnection dbConnection = execute("open SQLite connection", new Callable<SQLiteConnection>() {
-        @Override
-        public SQLiteConnection call() throws Exception {
-          SQLiteConnection connection = useInMemoryDatabase.get() || IN_MEMORY_PATH.equals(path)
-                  ? new SQLiteConnection()
-                  : new SQLiteConnection(new File(path));
+      // In-memory databases are private to their connection, so need no lock shared with others.
+      databaseLock =
+          inMemory
+              ? new ReentrantReadWriteLock()
+              : databaseLocks.computeIfAbsent(
+                  new File(path).getAbsolutePath(), p -> new ReentrantReadWriteLock());
+    }
+    final ConnectionThread connectionThread = new ConnectionThread(connectionPtr, databaseLock);
 
-          connection.open();
-          return connection;
-        }
-      });
+    final SQLiteConnection dbConnection;
+    try {
+      dbConnection =
+          connectionThread.execute(
+              "open SQLite connection",
+              new Callable<SQLiteConnection>() {
+                @Override
+                public SQLiteConnection call() throws Exception {
+                  SQLiteConnection connection =
+                      inMemory ? new SQLiteConnection() : new SQLiteConnection(new File(path));
+
+                  connection.open();
+                  // Other connections to the same file now run concurrently, so wait for their
+                  // locks as Android does rather than failing immediately.
+                  connection.setBusyTimeout(BUSY_TIMEOUT_MS);
+                  return connection;
+                }
+              });
+    } catch (RuntimeException e) {
+      connectionThread.executor.shutdown();
+      throw e;
+    }
 
-      final long connectionPtr = pointerCounter.incrementAndGet();
+    synchronized (lock) {
       connectionsMap.put(connectionPtr, dbConnection);
       statementPtrsForConnection.put(connectionPtr, new ArrayList<>());
-      return connectionPtr;
+      threadsForConnection.put(connectionPtr, connectionThread);
     }
+    return connectionPtr;
   }
 
   long prepareStatement(final long connectionPtr, final String sql) {
@@ -415,70 +458,90 @@ static class Connections {
       return IGNORED_REINDEX_STMT;
     }
 
-    synchronized (lock) {
-      final SQLiteConnection connection = getConnection(connectionPtr);
-      final SQLiteStatement statement = execute("prepare statement", new Callable<SQLiteStatement>() {
-        @Override
-        public SQLiteStatement call() throws Exception {
-          return connection.prepare(sql);
-        }
-      });
+    final SQLiteConnection connection = getConnection(connectionPtr);
+    final boolean[] readOnly = new boolean[1];
+    final SQLiteStatement statement = getConnectionThread(connectionPtr).execute("prepare statement", new Callable<SQLiteStatement>() {
+      @Override
+      public SQLiteStatement call() throws Exception {
+        SQLiteStatement statement = connection.prepare(sql);
+        // Cached so that the caller can choose a lock without another trip to the connection thread.
+        readOnly[0] = statement.isReadOnly();
+        return statement;
+      }
+    });
 
+    synchronized (lock) {
       final long statementPtr = pointerCounter.incrementAndGet();
       statementsMap.put(statementPtr, statement);
+      readOnlyStatements.put(statementPtr, readOnly[0]);
       statementPtrsForConnection.get(connectionPtr).add(statementPtr);
       return statementPtr;
     }
   }
 
   void close(final long connectionPtr) {
-    synchronized (lock) {
-      final SQLiteConnection connection = getConnection(connectionPtr);
-        execute("close connection", new Callable<Void>() {
+    final SQLiteConnection connection = getConnection(connectionPtr);
+    final ConnectionThread connectionThread = getConnectionThread(connectionPtr);
+    try {
+      connectionThread.execute("close connection", new Callable<Void>() {
         @Override
         public Void call() throws Exception {
           connection.dispose();
           return null;
         }
       });
-      connectionsMap.remove(connectionPtr);
-      statementPtrsForConnection.remove(connectionPtr);
+    } finally {
+      connectionThread.executor.shutdown();
+      synchronized (lock) {
+        connectionsMap.remove(connectionPtr);
+        threadsForConnection.remove(connectionPtr);
+        List<Long> statementPtrs = statementPtrsForConnection.remove(connectionPtr);
+        for (Long statementPtr : statementPtrs) {
+          statementsMap.remove(statementPtr);
+          readOnlyStatements.remove(statementPtr);
+        }
+      }
     }
   }
 
   void reset() {
-    ExecutorService oldDbExecutor;
-    Collection<SQLiteConnection> openConnections;
+    Map<Long, SQLiteConnection> openConnections;
+    Map<Long, ConnectionThread> connectionThreads;
 
     synchronized (lock) {
-      oldDbExecutor = dbExecutor;
-      openConnections = new ArrayList<>(connectionsMap.values());
+      openConnections = new HashMap<>(connectionsMap);
+      connectionThreads = new HashMap<>(threadsForConnection);
 
-      dbExecutor = Executors.newSingleThreadExecutor();
       connectionsMap.clear();
       statementsMap.clear();
       statementPtrsForConnection.clear();
+      threadsForConnection.clear();
+      readOnlyStatements.clear();
+      databaseLocks.clear();
     }
 
-    shutdownDbExecutor(oldDbExecutor, openConnections);
-  }
-
-  private static void shutdownDbExecutor(ExecutorService executorService, Collection<SQLiteConnection> connections) {
-    for (final SQLiteConnection connection : connections) {
-      getFuture("close connection on reset", executorService.submit(new Callable<Void>() {
+    List<Future<Void>> futures = new ArrayList<>();
+    for (Map.Entry<Long, SQLiteConnection> entry : openConnections.entrySet()) {
+      final SQLiteConnection connection = entry.getValue();
+      ExecutorService executorService = connectionThreads.get(entry.getKey()).executor;
+      futures.add(executorService.submit(new Callable<Void>() {
         @Override
         public Void call() throws Exception {
           connection.dispose();
           return null;
         }
       }));
+      executorService.shutdown();
     }
-
-    executorService.shutdown();
-    try {
-      executorService.awaitTermination(30, TimeUnit.SECONDS);
-    } catch (InterruptedException e) {
-      throw new RuntimeException(e);
+    for (Future<Void> future : futures) {
+      getFuture("close connection on reset", future);
+    }
+    for (ConnectionThread connectionThread : connectionThreads.values()) {
+      try {
+        connectionThread.executor.awaitTermination(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
@@ -487,37 +550,45 @@ static class Connections {
       return;
     }
 
+    final SQLiteStatement statement;
     synchronized (lock) {
-      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
+      statement = getStatement(connectionPtr, statementPtr);
       statementsMap.remove(statementPtr);
-
-        execute("finalize statement", new Callable<Void>() {
-        @Override
-        public Void call() throws Exception {
-          statement.dispose();
-          return null;
-        }
-      });
+      readOnlyStatements.remove(statementPtr);
+      statementPtrsForConnection.get(connectionPtr).remove(statementPtr);
     }
+
+    getConnectionThread(connectionPtr).execute("finalize statement", new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        statement.dispose();
+        return null;
+      }
+    });
   }
 
   void cancel(final long connectionPtr) {
+    final List<SQLiteStatement> statements = new ArrayList<>();
     synchronized (lock) {
       getConnection(connectionPtr); // check connection
 
       for (Long statementPtr : statementPtrsForConnection.get(connectionPtr)) {
         final SQLiteStatement statement = statementsMap.get(statementPtr);
         if (statement != null) {
-            execute("cancel", new Callable<Void>() {
-            @Override
-            public Void call() throws Exception {
-              statement.cancel();
-              return null;
-            }
-          });
+          statements.add(statement);
         }
       }
     }
+
+    for (final SQLiteStatement statement : statements) {
+      getConnectionThread(connectionPtr).execute("cancel", new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          statement.cancel();
+          return null;
+        }
+      });
+    }
   }
 
   int getParameterCount(final long connectionPtr, final long statementPtr) {
@@ -538,12 +609,10 @@ static class Connections {
       return true;
     }
 
-    return executeStatementOperation(connectionPtr, statementPtr, "call isReadOnly", new StatementOperation<Boolean>() {
-      @Override
-      public Boolean call(final SQLiteStatement statement) throws Exception {
-        return statement.isReadOnly();
-      }
-    });
+    synchronized (lock) {
+      getStatement(connectionPtr, statementPtr); // check statement
+      return readOnlyStatements.get(statementPtr);
+    }
   }
 
   long executeForLong(final long connectionPtr, final long statementPtr) {
@@ -603,7 +672,7 @@ static class Connections {
   }
 
   void bindNull(final long connectionPtr, final long statementPtr, final int index) {
-    executeStatementOperation(connectionPtr, statementPtr, "bind null at index " + index, new StatementOperation<Void>() {
+    batchStatementOperation(connectionPtr, statementPtr, "bind null at index " + index, new StatementOperation<Void>() {
       @Override
       public Void call(final SQLiteStatement statement) throws Exception {
         statement.bindNull(index);
@@ -613,7 +682,7 @@ static class Connections {
   }
 
   void bindLong(final long connectionPtr, final long statementPtr, final int index, final long value) {
-    executeStatementOperation(connectionPtr, statementPtr, "bind long at index " + index + " with value " + value, new StatementOperation<Void>() {
+    batchStatementOperation(connectionPtr, statementPtr, "bind long at index " + index + " with value " + value, new StatementOperation<Void>() {
       @Override
       public Void call(final SQLiteStatement statement) throws Exception {
         statement.bind(index, value);
@@ -623,7 +692,7 @@ static class Connections {
   }
 
   void bindDouble(final long connectionPtr, final long statementPtr, final int index, final double value) {
-    executeStatementOperation(connectionPtr, statementPtr, "bind double at index " + index + " with value " + value, new StatementOperation<Void>() {
+    batchStatementOperation(connectionPtr, statementPtr, "bind double at index " + index + " with value " + value, new StatementOperation<Void>() {
       @Override
       public Void call(final SQLiteStatement statement) throws Exception {
         statement.bind(index, value);
@@ -633,7 +702,7 @@ static class Connections {
   }
 
   void bindString(final long connectionPtr, final long statementPtr, final int index, final String value) {
-    executeStatementOperation(connectionPtr, statementPtr, "bind string at index " + index, new StatementOperation<Void>() {
+    batchStatementOperation(connectionPtr, statementPtr, "bind string at index " + index, new StatementOperation<Void>() {
       @Override
       public Void call(final SQLiteStatement statement) throws Exception {
         statement.bind(index, value);
@@ -643,7 +712,7 @@ static class Connections {
   }
 
   void bindBlob(final long connectionPtr, final long statementPtr, final int index, final byte[] value) {
-    executeStatementOperation(connectionPtr, statementPtr, "bind blob at index " + index, new StatementOperation<Void>() {
+    batchStatementOperation(connectionPtr, statementPtr, "bind blob at index " + index, new StatementOperation<Void>() {
       @Override
       public Void call(final SQLiteStatement statement) throws Exception {
         statement.bind(index, value);
@@ -653,33 +722,25 @@ static class Connections {
   }
 
   int executeForChangedRowCount(final long connectionPtr, final long statementPtr) {
-    synchronized (lock) {
-      final SQLiteConnection connection = getConnection(connectionPtr);
-      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-
-      return execute("execute for changed row count", new Callable<Integer>() {
-        @Override
-        public Integer call() throws Exception {
-          statement.stepThrough();
-          return connection.getChanges();
-        }
-      });
-    }
+    final SQLiteConnection connection = getConnection(connectionPtr);
+    return executeStatementOperation(connectionPtr, statementPtr, "execute for changed row count", new StatementOperation<Integer>() {
+      @Override
+      public Integer call(final SQLiteStatement statement) throws Exception {
+        statement.stepThrough();
+        return connection.getChanges();
+      }
+    });
   }
 
   long executeForLastInsertedRowId(final long connectionPtr, final long statementPtr) {
-    synchronized (lock) {
-      final SQLiteConnection connection = getConnection(connectionPtr);
-      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-
-      return execute("execute for last inserted row ID", new Callable<Long>() {
-        @Override
-        public Long call() throws Exception {
-          statement.stepThrough();
-          return connection.getLastInsertId();
-        }
-      });
-    }
+    final SQLiteConnection connection = getConnection(connectionPtr);
+    return executeStatementOperation(connectionPtr, statementPtr, "execute for last inserted row ID", new StatementOperation<Long>() {
+      @Override
+      public Long call(final SQLiteStatement statement) throws Exception {
+        statement.stepThrough();
+        return connection.getLastInsertId();
+      }
+    });
   }
 
   long executeForCursorWindow(final long connectionPtr, final long statementPtr, final long windowPtr) {
@@ -692,7 +753,7 @@ static class Connections {
   }
 
   void resetStatementAndClearBindings(final long connectionPtr, final long statementPtr) {
-    executeStatementOperation(connectionPtr, statementPtr, "reset statement", new StatementOperation<Void>() {
+    batchStatementOperation(connectionPtr, statementPtr, "reset statement", new StatementOperation<Void>() {
       @Override
       public Void call(final SQLiteStatement statement) throws Exception {
         statement.reset(true);
@@ -705,27 +766,130 @@ static class Connections {
     T call(final SQLiteStatement statement) throws Exception;
   }
 
+  /**
+   * Runs an operation on the statement's connection thread. Statements which may write hold the
+   * database's write lock, and read-only statements its read lock, so that readers of a database
+   * run concurrently with one another but not with a writer.
+   */
   private <T> T executeStatementOperation(final long connectionPtr,
                                           final long statementPtr,
                                           final String comment,
                                           final StatementOperation<T> statementOperation) {
+    final SQLiteStatement statement;
+    final boolean readOnly;
     synchronized (lock) {
-      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-      return execute(comment, new Callable<T>() {
+      statement = getStatement(connectionPtr, statementPtr);
+      readOnly = readOnlyStatements.get(statementPtr);
+    }
+    ConnectionThread connectionThread = getConnectionThread(connectionPtr);
+    Lock databaseLock =
+        readOnly
+            ? connectionThread.databaseLock.readLock()
+            : connectionThread.databaseLock.writeLock();
+    databaseLock.lock();
+    try {
+      return connectionThread.execute(comment, new Callable<T>() {
         @Override
         public T call() throws Exception {
           return statementOperation.call(statement);
         }
       });
+    } finally {
+      databaseLock.unlock();
     }
   }
 
   /**
-   * Any Callable passed in to execute must not synchronize on lock, as this will result in a deadlock
+   * Queues an operation whose result isn't needed to run on the statement's connection thread just
+   * before the next operation which does, saving a thread hop for each bind. Any failure is
+   * reported by that next operation.
    */
-  private <T> T execute(final String comment, final Callable<T> work) {
-    synchronized (lock) {
-      return getFuture(comment, dbExecutor.submit(work));
+  private void batchStatementOperation(final long connectionPtr,
+                                       final long statementPtr,
+                                       final String comment,
+                                       final StatementOperation<Void> statementOperation) {
+    final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
+    getConnectionThread(connectionPtr).batch(comment, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        return statementOperation.call(statement);
+      }
+    });
+  }
+
+  /**
+   * The single thread on which sqlite4java requires all operations on a connection to run, and
+   * the operations batched to run on it.
+   */
+  private static class ConnectionThread {
+    private final ExecutorService executor;
+    private final ReadWriteLock databaseLock;
+    private final List<BatchedOperation> batchedOperations = new ArrayList<>();
+
+    ConnectionThread(final long connectionPtr, ReadWriteLock databaseLock) {
+      this.databaseLock = databaseLock;
+      this.executor =
+          Executors.newSingleThreadExecutor(
+              r -> {
+                Thread thread = new Thread(r, "SQLite connection " + connectionPtr);
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+
+    synchronized void batch(String comment, Callable<Void> work) {
+      batchedOperations.add(new BatchedOperation(comment, work));
+    }
+
+    /**
+     * Any Callable passed in to execute must not synchronize on Connections' lock, as this will
+     * result in a deadlock
+     */
+    <T> T execute(final String comment, final Callable<T> work) {
+      final List<BatchedOperation> batch;
+      synchronized (this) {
+        batch = batchedOperations.isEmpty() ? null : new ArrayList<>(batchedOperations);
+        batchedOperations.clear();
+      }
+      final PerfStatsCollector.Event waitEvent =
+          PerfStatsCollector.getInstance().startEvent(EXECUTOR_WAIT_METRIC);
+      return getFuture(comment, executor.submit(new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          waitEvent.finished();
+          if (batch != null) {
+            for (BatchedOperation operation : batch) {
+              BATCHED_OPERATION_COUNTER.increment();
+              try {
+                operation.work.call();
+              } catch (SQLiteException e) {
+                throw new BatchedOperationException(operation.comment, e);
+              }
+            }
+          }
+          return work.call();
+        }
+      }));
+    }
+  }
+
+  private static class BatchedOperation {
+    private final String comment;
+    private final Callable<Void> work;
+
+    BatchedOperation(String comment, Callable<Void> work) {
+      this.comment = comment;
+      this.work = work;
+    }
+  }
+
+  /** Reports the failure of a batched operation, which may differ from the one being executed. */
+  private static class BatchedOperationException extends Exception {
+    private final String comment;
+
+    BatchedOperationException(String comment, SQLiteException cause) {
+      super(cause);
+      this.comment = comment;
     }
   }
 
@@ -735,8 +899,13 @@ static class Connections {
       // No need to catch cancellationexception - we never cancel these futures
     } catch (ExecutionException e) {
       Throwable t = e.getCause();
+      String failedComment = comment;
+      if (t instanceof BatchedOperationException) {
+        failedComment = ((BatchedOperationException) t).comment;
+        t = t.getCause();
+      }
       if (t instanceof SQLiteException) {
-        final RuntimeException sqlException = getSqliteException("Cannot " + comment, ((SQLiteException) t).getBaseErrorCode());
+        final RuntimeException sqlException = getSqliteException("Cannot " + failedComment, ((SQLiteException) t).getBaseErrorCode());
         sqlException.initCause(e);
         throw sqlException;
       } else {
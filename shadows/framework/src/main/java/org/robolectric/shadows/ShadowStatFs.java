@@ -131,7 +131,7 @@ public class ShadowStatFs {
     stats.put(path, new Stats(blockCount, freeBlocks, availableBlocks));
   }
 
-  @Resetter
+  @Resetter(threadSafe = true)
   public static void reset() {
     stats.clear();
   }
@@ -6,8 +6,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Collections;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -30,14 +28,35 @@ import java.util.concurrent.atomic.AtomicInteger;
  *
  * reflector(_Foo_.class, new Foo()).getName();
  * </pre>
+ *
+ * <p>Accessor classes are generated once per interface. Setting the {@code
+ * robolectric.reflectorCache.dir} system property also persists their bytecode across sandboxes and
+ * JVMs; see {@link ReflectorClassCache}.
  */
 @SuppressWarnings("NewApi")
 public class Reflector {
 
   private static final boolean DEBUG = false;
   private static final AtomicInteger COUNTER = new AtomicInteger();
-  private static final Map<Class<?>, Constructor<?>> CACHE =
-      Collections.synchronizedMap(new WeakerHashMap<>());
+  private static final ReflectorClassCache CLASS_CACHE =
+      ReflectorClassCache.createFromSystemProperties();
+
+  // Values live as long as the interface's class loader, which also loads the reflector class.
+  private static final ClassValue<Constructor<?>> CACHE =
+      new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> iClass) {
+          Class<?> targetClass = determineTargetClass(iClass);
+          try {
+            Constructor<?> ctor =
+                createReflectorClass(iClass, targetClass).getConstructor(targetClass);
+            ctor.setAccessible(true);
+            return ctor;
+          } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      };
 
   /**
    * Returns an object which provides accessors for invoking otherwise inaccessible static methods
@@ -57,23 +76,10 @@ public class Reflector {
    * @param target the target object
    */
   public static <T> T reflector(Class<T> iClass, Object target) {
-    Class<?> targetClass = determineTargetClass(iClass);
-
     Constructor<? extends T> ctor = (Constructor<? extends T>) CACHE.get(iClass);
     try {
-      if (ctor == null) {
-        Class<? extends T> reflectorClass = createReflectorClass(iClass, targetClass);
-        ctor = reflectorClass.getConstructor(targetClass);
-        ctor.setAccessible(true);
-      }
-
-      CACHE.put(iClass, ctor);
-
       return ctor.newInstance(target);
-    } catch (NoSuchMethodException
-        | InstantiationException
-        | IllegalAccessException
-        | InvocationTargetException e) {
+    } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
       throw new IllegalStateException(e);
     }
   }
@@ -103,7 +109,10 @@ public class Reflector {
   private static <T> Class<? extends T> createReflectorClass(
       Class<T> iClass, Class<?> targetClass) {
     String reflectorClassName = iClass.getName() + "$$Reflector" + COUNTER.getAndIncrement();
-    byte[] bytecode = getBytecode(iClass, targetClass, reflectorClassName);
+    byte[] bytecode =
+        CLASS_CACHE == null
+            ? getBytecode(iClass, targetClass, reflectorClassName)
+            : CLASS_CACHE.getBytecode(iClass, targetClass, reflectorClassName);
 
     if (DEBUG) {
       File file = new File("/tmp", reflectorClassName + ".class");
@@ -146,7 +155,7 @@ public class Reflector {
     return proxyClass;
   }
 
-  private static <T> byte[] getBytecode(
+  static <T> byte[] getBytecode(
       Class<T> iClass, Class<?> targetClass, String reflectorClassName) {
     ReflectorClassWriter writer = new ReflectorClassWriter(iClass, targetClass, reflectorClassName);
     writer.write();
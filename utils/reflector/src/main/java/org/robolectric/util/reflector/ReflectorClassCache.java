@@ -0,0 +1,186 @@
+package org.robolectric.util.reflector;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+/**
+ * On-disk cache of generated reflector bytecode, shared by every JVM which points at the same
+ * directory.
+ *
+ * <p>Entries are keyed by a hash of everything {@link ReflectorClassWriter} reads: the reflector
+ * interface's methods and their annotations, the target class's name, and the types that {@link
+ * WithType} parameters resolve to. Entries are stored under a canonical class name and renamed as
+ * they're loaded, so each reflector class can still be given a unique name. Entries are written to
+ * a temporary file and atomically moved into place, so concurrent writers never observe partially
+ * written classes.
+ *
+ * <p>The cache is enabled by setting the {@code robolectric.reflectorCache.dir} system property.
+ */
+@SuppressWarnings("NewApi")
+class ReflectorClassCache {
+
+  /** Bump whenever {@link ReflectorClassWriter} output changes. */
+  static final int FORMAT_VERSION = 1;
+
+  private static final String CACHE_DIR = "robolectric.reflectorCache.dir";
+  private static final String ENTRY_SUFFIX = ".class";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final Path cacheDir;
+
+  /** Returns the cache configured through system properties, or null if caching is disabled. */
+  static ReflectorClassCache createFromSystemProperties() {
+    String cacheDir = System.getProperty(CACHE_DIR);
+    if (cacheDir == null || cacheDir.isEmpty()) {
+      return null;
+    }
+    return new ReflectorClassCache(Paths.get(cacheDir));
+  }
+
+  ReflectorClassCache(Path cacheDir) {
+    this.cacheDir = cacheDir;
+  }
+
+  /**
+   * Returns bytecode for a reflector class with the given name, loading it from the cache if
+   * possible, and otherwise generating and storing it.
+   */
+  byte[] getBytecode(Class<?> iClass, Class<?> targetClass, String reflectorClassName) {
+    String canonicalName = iClass.getName() + "$$Reflector";
+    Path entry = entryPath(keyFor(iClass, targetClass));
+
+    byte[] bytecode = read(entry);
+    if (bytecode == null) {
+      bytecode = Reflector.getBytecode(iClass, targetClass, canonicalName);
+      write(entry, bytecode);
+    }
+    return rename(bytecode, canonicalName, reflectorClassName);
+  }
+
+  /** Returns the key for the reflector class generated for the given interface and target. */
+  static String keyFor(Class<?> iClass, Class<?> targetClass) {
+    List<String> methods = new ArrayList<>();
+    for (Method method : iClass.getMethods()) {
+      if (method.isDefault()) continue;
+
+      StringBuilder buf = new StringBuilder(method.toString());
+      for (Annotation annotation : method.getAnnotations()) {
+        buf.append(' ').append(annotation);
+      }
+      for (Annotation[] paramAnnotations : method.getParameterAnnotations()) {
+        buf.append(" (");
+        for (Annotation annotation : paramAnnotations) {
+          buf.append(annotation);
+          if (annotation instanceof WithType) {
+            buf.append('=').append(resolves(((WithType) annotation).value(), iClass));
+          }
+        }
+        buf.append(')');
+      }
+      methods.add(buf.toString());
+    }
+    // getMethods() returns methods in no particular order
+    Collections.sort(methods);
+
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    digest.update(("v" + FORMAT_VERSION + "\n").getBytes(UTF_8));
+    digest.update((iClass.getName() + " " + iClass.getModifiers() + "\n").getBytes(UTF_8));
+    digest.update((targetClass.getName() + "\n").getBytes(UTF_8));
+    for (String method : methods) {
+      digest.update((method + "\n").getBytes(UTF_8));
+    }
+
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) {
+      key.append(String.format("%02x", b));
+    }
+    return key.toString();
+  }
+
+  private static boolean resolves(String className, Class<?> iClass) {
+    try {
+      Class.forName(className, false, iClass.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static byte[] rename(byte[] bytecode, String fromName, String toName) {
+    ClassReader reader = new ClassReader(bytecode);
+    ClassWriter writer = new ClassWriter(reader, 0);
+    reader.accept(
+        new ClassRemapper(
+            writer, new SimpleRemapper(fromName.replace('.', '/'), toName.replace('.', '/'))),
+        0);
+    return writer.toByteArray();
+  }
+
+  private byte[] read(Path entry) {
+    try {
+      byte[] bytecode = Files.readAllBytes(entry);
+      new ClassReader(bytecode); // fail now on a corrupt entry, rather than when renaming it
+      return bytecode;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | RuntimeException e) {
+      // the cache is only ever an optimization, so just regenerate the class
+      return null;
+    }
+  }
+
+  private void write(Path entry, byte[] bytecode) {
+    Path tempFile = null;
+    try {
+      Files.createDirectories(entry.getParent());
+      tempFile = Files.createTempFile(entry.getParent(), "reflector", TEMP_SUFFIX);
+      Files.write(tempFile, bytecode);
+      try {
+        Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+      tempFile = null;
+    } catch (FileAlreadyExistsException e) {
+      // another process won the race, and wrote identical content
+    } catch (IOException e) {
+      // the cache is only ever an optimization
+    } finally {
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  private Path entryPath(String key) {
+    return cacheDir.resolve(key.substring(0, 2)).resolve(key.substring(2) + ENTRY_SUFFIX);
+  }
+}
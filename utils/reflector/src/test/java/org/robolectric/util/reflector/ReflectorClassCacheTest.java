@@ -0,0 +1,94 @@
+package org.robolectric.util.reflector;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.robolectric.util.reflector.ReflectorTest.SomeClass;
+import org.robolectric.util.reflector.ReflectorTest._SomeClass_;
+
+@RunWith(JUnit4.class)
+public class ReflectorClassCacheTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path cacheDir;
+  private ReflectorClassCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = tempFolder.newFolder("cache").toPath();
+    cache = new ReflectorClassCache(cacheDir);
+  }
+
+  @Test
+  public void getBytecode_shouldNameClassAsRequested() throws Exception {
+    byte[] bytecode = cache.getBytecode(_SomeClass_.class, SomeClass.class, "a.b.C");
+
+    assertThat(new ClassReader(bytecode).getClassName()).isEqualTo("a/b/C");
+  }
+
+  @Test
+  public void getBytecode_shouldReuseStoredBytecode() throws Exception {
+    cache.getBytecode(_SomeClass_.class, SomeClass.class, "a.b.C");
+    Path entry = onlyEntry();
+    FileTime written = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(entry, written);
+
+    byte[] bytecode =
+        new ReflectorClassCache(cacheDir).getBytecode(_SomeClass_.class, SomeClass.class, "a.b.D");
+
+    assertThat(new ClassReader(bytecode).getClassName()).isEqualTo("a/b/D");
+    assertThat(entries()).containsExactly(entry);
+    assertThat(Files.getLastModifiedTime(entry)).isEqualTo(written);
+  }
+
+  @Test
+  public void getBytecode_shouldRegenerateCorruptEntries() throws Exception {
+    cache.getBytecode(_SomeClass_.class, SomeClass.class, "a.b.C");
+    Path entry = onlyEntry();
+    Files.write(entry, new byte[] {1, 2, 3});
+
+    byte[] bytecode = cache.getBytecode(_SomeClass_.class, SomeClass.class, "a.b.D");
+
+    assertThat(new ClassReader(bytecode).getClassName()).isEqualTo("a/b/D");
+    new ClassReader(Files.readAllBytes(entry));
+  }
+
+  @Test
+  public void keyFor_shouldDependOnInterfaceAndTarget() throws Exception {
+    assertThat(ReflectorClassCache.keyFor(_SomeClass_.class, SomeClass.class))
+        .isEqualTo(ReflectorClassCache.keyFor(_SomeClass_.class, SomeClass.class));
+    assertThat(ReflectorClassCache.keyFor(_SomeClass_.class, SomeClass.class))
+        .isNotEqualTo(ReflectorClassCache.keyFor(_SomeClass_.class, Object.class));
+    assertThat(ReflectorClassCache.keyFor(_SomeClass_.class, SomeClass.class))
+        .isNotEqualTo(ReflectorClassCache.keyFor(_OtherClass_.class, SomeClass.class));
+  }
+
+  private Path onlyEntry() throws Exception {
+    List<Path> entries = entries();
+    assertThat(entries).hasSize(1);
+    return entries.get(0);
+  }
+
+  private List<Path> entries() throws Exception {
+    try (Stream<Path> paths = Files.walk(cacheDir)) {
+      return paths.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+  }
+
+  @ForType(SomeClass.class)
+  interface _OtherClass_ {
+    String someMethod(String a, String b);
+  }
+}
@@ -94,6 +94,12 @@ public class ReflectorTest {
     assertThat(actual).isSameInstanceAs(expected);
   }
 
+  @Test
+  public void reflector_shouldGenerateOneClassPerInterface() throws Exception {
+    assertThat(reflector(_SomeClass_.class, new SomeClass("d")).getClass())
+        .isSameInstanceAs(reflector.getClass());
+  }
+
   @Ignore
   @Test
   public void methodPerf() throws Exception {
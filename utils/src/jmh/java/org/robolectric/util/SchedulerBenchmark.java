@@ -0,0 +1,68 @@
+package org.robolectric.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Scheduler} operations while {@link #pending} other runnables are queued far in
+ * the future, as with an app's timeouts and periodic work.
+ *
+ * <pre>
+ * ./gradlew :utils:jmh -Pjmh.include=SchedulerBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerBenchmark {
+
+  private static final long FRAME_MILLIS = 16;
+  private static final long PENDING_DELAY_MILLIS = TimeUnit.DAYS.toMillis(365_000);
+
+  @Param({"10", "1000"})
+  public int pending;
+
+  private Scheduler scheduler;
+  private final Runnable frame = () -> {};
+
+  @Setup
+  public void setUp() {
+    scheduler = new Scheduler();
+    scheduler.pause();
+    for (int i = 0; i < pending; i++) {
+      scheduler.postDelayed(() -> {}, PENDING_DELAY_MILLIS + i);
+    }
+  }
+
+  /** Posts a frame callback and cancels it again, as views do when invalidated repeatedly. */
+  @Benchmark
+  public void postAndRemove() {
+    scheduler.postDelayed(frame, FRAME_MILLIS);
+    scheduler.remove(frame);
+  }
+
+  /** Posts a frame callback and advances the clock to run it. */
+  @Benchmark
+  public boolean postAndAdvance() {
+    scheduler.postDelayed(frame, FRAME_MILLIS);
+    return scheduler.advanceToNextPostedRunnable();
+  }
+
+  @Benchmark
+  public long getLastScheduledTaskTime() {
+    return scheduler.getLastScheduledTaskTime().toMillis();
+  }
+}
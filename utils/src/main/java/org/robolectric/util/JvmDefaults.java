@@ -0,0 +1,153 @@
+package org.robolectric.util;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Coordinates changes to the JVM-wide default {@link Locale} and {@link TimeZone} between tests.
+ *
+ * <p>Each test sets the default locale from its qualifiers, and may change the default time zone,
+ * e.g. through {@code AlarmManager#setTimeZone}. Once {@link #enableConcurrency()} has been called,
+ * because tests are running concurrently in this JVM, a test only runs alongside other tests
+ * which expect the same defaults: one which needs different defaults waits until the tests holding
+ * the current ones have finished. Until then, defaults are just set, and nothing waits.
+ *
+ * <p>Tests which call {@link Locale#setDefault} or {@link TimeZone#setDefault} directly bypass
+ * this coordination, and so can't safely run concurrently with other tests.
+ */
+public class JvmDefaults {
+
+  private static final JvmDefaults INSTANCE = new JvmDefaults();
+
+  private final ThreadLocal<Boolean> holding = ThreadLocal.withInitial(() -> false);
+
+  private boolean concurrent;
+  private TimeZone initialTimeZone;
+  private Defaults current;
+  private int holders;
+
+  public static JvmDefaults getInstance() {
+    return INSTANCE;
+  }
+
+  JvmDefaults() {}
+
+  /** Makes tests wait for the JVM-wide defaults they need, from now on. */
+  public synchronized void enableConcurrency() {
+    if (!concurrent) {
+      concurrent = true;
+      initialTimeZone = TimeZone.getDefault();
+    }
+  }
+
+  /**
+   * Sets the default locale for the test running on the calling thread, and the default time zone
+   * to the one the JVM started with. If concurrency is enabled, first waits until no test running
+   * on another thread expects different defaults, and holds these defaults until {@link
+   * #release()} is called on this thread.
+   */
+  public synchronized void acquire(Locale locale) {
+    if (!concurrent) {
+      Locale.setDefault(locale);
+      return;
+    }
+    release();
+    await(new Defaults(locale, initialTimeZone));
+  }
+
+  /**
+   * Sets the default time zone. If concurrency is enabled and the calling thread holds the
+   * defaults, first waits until no test running on another thread holds them.
+   */
+  public synchronized void setTimeZone(TimeZone timeZone) {
+    if (!concurrent || !holding.get()) {
+      TimeZone.setDefault(timeZone);
+      return;
+    }
+    Defaults wanted = new Defaults(current.locale, timeZone);
+    if (wanted.equals(current)) {
+      return;
+    }
+    if (holders == 1) {
+      current = wanted;
+      wanted.apply();
+      return;
+    }
+    release();
+    await(wanted);
+  }
+
+  /**
+   * Restores the default time zone after a test. If concurrency is enabled this does nothing, since
+   * the defaults are restored when the next test acquires them.
+   */
+  public synchronized void restoreTimeZone(TimeZone timeZone) {
+    if (!concurrent) {
+      TimeZone.setDefault(timeZone);
+    }
+  }
+
+  /** Releases the defaults held by the calling thread, if any. */
+  public synchronized void release() {
+    if (!holding.get()) {
+      return;
+    }
+    holding.set(false);
+    holders--;
+    if (holders == 0) {
+      notifyAll();
+    }
+  }
+
+  private void await(Defaults wanted) {
+    boolean interrupted = false;
+    while (holders > 0 && !wanted.equals(current)) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (holders == 0) {
+      current = wanted;
+      wanted.apply();
+    }
+    holders++;
+    holding.set(true);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class Defaults {
+    private final Locale locale;
+    private final TimeZone timeZone;
+
+    Defaults(Locale locale, TimeZone timeZone) {
+      this.locale = locale;
+      this.timeZone = timeZone;
+    }
+
+    void apply() {
+      Locale.setDefault(locale);
+      TimeZone.setDefault(timeZone);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Defaults)) {
+        return false;
+      }
+      Defaults that = (Defaults) o;
+      return locale.equals(that.locale) && timeZone.getID().equals(that.timeZone.getID());
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * locale.hashCode() + timeZone.getID().hashCode();
+    }
+  }
+}
@@ -4,6 +4,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import org.robolectric.pluginapi.perf.Metadata;
 import org.robolectric.pluginapi.perf.Metric;
 import org.robolectric.pluginapi.perf.PerfStatsReporter;
@@ -11,6 +16,10 @@ import org.robolectric.pluginapi.perf.PerfStatsReporter;
 /**
  * Collects performance statistics for later reporting via {@link PerfStatsReporter}.
  *
+ * <p>Events are accumulated into striped counters and a striped latency histogram per metric, so
+ * recording an event takes no lock, and only allocates the first time a histogram stripe is used.
+ * Hot call sites can avoid the by-name lookup too, by obtaining a {@link MetricHandle} once.
+ *
  * @since 3.6
  */
 public class PerfStatsCollector {
@@ -19,8 +28,9 @@ public class PerfStatsCollector {
 
   private final Clock clock;
   private final Map<Class<?>, Object> metadata = new HashMap<>();
-  private final Map<MetricKey, Metric> metricMap = new HashMap<>();
-  private boolean enabled = true;
+  private final Map<String, MetricHandle> metricHandles = new ConcurrentHashMap<>();
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+  private volatile boolean enabled = true;
 
   public PerfStatsCollector() {
     this(System::nanoTime);
@@ -41,21 +51,42 @@ public class PerfStatsCollector {
     this.enabled = isEnabled;
   }
 
+  /**
+   * Returns the handle for the named metric. Callers on hot paths should obtain the handle once
+   * and hold on to it.
+   */
+  public MetricHandle metricHandle(String eventName) {
+    MetricHandle handle = metricHandles.get(eventName);
+    if (handle == null) {
+      handle = metricHandles.computeIfAbsent(eventName, MetricHandle::new);
+    }
+    return handle;
+  }
+
   public Event startEvent(String eventName) {
-    return new Event(eventName);
+    return startEvent(metricHandle(eventName));
+  }
+
+  public Event startEvent(MetricHandle metricHandle) {
+    return new Event(metricHandle);
   }
 
   public <T, E extends Exception> T measure(String eventName, ThrowingSupplier<T, E> supplier)
       throws E {
+    return measure(metricHandle(eventName), supplier);
+  }
+
+  public <T, E extends Exception> T measure(
+      MetricHandle metricHandle, ThrowingSupplier<T, E> supplier) throws E {
     boolean success = true;
-    Event event = startEvent(eventName);
+    long startTimeNs = clock.nanoTime();
     try {
       return supplier.get();
     } catch (Exception e) {
       success = false;
       throw e;
     } finally {
-      event.finished(success);
+      metricHandle.record(success, clock.nanoTime() - startTimeNs);
     }
   }
 
@@ -69,15 +100,20 @@ public class PerfStatsCollector {
 
   public <E extends Exception> void measure(String eventName, ThrowingRunnable<E> runnable)
       throws E {
+    measure(metricHandle(eventName), runnable);
+  }
+
+  public <E extends Exception> void measure(
+      MetricHandle metricHandle, ThrowingRunnable<E> runnable) throws E {
     boolean success = true;
-    Event event = startEvent(eventName);
+    long startTimeNs = clock.nanoTime();
     try {
       runnable.run();
     } catch (Exception e) {
       success = false;
       throw e;
     } finally {
-      event.finished(success);
+      metricHandle.record(success, clock.nanoTime() - startTimeNs);
     }
   }
 
@@ -89,8 +125,27 @@ public class PerfStatsCollector {
     void run() throws F;
   }
 
-  public synchronized Collection<Metric> getMetrics() {
-    return new ArrayList<>(metricMap.values());
+  /**
+   * Returns a counter for occurrences of an event too frequent to time individually. Callers
+   * should obtain the counter once and hold on to it; incrementing it doesn't lock or allocate.
+   */
+  public Counter counter(String eventName) {
+    return counters.computeIfAbsent(eventName, Counter::new);
+  }
+
+  public Collection<Metric> getMetrics() {
+    ArrayList<Metric> metrics = new ArrayList<>();
+    for (MetricHandle handle : metricHandles.values()) {
+      handle.successes.addTo(metrics, handle.name, true);
+      handle.failures.addTo(metrics, handle.name, false);
+    }
+    for (Counter counter : counters.values()) {
+      long count = counter.count.sum();
+      if (count > 0) {
+        metrics.add(new Metric(counter.name, (int) Math.min(count, Integer.MAX_VALUE), 0, true));
+      }
+    }
+    return metrics;
   }
 
   public synchronized <T> void putMetadata(Class<T> metadataClass, T metadata) {
@@ -105,20 +160,32 @@ public class PerfStatsCollector {
     return new Metadata(metadata);
   }
 
+  /**
+   * Clears all metadata and metrics. Events which finish concurrently with a reset may or may not
+   * be counted.
+   */
   public void reset() {
-    metadata.clear();
-    metricMap.clear();
+    synchronized (this) {
+      metadata.clear();
+    }
+    for (MetricHandle handle : metricHandles.values()) {
+      handle.successes.reset();
+      handle.failures.reset();
+    }
+    for (Counter counter : counters.values()) {
+      counter.count.reset();
+    }
   }
 
   /**
    * Event for perf stats collection.
    */
   public class Event {
-    private final String name;
+    private final MetricHandle metricHandle;
     private final long startTimeNs;
 
-    Event(String name) {
-      this.name = name;
+    Event(MetricHandle metricHandle) {
+      this.metricHandle = metricHandle;
       this.startTimeNs = clock.nanoTime();
     }
 
@@ -127,55 +194,125 @@ public class PerfStatsCollector {
     }
 
     public void finished(boolean success) {
+      metricHandle.record(success, clock.nanoTime() - startTimeNs);
+    }
+  }
+
+  /**
+   * Pre-interned handle to a metric, through which events are recorded without a by-name lookup.
+   */
+  public class MetricHandle {
+    private final String name;
+    private final Accumulator successes = new Accumulator();
+    private final Accumulator failures = new Accumulator();
+
+    MetricHandle(String name) {
+      this.name = name;
+    }
+
+    void record(boolean success, long elapsedNs) {
       if (!enabled) {
         return;
       }
 
-      synchronized (PerfStatsCollector.this) {
-        MetricKey key = new MetricKey(name, success);
-        Metric metric = metricMap.get(key);
-        if (metric == null) {
-          metricMap.put(key, metric = new Metric(key.name, key.success));
-        }
-        metric.record(clock.nanoTime() - startTimeNs);
-      }
+      (success ? successes : failures).record(elapsedNs);
     }
   }
 
   /**
-   * Metric key for perf stats collection.
+   * Counter for perf stats collection.
    */
-  private static class MetricKey {
+  public class Counter {
     private final String name;
-    private final boolean success;
+    private final LongAdder count = new LongAdder();
 
-    MetricKey(String name, boolean success) {
+    Counter(String name) {
       this.name = name;
-      this.success = success;
     }
 
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
+    public void increment() {
+      if (enabled) {
+        count.increment();
+      }
+    }
+
+    public void add(long n) {
+      if (enabled) {
+        count.add(n);
       }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
+    }
+  }
+
+  /** Lock-free accumulator for the events of a metric with a given outcome. */
+  private static class Accumulator {
+    // The next power of two at least the number of processors.
+    private static final int HISTOGRAM_STRIPES =
+        Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder elapsedNs = new LongAdder();
+    private final LongAccumulator minNs = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxNs = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    // Like LongAdder's cells, threads increment buckets in different stripes, so they don't contend
+    // on the same counters. Stripes are allocated on first use, since most metrics are only
+    // recorded by a thread or two.
+    private final AtomicReferenceArray<AtomicLongArray> histogramStripes =
+        new AtomicReferenceArray<>(HISTOGRAM_STRIPES);
+
+    void record(long elapsedNs) {
+      this.elapsedNs.add(elapsedNs);
+      minNs.accumulate(elapsedNs);
+      maxNs.accumulate(elapsedNs);
+      histogramStripe().incrementAndGet(Metric.histogramBucket(elapsedNs));
+      count.increment();
+    }
+
+    private AtomicLongArray histogramStripe() {
+      int index = (int) Thread.currentThread().getId() & (HISTOGRAM_STRIPES - 1);
+      AtomicLongArray stripe = histogramStripes.get(index);
+      // loops only if a reset clears the stripe just as another thread allocates it
+      while (stripe == null) {
+        histogramStripes.compareAndSet(
+            index, null, new AtomicLongArray(Metric.HISTOGRAM_BUCKETS));
+        stripe = histogramStripes.get(index);
       }
+      return stripe;
+    }
 
-      MetricKey metricKey = (MetricKey) o;
+    void addTo(Collection<Metric> metrics, String name, boolean success) {
+      long count = this.count.sum();
+      if (count == 0) {
+        return;
+      }
 
-      if (success != metricKey.success) {
-        return false;
+      long[] histogram = new long[Metric.HISTOGRAM_BUCKETS];
+      for (int i = 0; i < HISTOGRAM_STRIPES; i++) {
+        AtomicLongArray stripe = histogramStripes.get(i);
+        if (stripe != null) {
+          for (int bucket = 0; bucket < histogram.length; bucket++) {
+            histogram[bucket] += stripe.get(bucket);
+          }
+        }
       }
-      return name != null ? name.equals(metricKey.name) : metricKey.name == null;
+      metrics.add(
+          new Metric(
+              name,
+              (int) Math.min(count, Integer.MAX_VALUE),
+              elapsedNs.sum(),
+              minNs.get(),
+              maxNs.get(),
+              histogram,
+              success));
     }
 
-    @Override
-    public int hashCode() {
-      int result = name != null ? name.hashCode() : 0;
-      result = 31 * result + (success ? 1 : 0);
-      return result;
+    void reset() {
+      count.reset();
+      elapsedNs.reset();
+      minNs.reset();
+      maxNs.reset();
+      for (int i = 0; i < HISTOGRAM_STRIPES; i++) {
+        histogramStripes.set(i, null);
+      }
     }
   }
 }
@@ -5,8 +5,11 @@ import static org.robolectric.util.Scheduler.IdleState.PAUSED;
 import static org.robolectric.util.Scheduler.IdleState.UNPAUSED;
 
 import java.time.Duration;
-import java.util.Iterator;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -51,14 +54,16 @@ public class Scheduler {
   private static final long START_TIME = 100;
   private volatile long currentTime = START_TIME;
   /**
-   * PriorityQueue doesn't maintain ordering based on insertion; track that ourselves to preserve
-   * FIFO order for posted runnables with the same scheduled time.
+   * Track insertion order ourselves to preserve FIFO order for posted runnables with the same
+   * scheduled time. This also makes every queued runnable distinct, as a {@link TreeSet} requires.
    */
   private long nextTimeDisambiguator = 0;
 
   private boolean isExecutingRunnable = false;
   private final Thread associatedThread = Thread.currentThread();
-  private final PriorityQueue<ScheduledRunnable> runnables = new PriorityQueue<>();
+  private final TreeSet<ScheduledRunnable> runnables = new TreeSet<>();
+  /** The queued entries for each runnable, so it can be removed without scanning the queue. */
+  private final Map<Runnable, List<ScheduledRunnable>> runnableEntries = new IdentityHashMap<>();
   private volatile IdleState idleState = UNPAUSED;
 
   /**
@@ -158,7 +163,7 @@ public class Scheduler {
   public synchronized void postDelayed(Runnable runnable, long delay, TimeUnit unit) {
     long delayMillis = unit.toMillis(delay);
     if ((idleState != CONSTANT_IDLE && (isPaused() || delayMillis > 0)) || Thread.currentThread() != associatedThread) {
-      runnables.add(new ScheduledRunnable(runnable, currentTime + delayMillis));
+      enqueue(new ScheduledRunnable(runnable, currentTime + delayMillis));
     } else {
       runOrQueueRunnable(runnable, currentTime + delayMillis);
     }
@@ -175,9 +180,9 @@ public class Scheduler {
       if (runnables.isEmpty()) {
         timeDisambiguator = nextTimeDisambiguator++;
       } else {
-        timeDisambiguator = runnables.peek().timeDisambiguator - 1;
+        timeDisambiguator = runnables.first().timeDisambiguator - 1;
       }
-      runnables.add(new ScheduledRunnable(runnable, 0, timeDisambiguator));
+      enqueue(new ScheduledRunnable(runnable, 0, timeDisambiguator));
     } else {
       runOrQueueRunnable(runnable, currentTime);
     }
@@ -189,11 +194,9 @@ public class Scheduler {
    * @param runnable  Runnable to remove.
    */
   public synchronized void remove(Runnable runnable) {
-    Iterator<ScheduledRunnable> iterator = runnables.iterator();
-    while (iterator.hasNext()) {
-      if (iterator.next().runnable == runnable) {
-        iterator.remove();
-      }
+    List<ScheduledRunnable> entries = runnableEntries.remove(runnable);
+    if (entries != null) {
+      runnables.removeAll(entries);
     }
   }
 
@@ -204,13 +207,7 @@ public class Scheduler {
    * @return True if a runnable was executed.
    */
   public synchronized boolean advanceToLastPostedRunnable() {
-    long currentMaxTime = currentTime;
-    for (ScheduledRunnable scheduled : runnables) {
-      if (currentMaxTime < scheduled.scheduledTime) {
-        currentMaxTime = scheduled.scheduledTime;
-      }
-    }
-    return advanceTo(currentMaxTime);
+    return advanceTo(lastScheduledTime());
   }
 
   /**
@@ -219,7 +216,7 @@ public class Scheduler {
    * @return  True if a runnable was executed.
    */
   public synchronized boolean advanceToNextPostedRunnable() {
-    return !runnables.isEmpty() && advanceTo(runnables.peek().scheduledTime);
+    return !runnables.isEmpty() && advanceTo(runnables.first().scheduledTime);
   }
 
   /**
@@ -271,8 +268,9 @@ public class Scheduler {
    * @return  True if a runnable was executed.
    */
   public synchronized boolean runOneTask() {
-    ScheduledRunnable postedRunnable = runnables.poll();
+    ScheduledRunnable postedRunnable = runnables.pollFirst();
     if (postedRunnable != null) {
+      removeEntry(postedRunnable);
       if (postedRunnable.scheduledTime > currentTime) {
         currentTime = postedRunnable.scheduledTime;
       }
@@ -296,6 +294,7 @@ public class Scheduler {
    */
   public synchronized void reset() {
     runnables.clear();
+    runnableEntries.clear();
     idleState = UNPAUSED;
     currentTime = START_TIME;
     isExecutingRunnable = false;
@@ -312,22 +311,12 @@ public class Scheduler {
 
   @SuppressWarnings("AndroidJdkLibsChecker")
   public synchronized Duration getNextScheduledTaskTime() {
-    return runnables.isEmpty() ? Duration.ZERO : Duration.ofMillis(runnables.peek().scheduledTime);
+    return runnables.isEmpty() ? Duration.ZERO : Duration.ofMillis(runnables.first().scheduledTime);
   }
 
   @SuppressWarnings("AndroidJdkLibsChecker")
   public synchronized Duration getLastScheduledTaskTime() {
-    if (runnables.isEmpty()) {
-      return Duration.ZERO;
-    }
-    long currentMaxTime = currentTime;
-    for (ScheduledRunnable scheduled : runnables) {
-      if (currentMaxTime < scheduled.scheduledTime) {
-        currentMaxTime = scheduled.scheduledTime;
-      }
-
-    }
-    return Duration.ofMillis(currentMaxTime);
+    return runnables.isEmpty() ? Duration.ZERO : Duration.ofMillis(lastScheduledTime());
   }
 
   /**
@@ -345,12 +334,35 @@ public class Scheduler {
   }
 
   private boolean nextTaskIsScheduledBefore(long endingTime) {
-    return !runnables.isEmpty() && runnables.peek().scheduledTime <= endingTime;
+    return !runnables.isEmpty() && runnables.first().scheduledTime <= endingTime;
+  }
+
+  /** Returns the time of the latest queued runnable, or the current time if that's later. */
+  private long lastScheduledTime() {
+    if (runnables.isEmpty()) {
+      return currentTime;
+    }
+    return Math.max(currentTime, runnables.last().scheduledTime);
+  }
+
+  private void enqueue(ScheduledRunnable scheduledRunnable) {
+    runnables.add(scheduledRunnable);
+    runnableEntries
+        .computeIfAbsent(scheduledRunnable.runnable, r -> new ArrayList<>(1))
+        .add(scheduledRunnable);
+  }
+
+  private void removeEntry(ScheduledRunnable scheduledRunnable) {
+    List<ScheduledRunnable> entries = runnableEntries.get(scheduledRunnable.runnable);
+    entries.remove(scheduledRunnable);
+    if (entries.isEmpty()) {
+      runnableEntries.remove(scheduledRunnable.runnable);
+    }
   }
 
   private void runOrQueueRunnable(Runnable runnable, long scheduledTime) {
     if (isExecutingRunnable) {
-      runnables.add(new ScheduledRunnable(runnable, scheduledTime));
+      enqueue(new ScheduledRunnable(runnable, scheduledTime));
       return;
     }
     isExecutingRunnable = true;
@@ -28,7 +28,7 @@ public class SimplePerfStatsReporter implements PerfStatsReporter {
 
   @SuppressWarnings("AndroidJdkLibsChecker)")
   private synchronized void finalReport() {
-    Map<MetricKey, MetricValue> mergedMetrics = new TreeMap<>();
+    Map<MetricKey, Metric> mergedMetrics = new TreeMap<>();
     for (Data perfStatsData : perfStatsData) {
       AndroidMetadata metadata = perfStatsData.metadata.get(AndroidMetadata.class);
       Map<String, String> deviceBootProperties = metadata.getDeviceBootProperties();
@@ -37,32 +37,36 @@ public class SimplePerfStatsReporter implements PerfStatsReporter {
 
       for (Metric metric : perfStatsData.metrics) {
         MetricKey key = new MetricKey(metric.getName(), metric.isSuccess(), sdkInt, resourcesMode);
-        MetricValue mergedMetric = mergedMetrics.get(key);
+        Metric mergedMetric = mergedMetrics.get(key);
         if (mergedMetric == null) {
-          mergedMetric = new MetricValue();
+          mergedMetric = new Metric(metric.getName(), metric.isSuccess());
           mergedMetrics.put(key, mergedMetric);
         }
-        mergedMetric.report(metric);
+        mergedMetric.merge(metric);
       }
     }
 
-    System.out.println("Name\tSDK\tResources\tSuccess\tCount\tMin ms\tMax ms\tAvg ms\tTotal ms");
-    for (Entry<MetricKey, MetricValue> entry : mergedMetrics.entrySet()) {
+    System.out.println("Name\tSDK\tResources\tSuccess\tCount\tMin ms\tP50 ms\tP90 ms\tP99 ms"
+        + "\tMax ms\tAvg ms\tTotal ms");
+    for (Entry<MetricKey, Metric> entry : mergedMetrics.entrySet()) {
       MetricKey key = entry.getKey();
-      MetricValue value = entry.getValue();
+      Metric value = entry.getValue();
 
       System.out.println(
           MessageFormat
-              .format("{0}\t{1}\t{2}\t{3}\t{4}\t{5}\t{6}\t{7}\t{8}",
+              .format("{0}\t{1}\t{2}\t{3}\t{4}\t{5}\t{6}\t{7}\t{8}\t{9}\t{10}\t{11}",
                   key.name,
                   key.sdkLevel,
                   key.resourcesMode,
                   key.success,
-                  value.count,
-                  (int) (value.minNs / 1000000),
-                  (int) (value.maxNs / 1000000),
-                  (int) (value.elapsedNs / 1000000 / value.count),
-                  (int) (value.elapsedNs / 1000000)));
+                  value.getCount(),
+                  (int) (value.getMinNs() / 1000000),
+                  (int) (value.getP50Ns() / 1000000),
+                  (int) (value.getP90Ns() / 1000000),
+                  (int) (value.getP99Ns() / 1000000),
+                  (int) (value.getMaxNs() / 1000000),
+                  (int) (value.getElapsedNs() / 1000000 / value.getCount()),
+                  (int) (value.getElapsedNs() / 1000000)));
     }
   }
 
@@ -143,25 +147,4 @@ public class SimplePerfStatsReporter implements PerfStatsReporter {
       return Boolean.compare(success, o.success);
     }
   }
-
-  private static class MetricValue {
-    private int count;
-    private long minNs;
-    private long maxNs;
-    private long elapsedNs;
-
-    public void report(Metric metric) {
-      if (count == 0) {
-        count = metric.getCount();
-        minNs = metric.getMinNs();
-        maxNs = metric.getMaxNs();
-        elapsedNs = metric.getElapsedNs();
-      } else {
-        count += metric.getCount();
-        minNs = Math.min(minNs, metric.getMinNs());
-        maxNs = Math.max(maxNs, metric.getMaxNs());
-        elapsedNs += metric.getElapsedNs();
-      }
-    }
-  }
 }
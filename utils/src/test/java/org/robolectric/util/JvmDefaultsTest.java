@@ -0,0 +1,120 @@
+package org.robolectric.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JvmDefaultsTest {
+  private final JvmDefaults jvmDefaults = new JvmDefaults();
+  private final ExecutorService test1 = Executors.newSingleThreadExecutor();
+  private final ExecutorService test2 = Executors.newSingleThreadExecutor();
+
+  private Locale priorLocale;
+  private TimeZone priorTimeZone;
+
+  @Before
+  public void setUp() {
+    priorLocale = Locale.getDefault();
+    priorTimeZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+  }
+
+  @After
+  public void tearDown() {
+    test1.shutdownNow();
+    test2.shutdownNow();
+    Locale.setDefault(priorLocale);
+    TimeZone.setDefault(priorTimeZone);
+  }
+
+  @Test
+  public void withoutConcurrency_shouldSetDefaultsImmediately() throws Exception {
+    test1.submit(() -> jvmDefaults.acquire(Locale.FRANCE)).get(1, SECONDS);
+    test2.submit(() -> jvmDefaults.acquire(Locale.GERMANY)).get(1, SECONDS);
+    assertThat(Locale.getDefault()).isEqualTo(Locale.GERMANY);
+
+    jvmDefaults.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+    assertThat(TimeZone.getDefault().getID()).isEqualTo("America/New_York");
+    jvmDefaults.restoreTimeZone(TimeZone.getTimeZone("UTC"));
+    assertThat(TimeZone.getDefault().getID()).isEqualTo("UTC");
+  }
+
+  @Test
+  public void testsWithSameDefaults_shouldRunConcurrently() throws Exception {
+    jvmDefaults.enableConcurrency();
+
+    test1.submit(() -> jvmDefaults.acquire(Locale.FRANCE)).get(1, SECONDS);
+    test2.submit(() -> jvmDefaults.acquire(Locale.FRANCE)).get(1, SECONDS);
+
+    assertThat(Locale.getDefault()).isEqualTo(Locale.FRANCE);
+  }
+
+  @Test
+  public void testWithDifferentLocale_shouldWaitForOtherTestsToFinish() throws Exception {
+    jvmDefaults.enableConcurrency();
+    test1.submit(() -> jvmDefaults.acquire(Locale.FRANCE)).get(1, SECONDS);
+
+    Future<?> secondTest = test2.submit(() -> jvmDefaults.acquire(Locale.GERMANY));
+    assertBlocked(secondTest);
+    assertThat(Locale.getDefault()).isEqualTo(Locale.FRANCE);
+
+    test1.submit(jvmDefaults::release).get(1, SECONDS);
+    secondTest.get(1, SECONDS);
+    assertThat(Locale.getDefault()).isEqualTo(Locale.GERMANY);
+  }
+
+  @Test
+  public void changingTimeZone_shouldWaitForOtherTestsToFinish() throws Exception {
+    jvmDefaults.enableConcurrency();
+    test1.submit(() -> jvmDefaults.acquire(Locale.FRANCE)).get(1, SECONDS);
+    test2.submit(() -> jvmDefaults.acquire(Locale.FRANCE)).get(1, SECONDS);
+
+    Future<?> setTimeZone =
+        test2.submit(() -> jvmDefaults.setTimeZone(TimeZone.getTimeZone("Asia/Tokyo")));
+    assertBlocked(setTimeZone);
+    assertThat(TimeZone.getDefault().getID()).isEqualTo("UTC");
+
+    test1.submit(jvmDefaults::release).get(1, SECONDS);
+    setTimeZone.get(1, SECONDS);
+    assertThat(TimeZone.getDefault().getID()).isEqualTo("Asia/Tokyo");
+    assertThat(Locale.getDefault()).isEqualTo(Locale.FRANCE);
+
+    // the next test gets the JVM's original time zone back
+    test2.submit(jvmDefaults::release).get(1, SECONDS);
+    test1.submit(() -> jvmDefaults.acquire(Locale.FRANCE)).get(1, SECONDS);
+    assertThat(TimeZone.getDefault().getID()).isEqualTo("UTC");
+  }
+
+  @Test
+  public void soleTest_shouldChangeTimeZoneImmediately() throws Exception {
+    jvmDefaults.enableConcurrency();
+    test1.submit(() -> jvmDefaults.acquire(Locale.FRANCE)).get(1, SECONDS);
+
+    test1.submit(() -> jvmDefaults.setTimeZone(TimeZone.getTimeZone("Asia/Tokyo")))
+        .get(1, SECONDS);
+
+    assertThat(TimeZone.getDefault().getID()).isEqualTo("Asia/Tokyo");
+  }
+
+  private static void assertBlocked(Future<?> future) throws Exception {
+    try {
+      future.get(100, MILLISECONDS);
+      throw new AssertionError("expected to wait for the other test");
+    } catch (TimeoutException expected) {
+      // still waiting
+    }
+  }
+}
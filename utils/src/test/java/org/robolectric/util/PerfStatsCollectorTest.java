@@ -106,10 +106,79 @@ public class PerfStatsCollectorTest {
         new Metric("event", 1, 5, false));
   }
 
+  @Test
+  public void shouldEstimatePercentiles() throws Exception {
+    PerfStatsCollector.MetricHandle handle = collector.metricHandle("event");
+    for (int i = 1; i <= 100; i++) {
+      Event event = collector.startEvent(handle);
+      fakeClock.delay(i * 1000);
+      event.finished();
+    }
+
+    Metric metric = collector.getMetrics().iterator().next();
+    assertThat(metric.getCount()).isEqualTo(100);
+    assertThat(metric.getMinNs()).isEqualTo(1000);
+    assertThat(metric.getMaxNs()).isEqualTo(100_000);
+    assertThat((double) metric.getP50Ns()).isWithin(50_000 / 8.0).of(50_000);
+    assertThat((double) metric.getP90Ns()).isWithin(90_000 / 8.0).of(90_000);
+    assertThat((double) metric.getP99Ns()).isWithin(99_000 / 8.0).of(99_000);
+  }
+
+  @Test
+  public void shouldCombineHistogramsRecordedOnSeveralThreads() throws Exception {
+    PerfStatsCollector.MetricHandle handle = collector.metricHandle("event");
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      long elapsedNs = (i + 1) * 1000;
+      threads[i] =
+          new Thread(
+              () -> {
+                for (int j = 0; j < 1000; j++) {
+                  handle.record(true, elapsedNs);
+                }
+              });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Metric metric = collector.getMetrics().iterator().next();
+    assertThat(metric.getCount()).isEqualTo(8000);
+    assertThat((double) metric.getP50Ns()).isWithin(4000 / 8.0).of(4000);
+    assertThat((double) metric.getP99Ns()).isWithin(8000 / 8.0).of(8000);
+  }
+
+  @Test
+  public void metricHandle_shouldBeInternedByName() throws Exception {
+    assertThat(collector.metricHandle("event")).isSameInstanceAs(collector.metricHandle("event"));
+  }
+
+  @Test
+  public void counter_shouldReportCountAsMetric() throws Exception {
+    PerfStatsCollector.Counter counter = collector.counter("counted event");
+    counter.increment();
+    counter.increment();
+
+    assertThat(collector.counter("counted event")).isSameInstanceAs(counter);
+    Metric metric = collector.getMetrics().iterator().next();
+    assertThat(metric.getName()).isEqualTo("counted event");
+    assertThat(metric.getCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void counter_shouldNotCountWhenDisabled() throws Exception {
+    collector.setEnabled(false);
+    collector.counter("counted event").increment();
+
+    assertThat(collector.getMetrics()).isEmpty();
+  }
+
   @Test
   public void reset_shouldClearAllMetadataAndMetrics() throws Exception {
     collector.putMetadata(String.class, "metadata");
     collector.startEvent("event").finished();
+    collector.counter("counted event").increment();
     collector.reset();
     assertThat(collector.getMetadata().get(String.class)).isNull();
     assertThat(collector.getMetrics()).isEmpty();
@@ -252,6 +252,40 @@ public class SchedulerTest {
     assertThat(runnable.wasRun).isFalse();
   }
 
+  @Test
+  public void remove_shouldPreserveOrderOfRemainingRunnables() throws Exception {
+    Runnable removed = new AddToTranscript("removed");
+    scheduler.postDelayed(new AddToTranscript("one"), 10);
+    scheduler.postDelayed(removed, 10);
+    scheduler.postDelayed(new AddToTranscript("two"), 10);
+    scheduler.postAtFrontOfQueue(removed);
+    scheduler.postDelayed(new AddToTranscript("three"), 5);
+    scheduler.postDelayed(removed, 20);
+
+    scheduler.remove(removed);
+
+    assertThat(scheduler.size()).isEqualTo(3);
+    assertThat(scheduler.getLastScheduledTaskTime().toMillis()).isEqualTo(startTime + 10);
+    scheduler.advanceToLastPostedRunnable();
+    assertThat(transcript).containsExactly("three", "one", "two").inOrder();
+    assertThat(scheduler.getCurrentTime()).isEqualTo(startTime + 10);
+  }
+
+  @Test
+  public void remove_shouldRemoveRunnableRepostedAfterRunning() throws Exception {
+    Runnable runnable = new AddToTranscript("run");
+    scheduler.post(runnable);
+    scheduler.advanceBy(0);
+    scheduler.postDelayed(runnable, 10);
+    scheduler.postDelayed(new AddToTranscript("other"), 10);
+
+    assertThat(scheduler.size()).isEqualTo(2);
+    scheduler.remove(runnable);
+    assertThat(scheduler.size()).isEqualTo(1);
+    scheduler.advanceToLastPostedRunnable();
+    assertThat(transcript).containsExactly("run", "other").inOrder();
+  }
+
   @Test
   public void reset_shouldUnPause() throws Exception {
     scheduler.pause();